@@ -0,0 +1,133 @@
+package com.kama.jchatmind.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.metrics.LatencyHistogram;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.vo.AgentUsageVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按 Agent 累计模型调用的 token 用量，包括命中提供方前缀缓存的输入 token，以及每一步的输入 token 分布
+ * 缓存命中数从 ChatResponse 的原生 usage 中读取，兼容两种字段：
+ * - DeepSeek：prompt_cache_hit_tokens
+ * - OpenAI 兼容接口（含智谱）：prompt_tokens_details.cached_tokens
+ */
+@Slf4j
+@Component
+public class AgentUsageTracker {
+
+    private final MetricsRegistry metricsRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, Counters> usageByAgent = new ConcurrentHashMap<>();
+
+    public AgentUsageTracker(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * @param estimatedPromptTokens 发送前本地估算的输入 token 数，提供方未返回 usage 时用于统计每步输入量
+     */
+    public void record(String agentId, int estimatedPromptTokens, ChatResponse response) {
+        metricsRegistry.histogram("agent.step.prompt_tokens.estimated").record(estimatedPromptTokens);
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        long promptTokens = usage.getPromptTokens() == null ? 0 : usage.getPromptTokens();
+        long completionTokens = usage.getCompletionTokens() == null ? 0 : usage.getCompletionTokens();
+        long cacheHitTokens = cacheHitTokens(usage.getNativeUsage());
+
+        Counters counters = usageByAgent.computeIfAbsent(agentId, id -> new Counters());
+        counters.calls.increment();
+        counters.promptTokens.add(promptTokens);
+        counters.completionTokens.add(completionTokens);
+        counters.cacheHitTokens.add(cacheHitTokens);
+        counters.stepPromptTokens.record(promptTokens > 0 ? promptTokens : estimatedPromptTokens);
+        metricsRegistry.histogram("agent.step.prompt_tokens").record(promptTokens);
+
+        metricsRegistry.increment("llm.prompt_tokens", promptTokens);
+        metricsRegistry.increment("llm.completion_tokens", completionTokens);
+        metricsRegistry.increment("llm.cache_hit_tokens", cacheHitTokens);
+    }
+
+    /**
+     * 记录一次完成的回答（一次 JChatMind 运行）调用模型的次数和结束方式
+     */
+    public void recordAnswer(String agentId, int llmCalls, FinishReason finishReason) {
+        metricsRegistry.histogram("agent.answer.llm_calls").record(llmCalls);
+        metricsRegistry.increment("agent.answer.finish." + finishReason.name().toLowerCase());
+        Counters counters = usageByAgent.computeIfAbsent(agentId, id -> new Counters());
+        counters.answers.increment();
+        counters.answerLlmCalls.add(llmCalls);
+    }
+
+    public AgentUsageVO get(String agentId) {
+        Counters counters = usageByAgent.getOrDefault(agentId, new Counters());
+        long promptTokens = counters.promptTokens.sum();
+        long cacheHitTokens = counters.cacheHitTokens.sum();
+        long answers = counters.answers.sum();
+        return AgentUsageVO.builder()
+                .agentId(agentId)
+                .calls(counters.calls.sum())
+                .promptTokens(promptTokens)
+                .completionTokens(counters.completionTokens.sum())
+                .cacheHitTokens(cacheHitTokens)
+                .cacheHitRatio(promptTokens == 0 ? 0 : (double) cacheHitTokens / promptTokens)
+                .stepPromptTokensP50(counters.stepPromptTokens.percentile(0.50))
+                .stepPromptTokensP95(counters.stepPromptTokens.percentile(0.95))
+                .answers(answers)
+                .llmCallsPerAnswer(answers == 0 ? 0 : (double) counters.answerLlmCalls.sum() / answers)
+                .build();
+    }
+
+    private long cacheHitTokens(Object nativeUsage) {
+        if (nativeUsage == null) {
+            return 0;
+        }
+        try {
+            JsonNode node = objectMapper.valueToTree(nativeUsage);
+            JsonNode hit = node.get("prompt_cache_hit_tokens");
+            if (hit != null && hit.canConvertToLong()) {
+                return hit.asLong();
+            }
+            JsonNode cached = node.path("prompt_tokens_details").get("cached_tokens");
+            if (cached != null && cached.canConvertToLong()) {
+                return cached.asLong();
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("无法解析模型原生 usage: {}", nativeUsage.getClass().getName());
+        }
+        return 0;
+    }
+
+    private static class Counters {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder cacheHitTokens = new LongAdder();
+        // 每一步（一次模型调用）的输入 token 数，复用固定分桶直方图，分位数为桶上界的近似值
+        private final LatencyHistogram stepPromptTokens = new LatencyHistogram();
+        private final LongAdder answers = new LongAdder();
+        private final LongAdder answerLlmCalls = new LongAdder();
+    }
+
+    /**
+     * 一次运行的结束方式
+     */
+    public enum FinishReason {
+        // 模型回复了不含工具调用的文本
+        TEXT_REPLY,
+        // 调用了 terminate
+        TERMINATE,
+        // 达到最大步数
+        MAX_STEPS
+    }
+}
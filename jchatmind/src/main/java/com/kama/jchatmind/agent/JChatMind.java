@@ -1,5 +1,7 @@
 package com.kama.jchatmind.agent;
 
+import com.kama.jchatmind.agent.memory.TokenEstimator;
+import com.kama.jchatmind.agent.tools.GuardedToolCallback;
 import com.kama.jchatmind.converter.ChatMessageConverter;
 import com.kama.jchatmind.message.SseMessage;
 import com.kama.jchatmind.model.dto.ChatMessageDTO;
@@ -11,7 +13,6 @@ import com.kama.jchatmind.service.SseService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
 import org.springframework.ai.chat.messages.*;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.ChatOptions;
@@ -24,7 +25,11 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -66,7 +71,13 @@ public class JChatMind {
     // 最多循环次数
     private static final Integer MAX_STEPS = 20;
 
-    private static final Integer DEFAULT_MAX_MESSAGES = 20;
+    // 只产生副作用、结果不需要模型再解读的工具，与 terminate 同批调用且执行成功时直接结束本次运行
+    private static final Set<String> SIDE_EFFECT_TOOLS = Set.of("sendEmail");
+
+    // 传给工具方法的 ToolContext 中的键
+    public static final String TOOL_CONTEXT_AGENT_ID = "agentId";
+    public static final String TOOL_CONTEXT_CHAT_SESSION_ID = "chatSessionId";
+    public static final String TOOL_CONTEXT_KNOWLEDGE_PREFETCH = "knowledgePrefetch";
 
     // SpringAI 自带的 ChatOptions, 不是 AgentDTO.ChatOptions
     private ChatOptions chatOptions;
@@ -78,9 +89,29 @@ public class JChatMind {
 
     private ChatMessageFacadeService chatMessageFacadeService;
 
+    private AgentUsageTracker agentUsageTracker;
+
+    // 放在每次请求最前面的系统消息，创建时生成一次，之后各步骤逐字节相同，便于命中提供方的前缀缓存
+    private SystemMessage stablePrefix;
+
+    // 会话的滚动摘要（见 SessionSummaryService），紧跟在 stablePrefix 之后，没有摘要时为 null
+    private SystemMessage summaryMessage;
+
+    // 用户消息到达时预先检索的知识库结果（见 KnowledgePrefetch），没有预取时为 null
+    private KnowledgePrefetch knowledgePrefetch;
+
+    // 预取结果生成的系统消息，第一步思考前生成，放在摘要之后，本次运行的各步骤保持不变
+    private SystemMessage prefetchMessage;
+
     // 最后一次的 ChatResponse
     private ChatResponse lastChatResponse;
 
+    // 本次运行调用模型的次数
+    private int llmCalls;
+
+    // 本次运行的结束方式
+    private AgentUsageTracker.FinishReason finishReason;
+
     // AI 返回的，已经持久化，但是需要 sse 发给前端的消息
     private final List<ChatMessageDTO> pendingChatMessages = new ArrayList<>();
 
@@ -92,14 +123,17 @@ public class JChatMind {
                      String description,
                      String systemPrompt,
                      ChatClient chatClient,
-                     Integer maxMessages,
+                     ChatMemory chatMemory,
                      List<Message> memory,
+                     String sessionSummary,
                      List<ToolCallback> availableTools,
                      List<KnowledgeBaseDTO> availableKbs,
+                     KnowledgePrefetch knowledgePrefetch,
                      String chatSessionId,
                      SseService sseService,
                      ChatMessageFacadeService chatMessageFacadeService,
-                     ChatMessageConverter chatMessageConverter
+                     ChatMessageConverter chatMessageConverter,
+                     AgentUsageTracker agentUsageTracker
     ) {
         this.agentId = agentId;
         this.name = name;
@@ -108,31 +142,48 @@ public class JChatMind {
 
         this.chatClient = chatClient;
 
-        this.availableTools = availableTools;
+        // 工具定义随请求发送，固定顺序以保证请求前缀稳定
+        this.availableTools = availableTools.stream()
+                .sorted(Comparator.comparing(tool -> tool.getToolDefinition().name()))
+                .toList();
         this.availableKbs = availableKbs;
+        this.knowledgePrefetch = knowledgePrefetch;
 
         this.chatSessionId = chatSessionId;
         this.sseService = sseService;
 
         this.chatMessageFacadeService = chatMessageFacadeService;
         this.chatMessageConverter = chatMessageConverter;
+        this.agentUsageTracker = agentUsageTracker;
 
         this.agentState = AgentState.IDLE;
 
-        // 保存聊天记录
-        this.chatMemory = MessageWindowChatMemory.builder()
-                .maxMessages(maxMessages == null ? DEFAULT_MAX_MESSAGES : maxMessages)
-                .build();
-        this.chatMemory.add(chatSessionId, memory);
-
-        // 添加系统提示
-        if (StringUtils.hasLength(systemPrompt)) {
-            this.chatMemory.add(chatSessionId, new SystemMessage(systemPrompt));
+        // 保存聊天记录，按 token 预算截取（见 TokenWindowChatMemory）
+        this.chatMemory = chatMemory;
+        // 聊天记录中只保存对话本身，系统消息统一合并到 stablePrefix
+        List<String> sessionSystemTexts = memory.stream()
+                .filter(message -> message instanceof SystemMessage)
+                .map(Message::getText)
+                .toList();
+        this.chatMemory.add(chatSessionId, memory.stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList());
+        this.stablePrefix = new SystemMessage(buildStablePrefix(systemPrompt, sessionSystemTexts, availableKbs));
+        if (StringUtils.hasText(sessionSummary)) {
+            this.summaryMessage = new SystemMessage("【此前对话的摘要】\n" + sessionSummary);
         }
 
         // 关闭 SpringAI 自带的内部的工具调用自动执行功能
+        // toolContext 不会发送给模型，只传给声明了 ToolContext 参数的工具方法
+        Map<String, Object> toolContext = new HashMap<>();
+        toolContext.put(TOOL_CONTEXT_AGENT_ID, agentId);
+        toolContext.put(TOOL_CONTEXT_CHAT_SESSION_ID, chatSessionId);
+        if (knowledgePrefetch != null) {
+            toolContext.put(TOOL_CONTEXT_KNOWLEDGE_PREFETCH, knowledgePrefetch);
+        }
         this.chatOptions = DefaultToolCallingChatOptions.builder()
                 .internalToolExecutionEnabled(false)
+                .toolContext(toolContext)
                 .build();
 
         // 工具调用管理器
@@ -216,34 +267,72 @@ public class JChatMind {
         pendingChatMessages.clear();
     }
 
-    // thinkPrompt 应该放到 system 中还是
-    private boolean think() {
-        String thinkPrompt = """
+    /**
+     * 生成固定的系统消息：Agent 的系统提示词、会话中的系统消息、决策说明和知识库目录
+     * 只依赖创建时就确定的内容，知识库按 id 排序，保证同一个 Agent 每一步请求的前缀逐字节相同
+     */
+    private static String buildStablePrefix(String systemPrompt, List<String> sessionSystemTexts, List<KnowledgeBaseDTO> kbs) {
+        StringBuilder prefix = new StringBuilder();
+        if (StringUtils.hasLength(systemPrompt)) {
+            prefix.append(systemPrompt).append("\n\n");
+        }
+        for (String text : sessionSystemTexts) {
+            prefix.append(text).append("\n\n");
+        }
+        prefix.append("""
                 现在你是一个智能的的具体「决策模块」
                 请根据当前对话上下文，决定下一步的动作。
-                                \s
+
+                【决策规则】
+                - 多个互不依赖的工具调用请在同一次回复中一起发起，它们的结果会一次性返回
+                - 已经可以回答时，直接回复最终答案，不要调用工具
+                - 还需要执行发送邮件等操作时，把最终答案写在同一次回复中，并同时调用 terminate
+
                 【额外信息】
-                - 你目前拥有的知识库列表以及描述：%s
                 - 如果有缺失的上下文时，优先从知识库中进行搜索
-                """.formatted(this.availableKbs);
+                - 你目前拥有的知识库列表以及描述：
+                """);
+        kbs.stream()
+                .sorted(Comparator.comparing(KnowledgeBaseDTO::getId))
+                .forEach(kb -> prefix.append("  - id=").append(kb.getId())
+                        .append(", name=").append(kb.getName())
+                        .append(", description=").append(kb.getDescription())
+                        .append('\n'));
+        return prefix.toString();
+    }
 
-        // 将 thinkPrompt 通过 .user(thinkPrompt) 的方式构造进入 chatClient 中
-        // 既能让每次 messageList 的最后一条是 本条提示词，
-        // 又能够避免将 thinkPrompt 加入到聊天记录中
+    // 本次请求的消息：固定前缀在最前，然后是会话摘要和预取的知识，之后是按时间顺序的对话记录
+    private List<Message> requestMessages() {
+        List<Message> messages = new ArrayList<>();
+        messages.add(this.stablePrefix);
+        if (this.summaryMessage != null) {
+            messages.add(this.summaryMessage);
+        }
+        if (this.prefetchMessage != null) {
+            messages.add(this.prefetchMessage);
+        }
+        messages.addAll(this.chatMemory.get(this.chatSessionId));
+        return messages;
+    }
+
+    private boolean think() {
+        // 所有内容都放在 Prompt 的消息中，不再通过 .system(...) 额外注入，避免系统消息位置和内容每步变化
+        List<Message> messages = requestMessages();
         Prompt prompt = Prompt.builder()
                 .chatOptions(this.chatOptions)
-                .messages(this.chatMemory.get(this.chatSessionId))
+                .messages(messages)
                 .build();
 
         this.lastChatResponse = this.chatClient
                 .prompt(prompt)
-                .system(thinkPrompt)
                 .toolCallbacks(this.availableTools.toArray(new ToolCallback[0]))
                 .call()
                 .chatClientResponse()
                 .chatResponse();
 
         Assert.notNull(lastChatResponse, "Last chat client response cannot be null");
+        this.llmCalls++;
+        agentUsageTracker.record(this.agentId, TokenEstimator.estimate(messages), this.lastChatResponse);
 
         AssistantMessage output = this.lastChatResponse
                 .getResult()
@@ -271,14 +360,18 @@ public class JChatMind {
         }
 
         Prompt prompt = Prompt.builder()
-                .messages(this.chatMemory.get(this.chatSessionId))
+                .messages(requestMessages())
                 .chatOptions(this.chatOptions)
                 .build();
 
         ToolExecutionResult toolExecutionResult = toolCallingManager.executeToolCalls(prompt, this.lastChatResponse);
 
+        // conversationHistory 包含本次请求的固定前缀和摘要（聊天记录中只有它们是系统消息），写回聊天记录时去掉
         this.chatMemory.clear(this.chatSessionId);
-        this.chatMemory.add(this.chatSessionId, toolExecutionResult.conversationHistory());
+        this.chatMemory.add(this.chatSessionId, toolExecutionResult.conversationHistory()
+                .stream()
+                .filter(message -> !(message instanceof SystemMessage))
+                .toList());
 
         ToolResponseMessage toolResponseMessage = (ToolResponseMessage) toolExecutionResult
                 .conversationHistory()
@@ -295,11 +388,44 @@ public class JChatMind {
         saveMessage(toolResponseMessage);
         refreshPendingMessages();
 
-        if (toolResponseMessage.getResponses()
-                .stream()
-                .anyMatch(resp -> resp.name().equals("terminate"))) {
+        finishIfComplete(toolResponseMessage.getResponses());
+    }
+
+    /**
+     * 工具执行后判断能否直接结束，省掉一次只为收尾的模型调用：
+     * 只有调用了 terminate，且同批的其他工具都不需要读取结果（SIDE_EFFECT_TOOLS）并执行成功时才结束
+     * terminate 与检索、查询等需要读取结果的工具一起调用时，先把结果交给模型，避免在看到结果前就结束
+     * 没有调用 terminate 时总是继续下一步，由模型根据工具结果决定回答还是继续执行
+     */
+    private void finishIfComplete(List<ToolResponseMessage.ToolResponse> responses) {
+        boolean terminated = responses.stream().anyMatch(resp -> resp.name().equals("terminate"));
+        if (!terminated) {
+            return;
+        }
+        boolean failed = responses.stream()
+                .anyMatch(resp -> GuardedToolCallback.isFailureResult(resp.responseData()));
+        if (failed) {
+            return;
+        }
+        if (responses.stream().allMatch(resp -> resp.name().equals("terminate") || SIDE_EFFECT_TOOLS.contains(resp.name()))) {
             this.agentState = AgentState.FINISHED;
+            this.finishReason = AgentUsageTracker.FinishReason.TERMINATE;
             log.info("任务结束");
+        } else {
+            log.info("terminate 与需要读取结果的工具一起调用，继续下一步");
+        }
+    }
+
+    // 等待知识库预取（最多 agent.prefetch.wait-ms），把已完成的结果提供给第一步思考
+    private void preparePrefetchMessage() {
+        if (this.knowledgePrefetch == null) {
+            return;
+        }
+        String prefetched = this.knowledgePrefetch.await();
+        if (prefetched != null) {
+            this.prefetchMessage = new SystemMessage("【根据用户最新消息预先检索到的知识库片段】\n"
+                    + "可以直接参考这些内容回答；内容不足或需要其他信息时，再调用 KnowledgeTool 检索\n"
+                    + prefetched);
         }
     }
 
@@ -309,6 +435,7 @@ public class JChatMind {
             execute();
         } else { // 没有工具调用
             agentState = AgentState.FINISHED;
+            finishReason = AgentUsageTracker.FinishReason.TEXT_REPLY;
         }
     }
 
@@ -319,16 +446,20 @@ public class JChatMind {
         }
 
         try {
+            preparePrefetchMessage();
             for (int i = 0; i < MAX_STEPS && agentState != AgentState.FINISHED; i++) {
                 // 当前步骤，用于实现 Agent Loop
                 int currentStep = i + 1;
                 step();
-                if (currentStep >= MAX_STEPS) {
+                if (currentStep >= MAX_STEPS && agentState != AgentState.FINISHED) {
                     agentState = AgentState.FINISHED;
+                    finishReason = AgentUsageTracker.FinishReason.MAX_STEPS;
                     log.warn("Max steps reached, stopping agent");
                 }
             }
             agentState = AgentState.FINISHED;
+            agentUsageTracker.recordAnswer(this.agentId, this.llmCalls, this.finishReason);
+            log.info("回答完成: 模型调用 {} 次, 结束方式 {}", this.llmCalls, this.finishReason);
         } catch (Exception e) {
             agentState = AgentState.ERROR;
             log.error("Error running agent", e);
@@ -1,7 +1,11 @@
 package com.kama.jchatmind.agent;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.agent.memory.TokenWindowChatMemory;
+import com.kama.jchatmind.agent.tools.Memoizable;
 import com.kama.jchatmind.agent.tools.Tool;
+import com.kama.jchatmind.agent.tools.ToolGuard;
+import com.kama.jchatmind.agent.tools.ToolMemo;
 import com.kama.jchatmind.config.ChatClientRegistry;
 import com.kama.jchatmind.converter.AgentConverter;
 import com.kama.jchatmind.converter.ChatMessageConverter;
@@ -10,10 +14,12 @@ import com.kama.jchatmind.mapper.AgentMapper;
 import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
 import com.kama.jchatmind.model.dto.AgentDTO;
 import com.kama.jchatmind.model.dto.ChatMessageDTO;
+import com.kama.jchatmind.model.dto.ChatSessionDTO;
 import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
 import com.kama.jchatmind.model.entity.Agent;
 import com.kama.jchatmind.model.entity.KnowledgeBase;
 import com.kama.jchatmind.service.ChatMessageFacadeService;
+import com.kama.jchatmind.service.SessionSummaryService;
 import com.kama.jchatmind.service.SseService;
 import com.kama.jchatmind.service.ToolFacadeService;
 import org.slf4j.Logger;
@@ -23,9 +29,11 @@ import org.springframework.ai.chat.messages.*;
 import org.springframework.ai.tool.ToolCallback;
 import org.springframework.ai.tool.method.MethodToolCallbackProvider;
 import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -43,10 +51,31 @@ public class JChatMindFactory {
     private final ToolFacadeService toolFacadeService;
     private final ChatMessageFacadeService chatMessageFacadeService;
     private final ChatMessageConverter chatMessageConverter;
+    private final AgentUsageTracker agentUsageTracker;
+    private final SessionSummaryService sessionSummaryService;
+    private final ToolGuard toolGuard;
+    private final ToolMemo toolMemo;
+    private final KnowledgePrefetcher knowledgePrefetcher;
 
     // 运行时 Agent 配置
     private AgentDTO agentConfig;
 
+    // 聊天记录的 token 预算，见 TokenWindowChatMemory
+    @Value("${agent.memory.max-tokens:16000}")
+    private int memoryMaxTokens;
+
+    @Value("${agent.memory.max-user-tokens:6000}")
+    private int memoryMaxUserTokens;
+
+    @Value("${agent.memory.max-assistant-tokens:6000}")
+    private int memoryMaxAssistantTokens;
+
+    @Value("${agent.memory.max-tool-tokens:10000}")
+    private int memoryMaxToolTokens;
+
+    @Value("${agent.memory.max-tool-output-tokens:2000}")
+    private int memoryMaxToolOutputTokens;
+
     public JChatMindFactory(
             ChatClientRegistry chatClientRegistry,
             SseService sseService,
@@ -56,7 +85,12 @@ public class JChatMindFactory {
             KnowledgeBaseConverter knowledgeBaseConverter,
             ToolFacadeService toolFacadeService,
             ChatMessageFacadeService chatMessageFacadeService,
-            ChatMessageConverter chatMessageConverter
+            ChatMessageConverter chatMessageConverter,
+            AgentUsageTracker agentUsageTracker,
+            SessionSummaryService sessionSummaryService,
+            ToolGuard toolGuard,
+            ToolMemo toolMemo,
+            KnowledgePrefetcher knowledgePrefetcher
     ) {
         this.chatClientRegistry = chatClientRegistry;
         this.sseService = sseService;
@@ -67,6 +101,11 @@ public class JChatMindFactory {
         this.toolFacadeService = toolFacadeService;
         this.chatMessageFacadeService = chatMessageFacadeService;
         this.chatMessageConverter = chatMessageConverter;
+        this.agentUsageTracker = agentUsageTracker;
+        this.sessionSummaryService = sessionSummaryService;
+        this.toolGuard = toolGuard;
+        this.toolMemo = toolMemo;
+        this.knowledgePrefetcher = knowledgePrefetcher;
     }
 
     private Agent loadAgent(String agentId) {
@@ -75,10 +114,11 @@ public class JChatMindFactory {
 
     /**
      * 将数据库中存储的记忆恢复成 List<Message> 结构
+     * summarizedUntil 之前的消息已合并进会话摘要，不再加载
      */
-    private List<Message> loadMemory(String chatSessionId) {
+    private List<Message> loadMemory(String chatSessionId, LocalDateTime summarizedUntil) {
         int messageLength = agentConfig.getChatOptions().getMessageLength();
-        List<ChatMessageDTO> chatMessages = chatMessageFacadeService.getChatMessagesBySessionIdRecently(chatSessionId, messageLength);
+        List<ChatMessageDTO> chatMessages = chatMessageFacadeService.getChatMessagesBySessionIdRecently(chatSessionId, summarizedUntil, messageLength);
         List<Message> memory = new ArrayList<>();
         for (ChatMessageDTO chatMessageDTO : chatMessages) {
             switch (chatMessageDTO.getRole()) {
@@ -169,15 +209,23 @@ public class JChatMindFactory {
         return runtimeTools;
     }
 
-    private List<ToolCallback> buildToolCallbacks(List<Tool> runtimeTools) {
+    private List<ToolCallback> buildToolCallbacks(List<Tool> runtimeTools, String chatSessionId) {
         List<ToolCallback> callbacks = new ArrayList<>();
+        // 本次运行的工具结果缓存，同一轮里重复的只读调用直接复用结果
+        ToolMemo.Run memoRun = toolMemo.newRun(chatSessionId);
         for (Tool tool : runtimeTools) {
             Object target = resolveToolTarget(tool);
             ToolCallback[] toolCallbacks = MethodToolCallbackProvider.builder()
                     .toolObjects(target)
                     .build()
                     .getToolCallbacks();
-            callbacks.addAll(Arrays.asList(toolCallbacks));
+            Map<String, Memoizable> memoizableTools = ToolMemo.memoizableTools(
+                    target instanceof Class<?> type ? type : target.getClass());
+            // 每个工具调用都带超时与熔断，避免卡住的工具阻塞整个 Agent；缓存命中时不经过超时与熔断
+            for (ToolCallback toolCallback : toolCallbacks) {
+                ToolCallback guarded = toolGuard.wrap(toolCallback);
+                callbacks.add(memoRun.wrap(guarded, memoizableTools.get(toolCallback.getToolDefinition().name())));
+            }
         }
         return callbacks;
     }
@@ -197,8 +245,10 @@ public class JChatMindFactory {
             Agent agent,
             List<Message> memory,
             List<KnowledgeBaseDTO> knowledgeBases,
+            KnowledgePrefetch knowledgePrefetch,
             List<ToolCallback> toolCallbacks,
-            String chatSessionId
+            String chatSessionId,
+            String sessionSummary
     ) {
         ChatClient chatClient = chatClientRegistry.get(agent.getModel());
         if (Objects.isNull(chatClient)) {
@@ -210,38 +260,67 @@ public class JChatMindFactory {
                 agent.getDescription(),
                 agent.getSystemPrompt(),
                 chatClient,
-                agentConfig.getChatOptions().getMessageLength(),
+                buildChatMemory(),
                 memory,
+                sessionSummary,
                 toolCallbacks,
                 knowledgeBases,
+                knowledgePrefetch,
                 chatSessionId,
                 sseService,
                 chatMessageFacadeService,
-                chatMessageConverter
+                chatMessageConverter,
+                agentUsageTracker
         );
     }
 
+    private TokenWindowChatMemory buildChatMemory() {
+        Integer messageLength = agentConfig.getChatOptions().getMessageLength();
+        return TokenWindowChatMemory.builder()
+                .maxTokens(memoryMaxTokens)
+                .maxUserTokens(memoryMaxUserTokens)
+                .maxAssistantTokens(memoryMaxAssistantTokens)
+                .maxToolTokens(memoryMaxToolTokens)
+                .maxToolOutputTokens(memoryMaxToolOutputTokens)
+                .maxMessages(messageLength == null ? Integer.MAX_VALUE : messageLength)
+                .build();
+    }
+
     /**
      * 创建一个 JChatMind 实例
      */
     public JChatMind create(String agentId, String chatSessionId) {
+        return create(agentId, chatSessionId, null);
+    }
+
+    /**
+     * 创建一个 JChatMind 实例，userInput 不为空时先用它在 Agent 的知识库上发起预取，与后续的组装过程并行
+     */
+    public JChatMind create(String agentId, String chatSessionId, String userInput) {
         Agent agent = loadAgent(agentId);
         AgentDTO agentConfig = toAgentConfig(agent);
-        List<Message> memory = loadMemory(chatSessionId);
 
-        // 解析 agent 的支持的知识库
+        // 解析 agent 的支持的知识库，并立即开始预取
         List<KnowledgeBaseDTO> knowledgeBases = resolveRuntimeKnowledgeBases(agentConfig);
+        KnowledgePrefetch knowledgePrefetch = userInput == null ? null
+                : knowledgePrefetcher.start(userInput, knowledgeBases);
+
+        ChatSessionDTO.MetaData summary = sessionSummaryService.getSummary(chatSessionId);
+        List<Message> memory = loadMemory(chatSessionId, summary == null ? null : summary.getSummarizedUntil());
+
         // 解析 agent 支持的工具调用
         List<Tool> runtimeTools = resolveRuntimeTools(agentConfig);
         // 将工具调用转换成 ToolCallback 的形式
-        List<ToolCallback> toolCallbacks = buildToolCallbacks(runtimeTools);
+        List<ToolCallback> toolCallbacks = buildToolCallbacks(runtimeTools, chatSessionId);
 
         return buildAgentRuntime(
                 agent,
                 memory,
                 knowledgeBases,
+                knowledgePrefetch,
                 toolCallbacks,
-                chatSessionId
+                chatSessionId,
+                summary == null ? null : summary.getSummary()
         );
     }
 }
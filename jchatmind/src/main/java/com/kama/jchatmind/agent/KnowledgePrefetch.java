@@ -0,0 +1,109 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 一次 Agent 运行的知识库预取结果：用户消息到达后立即用消息原文在 Agent 可访问的每个知识库上检索，
+ * 与 Agent 的组装（加载记忆、摘要、工具）并行进行，由 KnowledgePrefetcher 创建
+ * - 第一步思考前，已完成的结果作为系统消息提供给模型，模型可以不调用 KnowledgeTool 直接回答
+ * - 模型以相同的知识库和查询调用 KnowledgeTool 时直接使用预取结果（进行中时等待它完成，不重复检索）
+ */
+public class KnowledgePrefetch {
+
+    private final String query;
+    private final List<KnowledgeBaseDTO> knowledgeBases;
+    // kbId -> 检索结果
+    private final Map<String, CompletableFuture<List<String>>> results;
+    // 第一步思考前最多等待的时间
+    private final long waitMs;
+    // 提供给模型的预取文本的最大长度
+    private final int maxChars;
+    private final MetricsRegistry metricsRegistry;
+
+    KnowledgePrefetch(String query,
+                      List<KnowledgeBaseDTO> knowledgeBases,
+                      Map<String, CompletableFuture<List<String>>> results,
+                      long waitMs,
+                      int maxChars,
+                      MetricsRegistry metricsRegistry) {
+        this.query = query;
+        this.knowledgeBases = knowledgeBases;
+        this.results = results;
+        this.waitMs = waitMs;
+        this.maxChars = maxChars;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * 最多等待 waitMs，把已完成的检索结果拼成提供给模型的文本，总长度不超过 maxChars
+     * 未完成的检索继续在后台执行，之后的工具调用仍可使用
+     *
+     * @return 没有可用结果时返回 null
+     */
+    public String await() {
+        try {
+            CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0]))
+                    .get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            metricsRegistry.increment("agent.prefetch.late");
+        } catch (ExecutionException e) {
+            // 部分失败时只使用成功的结果
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (KnowledgeBaseDTO kb : knowledgeBases) {
+            CompletableFuture<List<String>> future = results.get(kb.getId());
+            if (future == null || !future.isDone() || future.isCompletedExceptionally()) {
+                continue;
+            }
+            List<String> chunks = future.join();
+            if (chunks.isEmpty()) {
+                continue;
+            }
+            StringBuilder section = new StringBuilder();
+            section.append("[知识库 id=").append(kb.getId()).append(", name=").append(kb.getName()).append("]\n");
+            chunks.forEach(chunk -> section.append(chunk).append('\n'));
+            if (text.length() + section.length() > maxChars) {
+                int remaining = maxChars - text.length();
+                if (remaining > 0) {
+                    text.append(section, 0, remaining).append("…\n");
+                }
+                break;
+            }
+            text.append(section);
+        }
+        if (text.isEmpty()) {
+            return null;
+        }
+        metricsRegistry.increment("agent.prefetch.used");
+        return text.toString();
+    }
+
+    /**
+     * 工具调用时查找预取结果，只有知识库和查询文本（去掉首尾空白）都相同时才命中
+     *
+     * @return 未命中或预取失败时返回 null
+     */
+    public CompletableFuture<List<String>> find(String kbId, String query) {
+        if (query == null || !this.query.equals(query.strip())) {
+            return null;
+        }
+        CompletableFuture<List<String>> future = results.get(kbId);
+        if (future == null || future.isCompletedExceptionally()) {
+            return null;
+        }
+        metricsRegistry.increment("agent.prefetch.tool_hit");
+        return future;
+    }
+}
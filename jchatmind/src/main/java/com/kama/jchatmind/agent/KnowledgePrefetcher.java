@@ -0,0 +1,85 @@
+package com.kama.jchatmind.agent;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+import com.kama.jchatmind.service.RagService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 在用户消息到达时预先检索知识库（见 KnowledgePrefetch），省掉第一步「模型决定调用 KnowledgeTool -> 检索」的一次往返
+ * 检索结果同样进入 RetrievalCache，模型改写查询后再调用工具时也可能命中语义缓存
+ */
+@Slf4j
+@Component
+public class KnowledgePrefetcher {
+
+    private final RagService ragService;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadPoolTaskExecutor knowledgePrefetchExecutor;
+
+    @Value("${agent.prefetch.enabled:true}")
+    private boolean enabled;
+
+    // 查询过短（如「你好」）时不预取
+    @Value("${agent.prefetch.min-query-chars:4}")
+    private int minQueryChars;
+
+    @Value("${agent.prefetch.wait-ms:800}")
+    private long waitMs;
+
+    @Value("${agent.prefetch.max-chars:4000}")
+    private int maxChars;
+
+    public KnowledgePrefetcher(RagService ragService,
+                               MetricsRegistry metricsRegistry,
+                               @Qualifier("knowledgePrefetchExecutor") ThreadPoolTaskExecutor knowledgePrefetchExecutor) {
+        this.ragService = ragService;
+        this.metricsRegistry = metricsRegistry;
+        this.knowledgePrefetchExecutor = knowledgePrefetchExecutor;
+    }
+
+    /**
+     * 在每个知识库上异步检索 query，立即返回
+     *
+     * @return 未启用、查询过短或没有知识库时返回 null
+     */
+    public KnowledgePrefetch start(String query, List<KnowledgeBaseDTO> knowledgeBases) {
+        if (!enabled || knowledgeBases.isEmpty() || !StringUtils.hasText(query)
+                || query.strip().length() < minQueryChars) {
+            return null;
+        }
+        String normalizedQuery = query.strip();
+        Map<String, CompletableFuture<List<String>>> results = new HashMap<>();
+        for (KnowledgeBaseDTO kb : knowledgeBases) {
+            try {
+                results.put(kb.getId(), CompletableFuture.supplyAsync(
+                        () -> ragService.similaritySearch(kb.getId(), normalizedQuery), knowledgePrefetchExecutor));
+            } catch (RejectedExecutionException e) {
+                // 线程池已满，这个知识库不预取，由模型按需调用工具
+                metricsRegistry.increment("agent.prefetch.rejected");
+            }
+        }
+        if (results.isEmpty()) {
+            return null;
+        }
+        metricsRegistry.increment("agent.prefetch.started");
+        results.values().forEach(future -> future.whenComplete((chunks, error) -> {
+            if (error != null) {
+                metricsRegistry.increment("agent.prefetch.error");
+                log.warn("知识库预取失败: {}", error.getMessage());
+            }
+        }));
+        return new KnowledgePrefetch(normalizedQuery, knowledgeBases, results, waitMs, maxChars, metricsRegistry);
+    }
+}
@@ -0,0 +1,73 @@
+package com.kama.jchatmind.agent.memory;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.List;
+
+/**
+ * 本地 token 数估算，不依赖具体模型的分词器，只用于预算控制
+ * - 中日韩文字按每字 1 个 token 计（DeepSeek / GLM 的实际值略低，估算偏保守）
+ * - 其他连续的非空白字符按每 4 个字符 1 个 token 计，不足 4 个的按 1 个计
+ * - 每条消息额外计 4 个 token 的角色与格式开销
+ */
+public final class TokenEstimator {
+
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int tokens = 0;
+        int run = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (isCjk(codePoint)) {
+                tokens += (run + 3) / 4 + 1;
+                run = 0;
+            } else if (Character.isWhitespace(codePoint)) {
+                tokens += (run + 3) / 4;
+                run = 0;
+            } else {
+                run++;
+            }
+        }
+        return tokens + (run + 3) / 4;
+    }
+
+    public static int estimate(Message message) {
+        int tokens = MESSAGE_OVERHEAD + estimate(message.getText());
+        if (message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls()) {
+            for (AssistantMessage.ToolCall toolCall : assistantMessage.getToolCalls()) {
+                tokens += MESSAGE_OVERHEAD + estimate(toolCall.name()) + estimate(toolCall.arguments());
+            }
+        } else if (message instanceof ToolResponseMessage toolResponseMessage) {
+            for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+                tokens += MESSAGE_OVERHEAD + estimate(response.responseData());
+            }
+        }
+        return tokens;
+    }
+
+    public static int estimate(List<? extends Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
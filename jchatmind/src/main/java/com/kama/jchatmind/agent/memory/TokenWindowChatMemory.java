@@ -0,0 +1,242 @@
+package com.kama.jchatmind.agent.memory;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按 token 预算截取的聊天记录，替代按消息条数截取的 MessageWindowChatMemory
+ * - 写入时单条工具输出超过 maxToolOutputTokens 的保留首尾、省略中间，避免一次大查询撑满上下文；
+ *   截断结果（含省略说明）不超过 maxToolOutputTokens，Agent 每一步重新写入历史时不会被再次截断
+ * - 读取时从最新的消息向前累加，总量或某个角色（user / assistant / tool）超出预算时停止
+ * - 带工具调用的 assistant 消息与其后的工具返回视为一组，整组保留或整组丢弃，保证调用与返回成对出现
+ * - 最新的一组始终保留
+ * token 数由 TokenEstimator 在本地估算
+ */
+public class TokenWindowChatMemory implements ChatMemory {
+
+    private static final String TRUNCATED_MARKER = "...[工具输出过长，";
+
+    private final int maxTokens;
+    private final int maxUserTokens;
+    private final int maxAssistantTokens;
+    private final int maxToolTokens;
+    private final int maxToolOutputTokens;
+    private final int maxMessages;
+    private final Map<String, List<Message>> conversations = new ConcurrentHashMap<>();
+
+    private TokenWindowChatMemory(Builder builder) {
+        this.maxTokens = builder.maxTokens;
+        this.maxUserTokens = builder.maxUserTokens;
+        this.maxAssistantTokens = builder.maxAssistantTokens;
+        this.maxToolTokens = builder.maxToolTokens;
+        this.maxToolOutputTokens = builder.maxToolOutputTokens;
+        this.maxMessages = builder.maxMessages;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        List<Message> conversation = conversations.computeIfAbsent(conversationId, id -> new ArrayList<>());
+        synchronized (conversation) {
+            for (Message message : messages) {
+                conversation.add(truncateToolOutput(message));
+            }
+            // 超出窗口的旧消息之后也不会再被读取，直接丢弃
+            List<Message> window = window(conversation);
+            conversation.clear();
+            conversation.addAll(window);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        List<Message> conversation = conversations.get(conversationId);
+        if (conversation == null) {
+            return List.of();
+        }
+        synchronized (conversation) {
+            return List.copyOf(conversation);
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        conversations.remove(conversationId);
+    }
+
+    private List<Message> window(List<Message> conversation) {
+        List<List<Message>> groups = group(conversation);
+        List<List<Message>> selected = new ArrayList<>();
+        int total = 0, user = 0, assistant = 0, tool = 0, count = 0;
+        for (int i = groups.size() - 1; i >= 0; i--) {
+            List<Message> group = groups.get(i);
+            int groupUser = 0, groupAssistant = 0, groupTool = 0;
+            for (Message message : group) {
+                int tokens = TokenEstimator.estimate(message);
+                if (message instanceof UserMessage) {
+                    groupUser += tokens;
+                } else if (message instanceof ToolResponseMessage) {
+                    groupTool += tokens;
+                } else {
+                    groupAssistant += tokens;
+                }
+            }
+            int groupTotal = groupUser + groupAssistant + groupTool;
+            boolean fits = total + groupTotal <= maxTokens
+                    && user + groupUser <= maxUserTokens
+                    && assistant + groupAssistant <= maxAssistantTokens
+                    && tool + groupTool <= maxToolTokens
+                    && count + group.size() <= maxMessages;
+            if (!fits && !selected.isEmpty()) {
+                break;
+            }
+            selected.add(group);
+            total += groupTotal;
+            user += groupUser;
+            assistant += groupAssistant;
+            tool += groupTool;
+            count += group.size();
+        }
+
+        Collections.reverse(selected);
+        List<Message> window = new ArrayList<>(count);
+        selected.forEach(window::addAll);
+        // 丢掉对应 assistant 消息已被截掉的工具返回
+        while (!window.isEmpty() && window.get(0) instanceof ToolResponseMessage) {
+            window.remove(0);
+        }
+        return window;
+    }
+
+    /**
+     * 把带工具调用的 assistant 消息和紧随其后的工具返回分为一组，其余消息各自一组
+     */
+    private List<List<Message>> group(List<Message> conversation) {
+        List<List<Message>> groups = new ArrayList<>();
+        List<Message> current = null;
+        for (Message message : conversation) {
+            if (message instanceof ToolResponseMessage && current != null) {
+                current.add(message);
+                continue;
+            }
+            current = new ArrayList<>();
+            current.add(message);
+            groups.add(current);
+            if (!(message instanceof AssistantMessage assistantMessage && assistantMessage.hasToolCalls())) {
+                current = null;
+            }
+        }
+        return groups;
+    }
+
+    private Message truncateToolOutput(Message message) {
+        if (!(message instanceof ToolResponseMessage toolResponseMessage)) {
+            return message;
+        }
+        boolean truncated = false;
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>();
+        for (ToolResponseMessage.ToolResponse response : toolResponseMessage.getResponses()) {
+            String data = response.responseData();
+            int tokens = TokenEstimator.estimate(data);
+            // 已截断过的输出原样保留
+            if (tokens <= maxToolOutputTokens || data.contains(TRUNCATED_MARKER)) {
+                responses.add(response);
+                continue;
+            }
+            truncated = true;
+            responses.add(new ToolResponseMessage.ToolResponse(response.id(), response.name(),
+                    truncate(data, tokens)));
+        }
+        if (!truncated) {
+            return message;
+        }
+        return ToolResponseMessage.builder()
+                .responses(responses)
+                .metadata(toolResponseMessage.getMetadata())
+                .build();
+    }
+
+    /**
+     * 按估算的 token 比例保留开头约 70%、结尾约 30% 的内容，中间替换为省略说明
+     * 省略说明本身也计入 maxToolOutputTokens；首尾的切分点可能把一个词切成两段，估算超出时再按比例收缩
+     */
+    private String truncate(String data, int tokens) {
+        long lines = data.lines().count();
+        int keepTokens = Math.max(0, maxToolOutputTokens - TokenEstimator.estimate(note(lines, tokens, tokens)));
+        int keepChars = (int) ((long) data.length() * keepTokens / tokens);
+        while (true) {
+            int head = keepChars * 7 / 10;
+            int tail = keepChars - head;
+            String result = data.substring(0, head)
+                    + note(lines, tokens, tokens - keepTokens)
+                    + data.substring(data.length() - tail);
+            if (keepChars == 0 || TokenEstimator.estimate(result) <= maxToolOutputTokens) {
+                return result;
+            }
+            keepChars = keepChars * 9 / 10;
+        }
+    }
+
+    private static String note(long lines, int tokens, int omittedTokens) {
+        return "\n" + TRUNCATED_MARKER + "共 " + lines + " 行、约 " + tokens + " tokens，已省略中间约 "
+                + omittedTokens + " tokens；如需完整内容请缩小查询范围]...\n";
+    }
+
+    public static class Builder {
+        private int maxTokens = 16_000;
+        private int maxUserTokens = Integer.MAX_VALUE;
+        private int maxAssistantTokens = Integer.MAX_VALUE;
+        private int maxToolTokens = Integer.MAX_VALUE;
+        private int maxToolOutputTokens = 2_000;
+        private int maxMessages = Integer.MAX_VALUE;
+
+        public Builder maxTokens(int maxTokens) {
+            this.maxTokens = maxTokens;
+            return this;
+        }
+
+        public Builder maxUserTokens(int maxUserTokens) {
+            this.maxUserTokens = maxUserTokens;
+            return this;
+        }
+
+        public Builder maxAssistantTokens(int maxAssistantTokens) {
+            this.maxAssistantTokens = maxAssistantTokens;
+            return this;
+        }
+
+        public Builder maxToolTokens(int maxToolTokens) {
+            this.maxToolTokens = maxToolTokens;
+            return this;
+        }
+
+        public Builder maxToolOutputTokens(int maxToolOutputTokens) {
+            this.maxToolOutputTokens = maxToolOutputTokens;
+            return this;
+        }
+
+        /**
+         * 保留 Agent 原有的消息条数上限（ChatOptions.messageLength），与 token 预算同时生效
+         */
+        public Builder maxMessages(int maxMessages) {
+            this.maxMessages = maxMessages;
+            return this;
+        }
+
+        public TokenWindowChatMemory build() {
+            return new TokenWindowChatMemory(this);
+        }
+    }
+}
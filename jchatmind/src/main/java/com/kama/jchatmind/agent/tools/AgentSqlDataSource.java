@@ -0,0 +1,133 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型生成的 SQL 专用的只读连接池，与 MyBatis / 业务 JdbcTemplate 使用的主连接池隔离，
+ * 分析类查询再慢再多也不会占用保存聊天记录、加载 Agent 所需的连接
+ * - 连接在服务端设置 default_transaction_read_only 与 statement_timeout，不依赖 SQL 校验
+ * - 可配置为只读副本的地址，未配置时连接主库
+ * - 每个 Agent 同时执行的查询数受 max-concurrent-per-agent 限制，避免单个 Agent 占满整个池
+ * 不注册为 DataSource Bean，以免影响 Spring Boot 对主数据源的自动配置
+ */
+@Slf4j
+@Component
+public class AgentSqlDataSource {
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MetricsRegistry metricsRegistry;
+    private final int maxConcurrentPerAgent;
+    private final long acquireTimeoutMs;
+    private final Map<String, Semaphore> agentPermits = new ConcurrentHashMap<>();
+
+    public AgentSqlDataSource(MetricsRegistry metricsRegistry,
+                              @Value("${spring.datasource.url}") String primaryUrl,
+                              @Value("${spring.datasource.username}") String primaryUsername,
+                              @Value("${spring.datasource.password}") String primaryPassword,
+                              @Value("${agent.tools.database.datasource.url:}") String url,
+                              @Value("${agent.tools.database.datasource.username:}") String username,
+                              @Value("${agent.tools.database.datasource.password:}") String password,
+                              @Value("${agent.tools.database.datasource.pool-size:4}") int poolSize,
+                              @Value("${agent.tools.database.datasource.connection-timeout-ms:3000}") long connectionTimeoutMs,
+                              @Value("${agent.tools.database.datasource.statement-timeout-ms:10000}") long statementTimeoutMs,
+                              @Value("${agent.tools.database.max-concurrent-per-agent:2}") int maxConcurrentPerAgent,
+                              @Value("${agent.tools.database.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        this.metricsRegistry = metricsRegistry;
+        this.maxConcurrentPerAgent = maxConcurrentPerAgent;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+
+        boolean replica = StringUtils.hasText(url);
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("agent-sql");
+        config.setJdbcUrl(replica ? url : primaryUrl);
+        config.setUsername(StringUtils.hasText(username) ? username : primaryUsername);
+        config.setPassword(StringUtils.hasText(password) ? password : primaryPassword);
+        config.setMaximumPoolSize(poolSize);
+        config.setMinimumIdle(0);
+        config.setConnectionTimeout(connectionTimeoutMs);
+        config.setReadOnly(true);
+        // 会话级参数在建立连接时由服务端设置，即使 SQL 校验被绕过也无法写入
+        config.addDataSourceProperty("options",
+                "-c default_transaction_read_only=on -c statement_timeout=" + statementTimeoutMs);
+        // 连接池按需建立连接，启动时数据库不可用不影响应用启动
+        config.setInitializationFailTimeout(-1);
+        this.dataSource = new HikariDataSource(config);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+
+        metricsRegistry.gauge("agent.sql.pool.active", () -> poolStat(true));
+        metricsRegistry.gauge("agent.sql.pool.pending", () -> poolStat(false));
+        log.info("Agent SQL 只读连接池已创建: replica={}, poolSize={}, statementTimeoutMs={}, maxConcurrentPerAgent={}",
+                replica, poolSize, statementTimeoutMs, maxConcurrentPerAgent);
+    }
+
+    /**
+     * 以 agentId 的名义执行一次查询，该 Agent 的并发名额在 acquire-timeout-ms 内拿不到时抛出 AgentBusyException
+     */
+    public <T> T query(String agentId, PreparedStatementCreator statementCreator, ResultSetExtractor<T> extractor) {
+        Semaphore permits = agentPermits.computeIfAbsent(agentId == null ? "" : agentId,
+                id -> new Semaphore(maxConcurrentPerAgent, true));
+        long start = System.currentTimeMillis();
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                metricsRegistry.increment("agent.sql.rejected");
+                throw new AgentBusyException(maxConcurrentPerAgent);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("查询被中断");
+        } finally {
+            metricsRegistry.recordLatency("agent.sql.queue_wait", System.currentTimeMillis() - start);
+        }
+        try {
+            long queryStart = System.currentTimeMillis();
+            T result = jdbcTemplate.query(statementCreator, extractor);
+            metricsRegistry.recordLatency("agent.sql.latency", System.currentTimeMillis() - queryStart);
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 系统自身的元数据查询（如 SchemaCatalog）使用，不计入任何 Agent 的并发名额
+     */
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    private int poolStat(boolean active) {
+        if (dataSource.getHikariPoolMXBean() == null) {
+            return 0;
+        }
+        return active
+                ? dataSource.getHikariPoolMXBean().getActiveConnections()
+                : dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection();
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    public static class AgentBusyException extends RuntimeException {
+        AgentBusyException(int maxConcurrent) {
+            super("当前 Agent 同时执行的数据库查询已达上限（" + maxConcurrent + "），请等待之前的查询完成后再试");
+        }
+    }
+}
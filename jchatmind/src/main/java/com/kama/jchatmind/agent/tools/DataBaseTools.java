@@ -1,22 +1,50 @@
 package com.kama.jchatmind.agent.tools;
 
+import com.kama.jchatmind.agent.JChatMind;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.util.ArrayList;
-import java.util.List;
+import java.sql.PreparedStatement;
 
 @Component
 @Slf4j
 public class DataBaseTools implements Tool {
 
-    private final JdbcTemplate jdbcTemplate;
+    private final AgentSqlDataSource agentSqlDataSource;
+    private final QueryResultCache queryResultCache;
+    private final SchemaCatalog schemaCatalog;
 
-    public DataBaseTools(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    // 返回给模型的最大行数，查询外层包一层 LIMIT，数据库侧就只返回这么多行
+    @Value("${agent.tools.database.max-rows:200}")
+    private int maxRows;
+
+    // 返回给模型的结果文本上限（UTF-8 字节）
+    @Value("${agent.tools.database.max-bytes:16384}")
+    private int maxBytes;
+
+    @Value("${agent.tools.database.query-timeout-seconds:10}")
+    private int queryTimeoutSeconds;
+
+    @Value("${agent.tools.database.fetch-size:100}")
+    private int fetchSize;
+
+    // 根据前多少行估算列宽
+    @Value("${agent.tools.database.sample-rows:20}")
+    private int sampleRows;
+
+    @Value("${agent.tools.database.max-column-width:60}")
+    private int maxColumnWidth;
+
+    public DataBaseTools(AgentSqlDataSource agentSqlDataSource,
+                         QueryResultCache queryResultCache,
+                         SchemaCatalog schemaCatalog) {
+        this.agentSqlDataSource = agentSqlDataSource;
+        this.queryResultCache = queryResultCache;
+        this.schemaCatalog = schemaCatalog;
     }
 
     @Override
@@ -37,11 +65,12 @@ public class DataBaseTools implements Tool {
     /**
      * 执行一条 SQL 查询，从数据库中进行查询数据
      *
-     * @param sql SQL 查询语句（仅支持 SELECT 查询）
+     * @param sql         SQL 查询语句（仅支持 SELECT 查询）
+     * @param toolContext 由 JChatMind 传入，用于按 Agent 限制并发
      * @return 格式化的查询结果字符串
      */
     @org.springframework.ai.tool.annotation.Tool(name = "databaseQuery", description = "用于在 PostgreSQL 中执行只读查询（SELECT）。接收由模型生成的查询语句，并返回结构化数据结果。该工具仅用于检索数据，严禁任何写入或修改数据库的语句。")
-    public String query(String sql) {
+    public String query(String sql, ToolContext toolContext) {
         try {
             // 验证 SQL 语句安全性（只允许 SELECT 查询）
             String trimmedSql = sql.trim().toUpperCase();
@@ -50,97 +79,61 @@ public class DataBaseTools implements Tool {
                 return "错误：仅支持 SELECT 查询语句。提供的 SQL: " + sql;
             }
 
-            // 执行查询
-            List<String> rows = jdbcTemplate.query(sql, (ResultSet rs) -> {
-                List<String> resultRows = new ArrayList<>();
-                ResultSetMetaData metaData = rs.getMetaData();
-                int columnCount = metaData.getColumnCount();
-
-                if (columnCount == 0) {
-                    resultRows.add("查询结果为空（无列）");
-                    return resultRows;
-                }
-
-                // 获取列名和计算每列的最大宽度
-                List<String> columnNames = new ArrayList<>();
-                List<Integer> columnWidths = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnName(i);
-                    columnNames.add(columnName);
-                    columnWidths.add(columnName.length());
-                }
-
-                // 收集所有行数据并计算列宽
-                List<List<String>> dataRows = new ArrayList<>();
-                while (rs.next()) {
-                    List<String> rowData = new ArrayList<>();
-                    for (int i = 1; i <= columnCount; i++) {
-                        Object value = rs.getObject(i);
-                        String valueStr = value == null ? "NULL" : value.toString();
-                        rowData.add(valueStr);
-                        // 更新列宽
-                        int currentWidth = columnWidths.get(i - 1);
-                        if (valueStr.length() > currentWidth) {
-                            columnWidths.set(i - 1, valueStr.length());
-                        }
-                    }
-                    dataRows.add(rowData);
-                }
-
-                // 格式化表头
-                StringBuilder header = new StringBuilder();
-                header.append("| ");
-                for (int i = 0; i < columnCount; i++) {
-                    String columnName = columnNames.get(i);
-                    int width = columnWidths.get(i);
-                    header.append(String.format("%-" + width + "s", columnName)).append(" | ");
-                }
-                resultRows.add(header.toString());
-
-                // 添加分隔线
-                StringBuilder separator = new StringBuilder();
-                separator.append("|");
-                for (int i = 0; i < columnCount; i++) {
-                    int width = columnWidths.get(i);
-                    separator.append("-".repeat(width + 2)).append("|");
-                }
-                resultRows.add(separator.toString());
-
-                // 格式化数据行
-                if (dataRows.isEmpty()) {
-                    StringBuilder emptyRow = new StringBuilder();
-                    emptyRow.append("| ");
-                    int totalWidth = columnWidths.stream().mapToInt(w -> w + 3).sum() - 1;
-                    emptyRow.append(String.format("%-" + (totalWidth - 2) + "s", "(无数据)"));
-                    emptyRow.append(" |");
-                    resultRows.add(emptyRow.toString());
-                } else {
-                    for (List<String> rowData : dataRows) {
-                        StringBuilder row = new StringBuilder();
-                        row.append("| ");
-                        for (int i = 0; i < columnCount; i++) {
-                            String value = rowData.get(i);
-                            int width = columnWidths.get(i);
-                            row.append(String.format("%-" + width + "s", value)).append(" | ");
-                        }
-                        resultRows.add(row.toString());
-                    }
-                }
-
-                return resultRows;
-            });
-
-            int dataRowCount = rows.size() - 2; // 减去表头和分隔线
-            if (rows.size() > 2 && rows.get(rows.size() - 1).contains("(无数据)")) {
-                dataRowCount = 0;
+            String cached = queryResultCache.get(sql);
+            if (cached != null) {
+                log.info("SQL 查询命中缓存");
+                return cached;
             }
 
-            log.info("成功执行 SQL 查询，返回 {} 行数据", dataRowCount);
-            // 将结果格式化为字符串
-            return "查询结果:\n" + String.join("\n", rows);
+            String agentId = toolContext == null ? null
+                    : (String) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_AGENT_ID);
+            QueryResultFormatter.Result result = agentSqlDataSource.query(agentId, connection -> {
+                PreparedStatement statement = connection.prepareStatement(limit(sql));
+                // PostgreSQL 驱动在超时后发送取消请求，避免慢查询长时间占用连接
+                statement.setQueryTimeout(queryTimeoutSeconds);
+                statement.setMaxRows(maxRows + 1);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, new QueryResultFormatter(maxRows, maxBytes, sampleRows, maxColumnWidth));
+
+            log.info("成功执行 SQL 查询，返回 {} 行数据，truncated={}", result.rowCount(), result.truncated());
+            String output = "查询结果:\n" + result.text();
+            queryResultCache.put(sql, output);
+            return output;
+        } catch (AgentSqlDataSource.AgentBusyException e) {
+            log.warn("Agent 数据库查询并发已满: {}", e.getMessage());
+            return "错误：" + e.getMessage();
         } catch (Exception e) {
             log.error("未知错误: {}", e.getMessage(), e);
             return "错误：操作失败 - " + e.getMessage() + "\nSQL: " + sql;
         }
     }
+
+    /**
+     * 查看表结构，结果来自预先加载的表结构目录，不需要自己查询 information_schema
+     *
+     * @param tableName 表名，为空时列出所有表
+     * @return 表概览或指定表的列定义
+     */
+    @org.springframework.ai.tool.annotation.Tool(name = "describeSchema", description = "查看 PostgreSQL 数据库的表结构。tableName 为空时列出所有表（含估算行数），否则返回该表的列名、类型、主键等信息。编写 databaseQuery 的 SQL 前应先用它确认表名和列名。")
+    @Memoizable(scope = Memoizable.Scope.SESSION, ttlSeconds = 600)
+    public String describeSchema(@ToolParam(required = false, description = "表名，为空时列出所有表") String tableName) {
+        try {
+            return StringUtils.hasText(tableName) ? schemaCatalog.describeTable(tableName) : schemaCatalog.describeTables();
+        } catch (Exception e) {
+            log.error("读取表结构失败: {}", e.getMessage(), e);
+            return "错误：读取表结构失败 - " + e.getMessage();
+        }
+    }
+
+    /**
+     * 在原查询外包一层 LIMIT，多取一行用于判断结果是否被截断；模型自带的 LIMIT / ORDER BY 在子查询内照常生效
+     */
+    private String limit(String sql) {
+        String body = sql.strip();
+        while (body.endsWith(";")) {
+            body = body.substring(0, body.length() - 1).stripTrailing();
+        }
+        return "SELECT * FROM (" + body + ") AS limited_query LIMIT " + (maxRows + 1);
+    }
 }
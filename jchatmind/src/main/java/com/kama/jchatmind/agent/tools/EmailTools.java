@@ -1,7 +1,11 @@
 package com.kama.jchatmind.agent.tools;
 
+import com.kama.jchatmind.agent.JChatMind;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.model.vo.EmailOutboxVO;
 import com.kama.jchatmind.service.EmailService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.stereotype.Component;
 
 @Slf4j
@@ -21,7 +25,7 @@ public class EmailTools implements Tool {
 
     @Override
     public String getDescription() {
-        return "一个用于发送邮件的工具，可以通过QQ邮箱发送邮件给指定的收件人。邮件发送采用异步方式，不会阻塞工具调用。";
+        return "一个用于发送邮件的工具，可以通过QQ邮箱发送邮件给指定的收件人。邮件进入发件箱后由后台分批发送，失败自动重试，可以按邮件 ID 查询发送状态。";
     }
 
     @Override
@@ -30,18 +34,18 @@ public class EmailTools implements Tool {
     }
 
     /**
-     * 发送邮件（异步执行）
+     * 发送邮件（写入发件箱，由后台 worker 发送）
      *
      * @param to      收件人邮箱地址
      * @param subject 邮件主题
      * @param content 邮件内容
-     * @return 发送结果信息
+     * @return 提交结果信息，包含邮件 ID
      */
     @org.springframework.ai.tool.annotation.Tool(
             name = "sendEmail",
-            description = "发送邮件到指定的收件人。参数包括：to（收件人邮箱地址，必填）、subject（邮件主题，必填）、content（邮件正文内容，必填）。邮件采用异步方式发送，工具调用会立即返回，实际发送在后台执行。"
+            description = "发送邮件到指定的收件人。参数包括：to（收件人邮箱地址，必填）、subject（邮件主题，必填）、content（邮件正文内容，必填）。邮件进入发件箱后工具立即返回邮件 ID，实际发送在后台执行，失败会自动重试，可以用 getEmailStatus 查询是否已送达。"
     )
-    public String sendEmail(String to, String subject, String content) {
+    public String sendEmail(String to, String subject, String content, ToolContext toolContext) {
         // 验证参数
         if (to == null || to.trim().isEmpty()) {
             return "错误：收件人邮箱地址不能为空";
@@ -58,10 +62,55 @@ public class EmailTools implements Tool {
             return "错误：收件人邮箱地址格式不正确";
         }
 
-        // 异步发送邮件
-        emailService.sendEmailAsync(to.trim(), subject.trim(), content.trim());
+        String agentId = toolContext == null ? null
+                : (String) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_AGENT_ID);
+        String chatSessionId = toolContext == null ? null
+                : (String) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_CHAT_SESSION_ID);
+        String messageId = emailService.submit(to.trim(), subject.trim(), content.trim(), agentId, chatSessionId);
 
-        log.info("邮件已提交异步发送，收件人: {}, 主题: {}", to, subject);
-        return String.format("邮件已提交发送！\n收件人: %s\n主题: %s\n邮件正在后台异步发送中...", to, subject);
+        log.info("邮件已提交到发件箱，messageId: {}, 收件人: {}, 主题: {}", messageId, to, subject);
+        return String.format("邮件已提交发送！\n邮件ID: %s\n收件人: %s\n主题: %s\n邮件正在后台发送中，可以用 getEmailStatus 查询发送状态。",
+                messageId, to, subject);
+    }
+
+    /**
+     * 查询邮件发送状态
+     *
+     * @param messageId sendEmail 返回的邮件 ID
+     * @return 邮件状态信息，只能查询当前 Agent 在当前会话中提交的邮件
+     */
+    @org.springframework.ai.tool.annotation.Tool(
+            name = "getEmailStatus",
+            description = "查询通过 sendEmail 提交的邮件的发送状态。参数为 sendEmail 返回的邮件 ID（messageId）。状态：PENDING（等待发送或等待重试）、SENDING（发送中）、SENT（已发送）、FAILED（发送失败，不再重试）。"
+    )
+    public String getEmailStatus(String messageId, ToolContext toolContext) {
+        if (messageId == null || messageId.trim().isEmpty()) {
+            return "错误：邮件ID不能为空";
+        }
+        String agentId = toolContext == null ? null
+                : (String) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_AGENT_ID);
+        String chatSessionId = toolContext == null ? null
+                : (String) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_CHAT_SESSION_ID);
+        EmailOutboxVO message;
+        try {
+            message = emailService.getMessage(messageId.trim(), agentId, chatSessionId);
+        } catch (BizException e) {
+            return "错误：" + e.getMessage();
+        }
+        StringBuilder result = new StringBuilder();
+        result.append("邮件ID: ").append(message.getId()).append("\n")
+                .append("收件人: ").append(message.getRecipient()).append("\n")
+                .append("主题: ").append(message.getSubject()).append("\n")
+                .append("状态: ").append(message.getStatus()).append("\n")
+                .append("尝试次数: ").append(message.getAttempts());
+        if (message.getSentAt() != null) {
+            result.append("\n发送时间: ").append(message.getSentAt());
+        } else if (EmailService.Status.PENDING.name().equals(message.getStatus()) && message.getAttempts() > 0) {
+            result.append("\n下次重试时间: ").append(message.getNextRunAt());
+        }
+        if (message.getLastError() != null) {
+            result.append("\n最近一次错误: ").append(message.getLastError());
+        }
+        return result.toString();
     }
 }
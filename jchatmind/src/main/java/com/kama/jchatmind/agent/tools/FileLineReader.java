@@ -0,0 +1,297 @@
+package com.kama.jchatmind.agent.tools;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 按行号随机读取大文件，内存占用与文件大小无关，供 FileSystemTools 的分段读取、tail、grep 使用
+ * - 行偏移索引：每 INDEX_STRIDE 行记录一次字节偏移，通过内存映射分段扫描换行符建立，不解码内容；
+ *   按（路径、大小、修改时间）缓存，文件变化后重建
+ * - 读取时从不超过起始行的最近索引点开始顺序扫描，最多多扫 INDEX_STRIDE - 1 行
+ * - 返回内容按字节数封顶，超长的单行按字节截断（在 UTF-8 字符边界处）
+ * 行号从 1 开始，按 UTF-8 解码
+ */
+class FileLineReader {
+
+    static final int INDEX_STRIDE = 1000;
+
+    // 建立索引时每次映射的窗口大小
+    private static final long MAP_WINDOW = 64L << 20;
+    private static final int MAX_CACHED_INDEXES = 16;
+    // grep 匹配时单行最多读取的字节数，超出部分不参与匹配
+    private static final int MAX_MATCH_LINE_BYTES = 64 * 1024;
+
+    private final int maxOutputBytes;
+    private final int maxLineBytes;
+    private final Map<IndexKey, LineIndex> indexes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<IndexKey, LineIndex> eldest) {
+            return size() > MAX_CACHED_INDEXES;
+        }
+    };
+
+    FileLineReader(int maxOutputBytes, int maxLineBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+        this.maxLineBytes = maxLineBytes;
+    }
+
+    /**
+     * 读取 [startLine, startLine + lineCount) 行
+     */
+    Page read(Path path, long startLine, int lineCount) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            LineIndex index = index(path, channel);
+            long first = Math.max(1, startLine);
+            LineInput in = openAt(channel, index, first);
+            Output output = new Output();
+            long line = first;
+            for (int i = 0; i < lineCount; i++) {
+                Line next = in.readLine(maxLineBytes);
+                if (next == null) {
+                    break;
+                }
+                if (!output.append(line, next)) {
+                    return new Page(output.text(), first, line - 1, index.totalLines, true);
+                }
+                line++;
+            }
+            return new Page(output.text(), first, line - 1, index.totalLines, false);
+        }
+    }
+
+    /**
+     * 读取最后 lineCount 行
+     */
+    Page tail(Path path, int lineCount) throws IOException {
+        long totalLines;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            totalLines = index(path, channel).totalLines;
+        }
+        return read(path, Math.max(1, totalLines - lineCount + 1), lineCount);
+    }
+
+    /**
+     * 从 fromLine 开始顺序扫描，返回匹配 pattern 的行（带行号），最多 maxMatches 条；
+     * 提前停止时 truncated 为 true，可从 lastLine + 1 继续
+     */
+    Page grep(Path path, Pattern pattern, long fromLine, int maxMatches) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            LineIndex index = index(path, channel);
+            long first = Math.max(1, fromLine);
+            LineInput in = openAt(channel, index, first);
+            Output output = new Output();
+            long line = first - 1;
+            long firstMatch = 0;
+            long lastMatch = 0;
+            int matches = 0;
+            Line next;
+            while ((next = in.readLine(MAX_MATCH_LINE_BYTES)) != null) {
+                line++;
+                if (!pattern.matcher(next.text()).find()) {
+                    continue;
+                }
+                if (matches >= maxMatches || !output.append(line, next)) {
+                    return new Page(output.text(), firstMatch, lastMatch, index.totalLines, true);
+                }
+                if (matches++ == 0) {
+                    firstMatch = line;
+                }
+                lastMatch = line;
+            }
+            return new Page(output.text(), firstMatch, lastMatch, index.totalLines, false);
+        }
+    }
+
+    /**
+     * 定位到第 line 行的开头：先跳到不超过该行的最近索引点，再逐行跳过
+     */
+    private static LineInput openAt(FileChannel channel, LineIndex index, long line) throws IOException {
+        int slot = (int) Math.min((line - 1) / INDEX_STRIDE, index.offsets.length - 1);
+        long current = (long) slot * INDEX_STRIDE + 1;
+        channel.position(index.offsets[slot]);
+        LineInput in = new LineInput(Channels.newInputStream(channel));
+        while (current < line && in.readLine(0) != null) {
+            current++;
+        }
+        return in;
+    }
+
+    private LineIndex index(Path path, FileChannel channel) throws IOException {
+        IndexKey key = new IndexKey(path, channel.size(), Files.getLastModifiedTime(path).toMillis());
+        synchronized (indexes) {
+            LineIndex index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+        }
+        LineIndex index = buildIndex(channel, key.size);
+        synchronized (indexes) {
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    private static LineIndex buildIndex(FileChannel channel, long size) throws IOException {
+        long[] offsets = new long[16];
+        int count = 1;
+        long newlines = 0;
+        byte lastByte = '\n';
+        for (long position = 0; position < size; position += MAP_WINDOW) {
+            int length = (int) Math.min(MAP_WINDOW, size - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n' && ++newlines % INDEX_STRIDE == 0) {
+                    if (count == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, count * 2);
+                    }
+                    offsets[count++] = position + i + 1;
+                }
+            }
+            lastByte = buffer.get(length - 1);
+        }
+        // 最后一行没有换行符时也算一行
+        long totalLines = newlines + (lastByte == '\n' ? 0 : 1);
+        return new LineIndex(Arrays.copyOf(offsets, count), totalLines);
+    }
+
+    /**
+     * 不超过 length 的最大截断位置，保证 bytes[0, 返回值) 不以半个 UTF-8 字符结尾
+     */
+    static int utf8Boundary(byte[] bytes, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        // 找到最后一个字符的首字节（UTF-8 字符最长 4 字节）
+        int start = length - 1;
+        while (start > 0 && length - start < 4 && (bytes[start] & 0xC0) == 0x80) {
+            start--;
+        }
+        int lead = bytes[start] & 0xFF;
+        int size = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+        return start + size > length ? start : length;
+    }
+
+    /**
+     * 按块读取文件，在缓冲区内查找换行符，不逐字节调用 InputStream.read()
+     */
+    private static class LineInput {
+        private final InputStream in;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+        private int limit;
+
+        LineInput(InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * 读取一行（不含换行符），只保留前 maxBytes 个字节，其余跳过；到达文件末尾返回 null
+         * 截断时退回到完整的 UTF-8 字符边界，不会把多字节字符切成半个
+         */
+        Line readLine(int maxBytes) throws IOException {
+            byte[] kept = new byte[Math.min(maxBytes, 256)];
+            int length = 0;
+            long total = 0;
+            boolean newline = false;
+            while (!newline) {
+                if (position == limit && !fill()) {
+                    break;
+                }
+                int end = position;
+                while (end < limit && buffer[end] != '\n') {
+                    end++;
+                }
+                int keep = Math.min(end - position, maxBytes - length);
+                if (keep > 0) {
+                    if (length + keep > kept.length) {
+                        kept = Arrays.copyOf(kept, Math.min(maxBytes, Math.max(kept.length * 2, length + keep)));
+                    }
+                    System.arraycopy(buffer, position, kept, length, keep);
+                    length += keep;
+                }
+                total += end - position;
+                newline = end < limit;
+                position = newline ? end + 1 : end;
+            }
+            if (!newline && total == 0) {
+                return null;
+            }
+            boolean clipped = total > maxBytes;
+            if (clipped) {
+                length = utf8Boundary(kept, length);
+            } else if (length > 0 && kept[length - 1] == '\r') {
+                length--;
+            }
+            return new Line(kept, length, total, clipped);
+        }
+
+        private boolean fill() throws IOException {
+            position = 0;
+            limit = Math.max(in.read(buffer), 0);
+            return limit > 0;
+        }
+    }
+
+    private class Output {
+        private final StringBuilder text = new StringBuilder();
+        private int bytes;
+
+        boolean append(long lineNumber, Line line) {
+            int length = line.length();
+            boolean clipped = line.clipped();
+            if (length > maxLineBytes) {
+                length = utf8Boundary(line.bytes(), maxLineBytes);
+                clipped = true;
+            }
+            String formatted = lineNumber + ": " + new String(line.bytes(), 0, length, StandardCharsets.UTF_8)
+                    + (clipped ? " ...[该行过长已截断，共 " + line.totalBytes() + " 字节]" : "");
+            int lineBytes = formatted.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (bytes + lineBytes > maxOutputBytes) {
+                return false;
+            }
+            text.append(formatted).append('\n');
+            bytes += lineBytes;
+            return true;
+        }
+
+        String text() {
+            return text.toString();
+        }
+    }
+
+    /**
+     * @param firstLine  返回内容的第一行行号（grep 时为第一条匹配的行号，无匹配时为 0）
+     * @param lastLine   返回内容的最后一行行号（grep 时为最后一条匹配的行号）
+     * @param totalLines 文件总行数
+     * @param truncated  是否因输出上限提前停止
+     */
+    record Page(String text, long firstLine, long lastLine, long totalLines, boolean truncated) {
+    }
+
+    /**
+     * @param bytes      保留的内容，有效部分为 [0, length)
+     * @param totalBytes 该行的实际字节数
+     */
+    private record Line(byte[] bytes, int length, long totalBytes, boolean clipped) {
+        String text() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private record LineIndex(long[] offsets, long totalLines) {
+    }
+
+    private record IndexKey(Path path, long size, long modifiedMillis) {
+    }
+}
@@ -0,0 +1,203 @@
+package com.kama.jchatmind.agent.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * 并行遍历目录树查找文件，供 FileSystemTools.searchFiles 使用
+ * - 每个目录一个 ForkJoin 子任务，子目录并行展开；不跟随符号链接，跳过 .git、node_modules 等目录
+ * - 按 glob 匹配路径，可选按正则匹配文件内容（跳过过大的文件和二进制文件）
+ * - 匹配数达到上限或遍历的条目数超过 MAX_VISITED 后停止，结果按路径排序
+ */
+class FileSearcher {
+
+    static final Set<String> SKIPPED_DIRECTORIES = Set.of(".git", ".idea", ".gradle", ".mvn", "node_modules", "target", "build");
+
+    // 单次搜索最多遍历的条目数，避免在超大目录树上长时间运行
+    static final int MAX_VISITED = 200_000;
+    // 超过该大小的文件不做内容匹配
+    private static final long MAX_CONTENT_FILE_BYTES = 10L << 20;
+    private static final int MAX_SNIPPET_CHARS = 200;
+
+    private final ForkJoinPool pool;
+
+    FileSearcher(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @param root       搜索的根目录
+     * @param glob       路径的 glob 模式，不含 / 时只匹配文件名；为空表示匹配所有文件
+     * @param content    文件内容的正则，为 null 时只按路径匹配
+     * @param maxResults 最多返回的匹配数
+     */
+    Result search(Path root, String glob, Pattern content, int maxResults) {
+        PathMatcher matcher = matcher(glob);
+        AtomicInteger found = new AtomicInteger();
+        ConcurrentLinkedQueue<Match> matches = new ConcurrentLinkedQueue<>();
+        Visitor visitor = new Visitor() {
+            @Override
+            public boolean stopped() {
+                // 多找到一个即可确定结果被截断
+                return found.get() > maxResults;
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attributes) {
+                Path relative = root.relativize(file);
+                if (!matches(matcher, glob, relative)) {
+                    return;
+                }
+                Match match = content == null
+                        ? new Match(relative, attributes.size(), 0, null)
+                        : grepFirst(file, relative, attributes.size(), content);
+                if (match != null && found.incrementAndGet() <= maxResults) {
+                    matches.add(match);
+                }
+            }
+        };
+        int visited = walk(root, visitor);
+        List<Match> sorted = new ArrayList<>(matches);
+        sorted.sort(Comparator.comparing(match -> match.path().toString()));
+        return new Result(sorted, visited, found.get() > maxResults || visited >= MAX_VISITED);
+    }
+
+    /**
+     * 并行遍历 root 下的所有目录和文件，返回遍历的条目数；超过 MAX_VISITED 时提前停止，返回值不小于 MAX_VISITED
+     */
+    int walk(Path root, Visitor visitor) {
+        AtomicInteger visited = new AtomicInteger();
+        visitor.visitDirectory(root);
+        pool.invoke(new DirectoryTask(root, visitor, visited));
+        return visited.get();
+    }
+
+    static PathMatcher matcher(String glob) {
+        if (glob == null || glob.isBlank()) {
+            return null;
+        }
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob.strip());
+    }
+
+    static boolean matches(PathMatcher matcher, String glob, Path relative) {
+        if (matcher == null) {
+            return true;
+        }
+        return glob.contains("/") ? matcher.matches(relative) : matcher.matches(relative.getFileName());
+    }
+
+    private static Match grepFirst(Path file, Path relative, long size, Pattern content) {
+        if (size > MAX_CONTENT_FILE_BYTES) {
+            return null;
+        }
+        // InputStreamReader 遇到非法 UTF-8 时替换而不是抛异常
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.indexOf('\0') >= 0) {
+                    // 二进制文件
+                    return null;
+                }
+                if (content.matcher(line).find()) {
+                    String snippet = line.strip();
+                    if (snippet.length() > MAX_SNIPPET_CHARS) {
+                        snippet = snippet.substring(0, MAX_SNIPPET_CHARS) + "…";
+                    }
+                    return new Match(relative, size, lineNumber, snippet);
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    void close() {
+        pool.shutdownNow();
+    }
+
+    interface Visitor {
+        default boolean stopped() {
+            return false;
+        }
+
+        default void visitDirectory(Path directory) {
+        }
+
+        void visitFile(Path file, BasicFileAttributes attributes);
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final Visitor visitor;
+        private final AtomicInteger visited;
+
+        DirectoryTask(Path directory, Visitor visitor, AtomicInteger visited) {
+            this.directory = directory;
+            this.visitor = visitor;
+            this.visited = visited;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (visitor.stopped() || visited.incrementAndGet() > MAX_VISITED) {
+                        break;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (!SKIPPED_DIRECTORIES.contains(entry.getFileName().toString())) {
+                            visitor.visitDirectory(entry);
+                            subtasks.add(new DirectoryTask(entry, visitor, visited));
+                        }
+                    } else if (attributes.isRegularFile()) {
+                        visitor.visitFile(entry, attributes);
+                    }
+                }
+            } catch (IOException e) {
+                // 无权限或遍历过程中被删除的目录跳过，已收集的子目录照常遍历
+            }
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * @param line    内容匹配时第一处匹配的行号，只按路径匹配时为 0
+     * @param snippet 匹配行的内容
+     */
+    record Match(Path path, long size, int line, String snippet) {
+    }
+
+    /**
+     * @param truncated 是否因结果数或遍历条目数达到上限而提前停止
+     */
+    record Result(List<Match> matches, int visited, boolean truncated) {
+    }
+}
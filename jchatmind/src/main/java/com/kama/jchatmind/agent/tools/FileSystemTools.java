@@ -3,12 +3,19 @@ package com.kama.jchatmind.agent.tools;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Stream;
 
 //@Component 禁用文件系统相关工具
@@ -18,6 +25,26 @@ public class FileSystemTools implements Tool {
     // 允许访问的基础目录，防止路径遍历攻击
     private static final String BASE_DIRECTORY = System.getProperty("user.dir");
 
+    // 单次返回给模型的内容上限（UTF-8 字节），不超过该大小的文件 readFile 直接整体返回
+    private static final int MAX_OUTPUT_BYTES = 32 * 1024;
+    // 单行最多返回的字节数（UTF-8），超长的行（如压缩后的 JSON）截断
+    private static final int MAX_LINE_BYTES = 4 * 1024;
+    private static final int DEFAULT_PAGE_LINES = 200;
+    private static final int MAX_PAGE_LINES = 1_000;
+    private static final int DEFAULT_GREP_MATCHES = 50;
+    private static final int MAX_GREP_MATCHES = 200;
+
+    // listFiles 最多列出的条目数
+    private static final int MAX_LIST_ENTRIES = 500;
+    private static final int DEFAULT_SEARCH_RESULTS = 100;
+    private static final int MAX_SEARCH_RESULTS = 500;
+    // 为工作目录维护路径索引（WatchService 增量更新），只按路径查找时不再遍历磁盘
+    private static final boolean PATH_INDEX_ENABLED = true;
+
+    private final FileLineReader lineReader = new FileLineReader(MAX_OUTPUT_BYTES, MAX_LINE_BYTES);
+    private final FileSearcher fileSearcher = new FileSearcher(Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+    private volatile PathIndex pathIndex;
+
     @Override
     public String getName() {
         return "fileSystemTool";
@@ -34,14 +61,14 @@ public class FileSystemTools implements Tool {
     }
 
     /**
-     * 读取文件内容
+     * 读取文件内容，大文件只返回开头一页，避免整个文件进入内存和上下文
      *
      * @param filePath 文件路径（相对于工作目录）
      * @return 文件内容
      */
     @org.springframework.ai.tool.annotation.Tool(
             name = "readFile",
-            description = "读取指定文件的内容。参数：filePath - 文件路径（相对于工作目录）"
+            description = "读取指定文件的内容。文件超过 32KB 时只返回开头部分，其余内容请使用 readFileLines、tailFile 或 grepFile。参数：filePath - 文件路径（相对于工作目录）"
     )
     public String readFile(String filePath) {
         try {
@@ -55,6 +82,14 @@ public class FileSystemTools implements Tool {
                 return "错误：路径不是文件 - " + filePath;
             }
 
+            long size = Files.size(path);
+            if (size > MAX_OUTPUT_BYTES) {
+                FileLineReader.Page page = lineReader.read(path, 1, DEFAULT_PAGE_LINES);
+                log.info("文件过大，只读取开头部分: {}, size={}", filePath, size);
+                return "文件较大（" + formatFileSize(size) + "，共 " + page.totalLines() + " 行），以下为开头部分，"
+                        + "请使用 readFileLines 分段读取、tailFile 查看末尾或 grepFile 搜索:\n" + describePage(page);
+            }
+
             String content = Files.readString(path);
             log.info("成功读取文件: {}", filePath);
             return "文件内容:\n" + content;
@@ -71,6 +106,89 @@ public class FileSystemTools implements Tool {
         }
     }
 
+    /**
+     * 按行号分段读取文件，适用于大文件
+     *
+     * @param filePath  文件路径（相对于工作目录）
+     * @param startLine 起始行号，从 1 开始
+     * @param lineCount 读取的行数
+     * @return 带行号的文件内容
+     */
+    @org.springframework.ai.tool.annotation.Tool(
+            name = "readFileLines",
+            description = "按行号分段读取文件，返回带行号的内容，适用于大文件（如日志）。参数：filePath - 文件路径（相对于工作目录），startLine - 起始行号（从 1 开始），lineCount - 读取行数（默认 200，最多 1000）"
+    )
+    public String readFileLines(String filePath, Long startLine, Integer lineCount) {
+        try {
+            Path path = validateAndResolveFile(filePath);
+            FileLineReader.Page page = lineReader.read(path, startLine == null ? 1 : startLine, pageLines(lineCount));
+            log.info("成功分段读取文件: {}, lines={}-{}", filePath, page.firstLine(), page.lastLine());
+            if (page.lastLine() < page.firstLine()) {
+                return "起始行超出文件范围，文件共 " + page.totalLines() + " 行";
+            }
+            return describePage(page);
+        } catch (Exception e) {
+            return handleReadError(filePath, e);
+        }
+    }
+
+    /**
+     * 读取文件末尾若干行
+     *
+     * @param filePath  文件路径（相对于工作目录）
+     * @param lineCount 读取的行数
+     * @return 带行号的文件内容
+     */
+    @org.springframework.ai.tool.annotation.Tool(
+            name = "tailFile",
+            description = "读取文件末尾的若干行，返回带行号的内容，适用于查看日志最新内容。参数：filePath - 文件路径（相对于工作目录），lineCount - 读取行数（默认 200，最多 1000）"
+    )
+    public String tailFile(String filePath, Integer lineCount) {
+        try {
+            Path path = validateAndResolveFile(filePath);
+            FileLineReader.Page page = lineReader.tail(path, pageLines(lineCount));
+            log.info("成功读取文件末尾: {}, lines={}-{}", filePath, page.firstLine(), page.lastLine());
+            return describePage(page);
+        } catch (Exception e) {
+            return handleReadError(filePath, e);
+        }
+    }
+
+    /**
+     * 在文件中按正则表达式搜索
+     *
+     * @param filePath   文件路径（相对于工作目录）
+     * @param pattern    正则表达式
+     * @param fromLine   从第几行开始搜索
+     * @param maxMatches 最多返回的匹配行数
+     * @return 带行号的匹配行
+     */
+    @org.springframework.ai.tool.annotation.Tool(
+            name = "grepFile",
+            description = "在文件中按正则表达式逐行搜索，返回带行号的匹配行，适用于在大文件中定位内容。参数：filePath - 文件路径（相对于工作目录），pattern - 正则表达式，fromLine - 从第几行开始搜索（默认 1），maxMatches - 最多返回的匹配行数（默认 50，最多 200）"
+    )
+    public String grepFile(String filePath, String pattern, Long fromLine, Integer maxMatches) {
+        try {
+            Path path = validateAndResolveFile(filePath);
+            Pattern regex = Pattern.compile(pattern);
+            int limit = maxMatches == null || maxMatches <= 0 ? DEFAULT_GREP_MATCHES : Math.min(maxMatches, MAX_GREP_MATCHES);
+            FileLineReader.Page page = lineReader.grep(path, regex, fromLine == null ? 1 : fromLine, limit);
+            log.info("成功搜索文件: {}, pattern={}, truncated={}", filePath, pattern, page.truncated());
+            if (page.text().isEmpty()) {
+                return "未找到匹配的行（文件共 " + page.totalLines() + " 行）";
+            }
+            String result = "匹配的行:\n" + page.text();
+            if (page.truncated()) {
+                result += "...[匹配结果已达上限，可将 fromLine 设为 " + (page.lastLine() + 1) + " 继续搜索]";
+            }
+            return result;
+        } catch (PatternSyntaxException e) {
+            return "错误：正则表达式无效 - " + e.getDescription();
+        } catch (Exception e) {
+            return handleReadError(filePath, e);
+        }
+    }
+
     /**
      * 写入文件内容
      *
@@ -155,7 +273,7 @@ public class FileSystemTools implements Tool {
      */
     @org.springframework.ai.tool.annotation.Tool(
             name = "listFiles",
-            description = "列出指定目录中的文件和子目录。参数：directoryPath - 目录路径（相对于工作目录），如果为空则列出当前目录"
+            description = "列出指定目录中的文件和子目录（最多 500 项），在整个目录树中查找文件请使用 searchFiles。参数：directoryPath - 目录路径（相对于工作目录），如果为空则列出当前目录"
     )
     public String listFiles(String directoryPath) {
         try {
@@ -174,27 +292,38 @@ public class FileSystemTools implements Tool {
                 return "错误：路径不是目录 - " + directoryPath;
             }
 
-            List<String> items = Files.list(path)
-                    .map(p -> {
-                        String name = p.getFileName().toString();
-                        if (Files.isDirectory(p)) {
-                            return "[DIR] " + name;
-                        } else {
-                            try {
-                                long size = Files.size(p);
-                                return "[FILE] " + name + " (" + formatFileSize(size) + ")";
-                            } catch (IOException e) {
-                                return "[FILE] " + name;
-                            }
-                        }
-                    })
-                    .sorted()
-                    .collect(Collectors.toList());
-
-            if (items.isEmpty()) {
+            // 只保留按名称排序的前 MAX_LIST_ENTRIES 项，超大目录也不会全部载入内存
+            TreeMap<String, Path> entries = new TreeMap<>();
+            int total = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path entry : stream) {
+                    total++;
+                    entries.put(entry.getFileName().toString(), entry);
+                    if (entries.size() > MAX_LIST_ENTRIES) {
+                        entries.pollLastEntry();
+                    }
+                }
+            }
+
+            if (entries.isEmpty()) {
                 return "目录为空: " + directoryPath;
             }
 
+            List<String> items = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Path> entry : entries.entrySet()) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(entry.getValue(), BasicFileAttributes.class);
+                    items.add(attributes.isDirectory()
+                            ? "[DIR] " + entry.getKey()
+                            : "[FILE] " + entry.getKey() + " (" + formatFileSize(attributes.size()) + ")");
+                } catch (IOException e) {
+                    items.add("[FILE] " + entry.getKey());
+                }
+            }
+            if (total > items.size()) {
+                items.add("...[共 " + total + " 项，仅显示按名称排序的前 " + items.size() + " 项；查找特定文件请使用 searchFiles]");
+            }
+
             log.info("成功列出目录内容: {}", directoryPath);
             return "目录内容 (" + directoryPath + "):\n" + String.join("\n", items);
 
@@ -210,6 +339,81 @@ public class FileSystemTools implements Tool {
         }
     }
 
+    /**
+     * 在目录树中查找文件，可按文件名 / 路径的 glob 和文件内容的正则匹配，一次调用完成整个工作目录的查找
+     *
+     * @param glob           路径的 glob 模式
+     * @param contentPattern 文件内容的正则表达式
+     * @param directoryPath  搜索的目录
+     * @param maxResults     最多返回的结果数
+     * @return 匹配的文件列表
+     */
+    @org.springframework.ai.tool.annotation.Tool(
+            name = "searchFiles",
+            description = "在目录及其所有子目录中查找文件，可代替多次调用 listFiles。参数：glob - 文件名或路径的 glob 模式，如 *.java、src/**/*.yaml（为空匹配所有文件；不含 / 时只匹配文件名），contentPattern - 文件内容的正则表达式（为空则只按路径查找，否则返回每个文件第一处匹配的行），directoryPath - 搜索的目录（相对于工作目录，为空表示整个工作目录），maxResults - 最多返回的结果数（默认 100，最多 500）"
+    )
+    public String searchFiles(String glob, String contentPattern, String directoryPath, Integer maxResults) {
+        try {
+            Path basePath = Paths.get(BASE_DIRECTORY).toAbsolutePath().normalize();
+            Path root = directoryPath == null || directoryPath.isBlank() ? basePath : validateAndResolvePath(directoryPath);
+            if (!Files.isDirectory(root)) {
+                return "错误：目录不存在 - " + directoryPath;
+            }
+            int limit = maxResults == null || maxResults <= 0 ? DEFAULT_SEARCH_RESULTS : Math.min(maxResults, MAX_SEARCH_RESULTS);
+            Pattern content = contentPattern == null || contentPattern.isBlank() ? null : Pattern.compile(contentPattern);
+
+            List<FileSearcher.Match> matches;
+            boolean truncated;
+            PathIndex index = pathIndex();
+            Path relativeRoot = basePath.relativize(root);
+            if (content == null && index != null && index.isReady() && index.covers(relativeRoot)) {
+                // 只按路径查找时直接查内存索引；搜索目录位于 target、build 等不入索引的目录下时走磁盘遍历
+                matches = index.find(relativeRoot, glob, limit);
+                truncated = matches.size() > limit;
+                if (truncated) {
+                    matches = matches.subList(0, limit);
+                }
+            } else {
+                FileSearcher.Result result = fileSearcher.search(root, glob, content, limit);
+                matches = result.matches();
+                truncated = result.truncated();
+            }
+            log.info("文件搜索完成: directory={}, glob={}, content={}, matches={}, truncated={}",
+                    directoryPath, glob, contentPattern, matches.size(), truncated);
+
+            if (matches.isEmpty()) {
+                return "未找到匹配的文件";
+            }
+            StringBuilder text = new StringBuilder("找到的文件（路径相对于搜索目录）:\n");
+            int bytes = 0;
+            int shown = 0;
+            for (FileSearcher.Match match : matches) {
+                String line = match.snippet() == null
+                        ? match.path() + " (" + formatFileSize(match.size()) + ")"
+                        : match.path() + ":" + match.line() + ": " + match.snippet();
+                bytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                if (bytes > MAX_OUTPUT_BYTES) {
+                    truncated = true;
+                    break;
+                }
+                text.append(line).append('\n');
+                shown++;
+            }
+            if (truncated) {
+                text.append("...[结果已截断，仅显示 ").append(shown).append(" 项，请使用更具体的 glob、contentPattern 或目录缩小范围]");
+            }
+            return text.toString().stripTrailing();
+        } catch (PatternSyntaxException e) {
+            return "错误：正则表达式无效 - " + e.getDescription();
+        } catch (SecurityException e) {
+            log.error("安全错误：{}", e.getMessage());
+            return "错误：访问被拒绝 - " + e.getMessage();
+        } catch (Exception e) {
+            log.error("未知错误: {}", e.getMessage(), e);
+            return "错误：操作失败 - " + e.getMessage();
+        }
+    }
+
     /**
      * 删除文件或目录
      *
@@ -298,6 +502,63 @@ public class FileSystemTools implements Tool {
         }
     }
 
+    /**
+     * 首次搜索时才建立路径索引，工具未被使用时不占用监听资源
+     */
+    private PathIndex pathIndex() {
+        if (!PATH_INDEX_ENABLED) {
+            return null;
+        }
+        PathIndex index = pathIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = pathIndex;
+                if (index == null) {
+                    index = new PathIndex(Paths.get(BASE_DIRECTORY).toAbsolutePath().normalize(), fileSearcher);
+                    pathIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private Path validateAndResolveFile(String filePath) throws IOException {
+        Path path = validateAndResolvePath(filePath);
+        if (!Files.exists(path)) {
+            throw new IOException("文件不存在 - " + filePath);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("路径不是文件 - " + filePath);
+        }
+        return path;
+    }
+
+    private int pageLines(Integer lineCount) {
+        return lineCount == null || lineCount <= 0 ? DEFAULT_PAGE_LINES : Math.min(lineCount, MAX_PAGE_LINES);
+    }
+
+    private String describePage(FileLineReader.Page page) {
+        String result = "第 " + page.firstLine() + "-" + page.lastLine() + " 行（共 " + page.totalLines() + " 行）:\n"
+                + page.text();
+        if (page.truncated()) {
+            result += "...[内容已达 " + MAX_OUTPUT_BYTES / 1024 + "KB 上限，可从第 " + (page.lastLine() + 1) + " 行继续读取]";
+        }
+        return result;
+    }
+
+    private String handleReadError(String filePath, Exception e) {
+        if (e instanceof SecurityException) {
+            log.error("安全错误：{}", e.getMessage());
+            return "错误：访问被拒绝 - " + e.getMessage();
+        }
+        if (e instanceof IOException) {
+            log.error("读取文件失败: {}", filePath, e);
+            return "错误：读取文件失败 - " + e.getMessage();
+        }
+        log.error("未知错误: {}", e.getMessage(), e);
+        return "错误：操作失败 - " + e.getMessage();
+    }
+
     /**
      * 验证路径并解析为绝对路径，防止路径遍历攻击
      *
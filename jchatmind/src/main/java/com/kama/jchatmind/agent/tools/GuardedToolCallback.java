@@ -0,0 +1,134 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.resilience.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 带超时与熔断的 ToolCallback
+ * - 工具在 toolExecutor 中执行，超过 timeoutMs 后中断执行线程，向模型返回结构化的超时结果，Agent 继续下一步
+ * - 工具抛出异常或超时计为失败，连续失败达到阈值后熔断，熔断期间直接返回不可用结果
+ * - 工具自行捕获异常并返回错误文本的情况视为成功（工具可用，只是这次的参数有问题）
+ * 指标：tool.<name>.latency / error / timeout / circuit_open / rejected
+ */
+@Slf4j
+public class GuardedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final String name;
+    private final long timeoutMs;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService executor;
+    private final MetricsRegistry metricsRegistry;
+
+    public GuardedToolCallback(ToolCallback delegate,
+                               long timeoutMs,
+                               CircuitBreaker circuitBreaker,
+                               ExecutorService executor,
+                               MetricsRegistry metricsRegistry) {
+        this.delegate = delegate;
+        this.name = delegate.getToolDefinition().name();
+        this.timeoutMs = timeoutMs;
+        this.circuitBreaker = circuitBreaker;
+        this.executor = executor;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return call(toolInput, null);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        if (!circuitBreaker.tryAcquire()) {
+            metricsRegistry.increment(metric("circuit_open"));
+            return result("UNAVAILABLE", "工具 " + name + " 近期连续失败，暂时停用，请改用其他方式或稍后再试");
+        }
+
+        long start = System.currentTimeMillis();
+        Future<String> future;
+        try {
+            future = executor.submit(() -> toolContext == null
+                    ? delegate.call(toolInput)
+                    : delegate.call(toolInput, toolContext));
+        } catch (RejectedExecutionException e) {
+            circuitBreaker.onCancel();
+            metricsRegistry.increment(metric("rejected"));
+            return result("BUSY", "工具执行线程已满，请稍后再试");
+        }
+
+        try {
+            String output = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            return output;
+        } catch (TimeoutException e) {
+            // 中断执行线程；不响应中断的工具（如阻塞在网络读上）会继续占用线程直到自身超时
+            future.cancel(true);
+            circuitBreaker.onFailure();
+            metricsRegistry.increment(metric("timeout"));
+            log.warn("工具 {} 执行超时（{} ms），已取消", name, timeoutMs);
+            return result("TIMEOUT", "工具执行超过 " + timeoutMs + " ms，已取消。可以缩小查询范围后重试，或换用其他方法");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            circuitBreaker.onCancel();
+            Thread.currentThread().interrupt();
+            throw new BizException("工具调用被中断: " + name);
+        } catch (ExecutionException e) {
+            circuitBreaker.onFailure();
+            metricsRegistry.increment(metric("error"));
+            // 保持原有行为：异常交给 ToolCallingManager 处理（转为错误信息返回给模型）
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            metricsRegistry.recordLatency(metric("latency"), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * 是否为失败结果：工具自身返回的错误文本（"错误" 开头），或本类返回的超时 / 熔断 / 繁忙结果
+     * 工具方法返回的字符串会被序列化为 JSON 字符串，判断前去掉开头的引号
+     */
+    public static boolean isFailureResult(String output) {
+        if (output == null) {
+            return false;
+        }
+        String text = output.startsWith("\"") ? output.substring(1) : output;
+        return text.startsWith("错误") || output.startsWith("{\"status\":");
+    }
+
+    /**
+     * 返回给模型的结构化结果（JSON），status 为 TIMEOUT / UNAVAILABLE / BUSY
+     */
+    private String result(String status, String message) {
+        return "{\"status\":\"" + status + "\",\"tool\":\"" + name + "\",\"message\":\"" + message + "\"}";
+    }
+
+    private String metric(String suffix) {
+        return "tool." + name + "." + suffix;
+    }
+}
@@ -1,11 +1,19 @@
 package com.kama.jchatmind.agent.tools;
 
+import com.kama.jchatmind.agent.JChatMind;
+import com.kama.jchatmind.agent.KnowledgePrefetch;
 import com.kama.jchatmind.service.RagService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ToolContext;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Component
+@Slf4j
 public class KnowledgeTools implements Tool {
 
     private final RagService ragService;
@@ -33,8 +41,24 @@ public class KnowledgeTools implements Tool {
             name = "KnowledgeTool",
             description = "从指定知识库中执行相似性检索（RAG）。参数为知识库 ID（kbsId）和查询文本（query），返回与查询最相关的知识片段。"
     )
-    public String knowledgeQuery(String kbsId, String query) {
-        List<String> strings = ragService.similaritySearch(kbsId, query);
+    @Memoizable
+    public String knowledgeQuery(String kbsId, String query, ToolContext toolContext) {
+        // 与用户消息相同的查询直接使用预取结果，预取仍在进行时等待它完成
+        KnowledgePrefetch prefetch = toolContext == null ? null
+                : (KnowledgePrefetch) toolContext.getContext().get(JChatMind.TOOL_CONTEXT_KNOWLEDGE_PREFETCH);
+        CompletableFuture<List<String>> prefetched = prefetch == null ? null : prefetch.find(kbsId, query);
+        List<String> strings = null;
+        if (prefetched != null) {
+            try {
+                strings = prefetched.join();
+            } catch (CompletionException | CancellationException e) {
+                // 预取在等待期间失败时重新检索，不让工具调用因此失败
+                log.warn("知识库预取失败，重新检索: kbsId={}", kbsId, e);
+            }
+        }
+        if (strings == null) {
+            strings = ragService.similaritySearch(kbsId, query);
+        }
         return String.join("\n", strings);
     }
 }
@@ -0,0 +1,30 @@
+package com.kama.jchatmind.agent.tools;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记结果可以复用的工具方法（与 Spring AI 的 @Tool 一起使用）
+ * 工具名 + 归一化后的 JSON 参数相同时直接返回之前的结果，不再执行工具，见 ToolMemo
+ * 只适用于无副作用、短时间内结果不变的工具，发送邮件、写文件等工具不要标记
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Memoizable {
+
+    Scope scope() default Scope.RUN;
+
+    /**
+     * 缓存结果的有效期，<= 0 表示在作用域内一直有效
+     */
+    long ttlSeconds() default 0;
+
+    enum Scope {
+        // 一次 Agent 运行（一轮回复）内复用
+        RUN,
+        // 同一会话的多轮回复间复用
+        SESSION
+    }
+}
@@ -0,0 +1,213 @@
+package com.kama.jchatmind.agent.tools;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 工作目录下所有文件路径的内存索引，只按路径查找时直接查索引，不再遍历磁盘
+ * - 后台线程用 FileSearcher 并行遍历建立索引，之后通过 WatchService 监听每个目录的增删改增量更新
+ * - 事件溢出（OVERFLOW）时整体重建；注册监听失败（如超过 inotify 上限）时索引停用，搜索退回实时遍历
+ * - 建立完成前 isReady() 为 false
+ */
+@Slf4j
+class PathIndex {
+
+    private final Path root;
+    private final FileSearcher fileSearcher;
+    private final Map<Path, Long> files = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final Thread watcher;
+    private volatile WatchService watchService;
+    private volatile boolean ready;
+    private volatile boolean closed;
+
+    PathIndex(Path root, FileSearcher fileSearcher) {
+        this.root = root;
+        this.fileSearcher = fileSearcher;
+        this.watcher = new Thread(this::run, "path-index-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * directory（root 下的相对路径）是否在索引范围内：索引不收录 SKIPPED_DIRECTORIES 下的文件，
+     * 而直接以这些目录（或其子目录）为起点搜索时磁盘遍历仍会进入，这种情况不能用索引回答
+     */
+    boolean covers(Path directory) {
+        for (Path segment : directory) {
+            if (FileSearcher.SKIPPED_DIRECTORIES.contains(segment.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 在 directory（root 下的相对路径，空表示 root）下按 glob 查找，最多返回 maxResults 条，按路径排序
+     *
+     * @return 匹配的文件，超过上限时返回 maxResults + 1 条，由调用方判断是否截断
+     */
+    List<FileSearcher.Match> find(Path directory, String glob, int maxResults) {
+        PathMatcher matcher = FileSearcher.matcher(glob);
+        List<FileSearcher.Match> matches = new ArrayList<>();
+        for (Map.Entry<Path, Long> entry : files.entrySet()) {
+            Path path = entry.getKey();
+            if (!directory.toString().isEmpty() && !path.startsWith(directory)) {
+                continue;
+            }
+            Path relative = directory.relativize(path);
+            if (FileSearcher.matches(matcher, glob, relative)) {
+                matches.add(new FileSearcher.Match(relative, entry.getValue(), 0, null));
+            }
+        }
+        matches.sort(Comparator.comparing(match -> match.path().toString()));
+        return matches.size() > maxResults ? matches.subList(0, maxResults + 1) : matches;
+    }
+
+    private void run() {
+        try {
+            rebuild();
+            while (!closed) {
+                WatchKey key = watchService.take();
+                Path directory = watchedDirectories.get(key);
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (directory != null) {
+                        onEvent(event.kind(), directory.resolve((Path) event.context()));
+                    }
+                }
+                if (overflow) {
+                    log.warn("文件监听事件溢出，重建路径索引");
+                    rebuild();
+                } else if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 关闭
+        } catch (IOException e) {
+            ready = false;
+            log.warn("路径索引不可用，文件搜索将实时遍历目录: {}", e.getMessage());
+            closeWatchService();
+        }
+    }
+
+    private void rebuild() throws IOException {
+        ready = false;
+        closeWatchService();
+        watchService = root.getFileSystem().newWatchService();
+        watchedDirectories.clear();
+        files.clear();
+        long start = System.currentTimeMillis();
+        index(root);
+        ready = true;
+        log.info("路径索引建立完成: files={}, directories={}, 耗时 {} ms",
+                files.size(), watchedDirectories.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 遍历 directory 子树，加入索引并注册监听；先注册再遍历，遍历期间新建的文件也能收到事件
+     */
+    private void index(Path directory) throws IOException {
+        AtomicReference<IOException> registerError = new AtomicReference<>();
+        int visited = fileSearcher.walk(directory, new FileSearcher.Visitor() {
+            @Override
+            public boolean stopped() {
+                return registerError.get() != null;
+            }
+
+            @Override
+            public void visitDirectory(Path dir) {
+                try {
+                    register(dir);
+                } catch (IOException e) {
+                    registerError.compareAndSet(null, e);
+                }
+            }
+
+            @Override
+            public void visitFile(Path file, BasicFileAttributes attributes) {
+                files.put(root.relativize(file), attributes.size());
+            }
+        });
+        if (registerError.get() != null) {
+            throw registerError.get();
+        }
+        if (visited >= FileSearcher.MAX_VISITED) {
+            throw new IOException("文件数超过索引上限 " + FileSearcher.MAX_VISITED);
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+    }
+
+    private void onEvent(WatchEvent.Kind<?> kind, Path path) throws IOException {
+        Path relative = root.relativize(path);
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            // 删除的可能是目录，连同其下的文件一起移除
+            files.keySet().removeIf(file -> file.startsWith(relative));
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            // 事件处理前已被删除
+            files.remove(relative);
+            return;
+        }
+        if (attributes.isDirectory()) {
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE
+                    && !FileSearcher.SKIPPED_DIRECTORIES.contains(path.getFileName().toString())) {
+                index(path);
+            }
+        } else if (attributes.isRegularFile()) {
+            files.put(relative, attributes.size());
+        }
+    }
+
+    private void closeWatchService() {
+        WatchService current = watchService;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续重建
+            }
+        }
+    }
+
+    void close() {
+        closed = true;
+        watcher.interrupt();
+        closeWatchService();
+    }
+}
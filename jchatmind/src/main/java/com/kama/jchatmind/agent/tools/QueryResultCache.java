@@ -0,0 +1,195 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * databaseQuery 的结果缓存，key 为归一化后的 SQL，缓存的是渲染好的结果文本
+ * - 按访问顺序淘汰，条数和总字节数都有上限，超过 ttl-seconds 的缓存项视为失效
+ * - 缓存项记录 SQL 中出现的全部标识符，收到某张表的变更通知（见 TableChangeListener）时，
+ *   凡是提到该表名的缓存项都会失效；宁可多失效，不会漏失效
+ * - 含 now()、random() 等结果随调用时刻变化的函数的查询不缓存
+ */
+@Component
+public class QueryResultCache {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_$]*");
+    private static final Pattern VOLATILE = Pattern.compile(
+            "\\b(now|random|clock_timestamp|statement_timestamp|timeofday|current_timestamp|current_date|current_time|localtimestamp|localtime|nextval|gen_random_uuid|txid_current)\\b");
+
+    private final MetricsRegistry metricsRegistry;
+    private final Map<String, Entry> entries;
+    private long totalBytes;
+
+    @Value("${agent.tools.database.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.tools.database.cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${agent.tools.database.cache.max-bytes:4194304}")
+    private long maxBytes;
+
+    public QueryResultCache(MetricsRegistry metricsRegistry,
+                            @Value("${agent.tools.database.cache.max-entries:256}") int maxEntries) {
+        this.metricsRegistry = metricsRegistry;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    totalBytes -= eldest.getValue().bytes;
+                    metricsRegistry.increment("agent.sql.cache.evicted.size");
+                    return true;
+                }
+                return false;
+            }
+        };
+        metricsRegistry.gauge("agent.sql.cache.entries", this::size);
+        metricsRegistry.gauge("agent.sql.cache.bytes", this::bytes);
+    }
+
+    /**
+     * @return 缓存的结果文本，未命中返回 null
+     */
+    public String get(String sql) {
+        if (!enabled) {
+            return null;
+        }
+        String key = normalize(sql);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.createdAtMillis <= ttlSeconds * 1000) {
+                    metricsRegistry.increment("agent.sql.cache.hit");
+                    return entry.result;
+                }
+                remove(key);
+                metricsRegistry.increment("agent.sql.cache.evicted.stale");
+            }
+        }
+        metricsRegistry.increment("agent.sql.cache.miss");
+        return null;
+    }
+
+    public void put(String sql, String result) {
+        if (!enabled) {
+            return;
+        }
+        String key = normalize(sql);
+        if (VOLATILE.matcher(key.toLowerCase()).find()) {
+            return;
+        }
+        int bytes = result.getBytes(StandardCharsets.UTF_8).length;
+        if (bytes > maxBytes) {
+            return;
+        }
+        Entry entry = new Entry(result, identifiers(key), bytes, System.currentTimeMillis());
+        synchronized (this) {
+            remove(key);
+            entries.put(key, entry);
+            totalBytes += bytes;
+            // 按总字节数淘汰最久未访问的缓存项
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                totalBytes -= iterator.next().getValue().bytes;
+                iterator.remove();
+                metricsRegistry.increment("agent.sql.cache.evicted.size");
+            }
+        }
+    }
+
+    /**
+     * 使 SQL 中提到 table 的缓存项失效
+     */
+    public synchronized void invalidateTable(String table) {
+        String name = table.toLowerCase();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.identifiers.contains(name)) {
+                totalBytes -= entry.bytes;
+                iterator.remove();
+                metricsRegistry.increment("agent.sql.cache.evicted.notify");
+            }
+        }
+    }
+
+    /**
+     * 变更通知可能丢失时（如监听连接断开）整体失效
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.bytes;
+        }
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long bytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 合并空白、转小写、去掉结尾分号；单引号字符串和双引号标识符内的内容保持原样
+     */
+    private static String normalize(String sql) {
+        StringBuilder normalized = new StringBuilder(sql.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                normalized.append(c);
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    normalized.append(' ');
+                    pendingSpace = false;
+                }
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                }
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        int end = normalized.length();
+        while (end > 0 && (normalized.charAt(end - 1) == ';' || normalized.charAt(end - 1) == ' ')) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    private static Set<String> identifiers(String normalizedSql) {
+        Set<String> identifiers = new HashSet<>();
+        Matcher matcher = IDENTIFIER.matcher(normalizedSql.toLowerCase());
+        while (matcher.find()) {
+            identifiers.add(matcher.group());
+        }
+        return identifiers;
+    }
+
+    private record Entry(String result, Set<String> identifiers, int bytes, long createdAtMillis) {
+    }
+}
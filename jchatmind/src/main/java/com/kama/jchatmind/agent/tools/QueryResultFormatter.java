@@ -0,0 +1,148 @@
+package com.kama.jchatmind.agent.tools;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把查询结果渲染为文本表格，单次遍历 ResultSet，内存和输出大小都有上限
+ * - 列宽只根据前 sampleRows 行估算（不超过 maxColumnWidth），之后的行边读边输出，超宽的单元格截断
+ * - 输出超过 maxRows 行或 maxBytes 字节（UTF-8）时停止读取，并在末尾附上截断说明
+ * 每次查询新建一个实例，非线程安全
+ */
+class QueryResultFormatter implements ResultSetExtractor<QueryResultFormatter.Result> {
+
+    private final int maxRows;
+    private final int maxBytes;
+    private final int sampleRows;
+    private final int maxColumnWidth;
+
+    QueryResultFormatter(int maxRows, int maxBytes, int sampleRows, int maxColumnWidth) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.sampleRows = sampleRows;
+        this.maxColumnWidth = maxColumnWidth;
+    }
+
+    @Override
+    public Result extractData(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        if (columnCount == 0) {
+            return new Result("查询结果为空（无列）", 0, false);
+        }
+
+        String[] columnNames = new String[columnCount];
+        int[] widths = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+            widths[i] = Math.min(maxColumnWidth, columnNames[i].length());
+        }
+
+        // 采样前若干行估算列宽
+        List<String[]> sampled = new ArrayList<>(sampleRows);
+        boolean more = rs.next();
+        while (more && sampled.size() < Math.min(sampleRows, maxRows)) {
+            String[] row = readRow(rs, columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                widths[i] = Math.max(widths[i], Math.min(maxColumnWidth, row[i].length()));
+            }
+            sampled.add(row);
+            more = rs.next();
+        }
+
+        Output output = new Output();
+        output.line(formatRow(columnNames, widths));
+        StringBuilder separator = new StringBuilder("|");
+        for (int width : widths) {
+            separator.append("-".repeat(width + 2)).append('|');
+        }
+        output.line(separator.toString());
+
+        if (sampled.isEmpty() && !more) {
+            output.line("| (无数据) |");
+            return new Result(output.text(), 0, false);
+        }
+
+        int rowCount = 0;
+        for (String[] row : sampled) {
+            if (!output.line(formatRow(row, widths))) {
+                return truncated(output, rowCount);
+            }
+            rowCount++;
+        }
+        while (more) {
+            if (rowCount >= maxRows) {
+                return truncated(output, rowCount);
+            }
+            if (!output.line(formatRow(readRow(rs, columnCount), widths))) {
+                return truncated(output, rowCount);
+            }
+            rowCount++;
+            more = rs.next();
+        }
+        return new Result(output.text(), rowCount, false);
+    }
+
+    private Result truncated(Output output, int rowCount) {
+        output.notice("...[结果已截断，仅显示前 " + rowCount + " 行（上限 " + maxRows + " 行 / " + maxBytes
+                + " 字节）；请添加 WHERE 条件、只选择需要的列或使用 LIMIT / 聚合缩小结果]");
+        return new Result(output.text(), rowCount, true);
+    }
+
+    private String[] readRow(ResultSet rs, int columnCount) throws SQLException {
+        String[] row = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Object value = rs.getObject(i + 1);
+            row[i] = value == null ? "NULL" : value.toString();
+        }
+        return row;
+    }
+
+    private String formatRow(String[] values, int[] widths) {
+        StringBuilder row = new StringBuilder("| ");
+        for (int i = 0; i < values.length; i++) {
+            String value = values[i].replace('\n', ' ').replace('\r', ' ');
+            if (value.length() > widths[i]) {
+                value = value.substring(0, Math.max(0, widths[i] - 1)) + "…";
+            }
+            row.append(value).append(" ".repeat(widths[i] - value.length())).append(" | ");
+        }
+        return row.toString();
+    }
+
+    /**
+     * 按 UTF-8 字节数累计输出，超出 maxBytes 的行不再写入
+     */
+    private class Output {
+        private final StringBuilder text = new StringBuilder();
+        private int bytes;
+
+        boolean line(String line) {
+            int lineBytes = line.getBytes(StandardCharsets.UTF_8).length + 1;
+            if (bytes + lineBytes > maxBytes) {
+                return false;
+            }
+            text.append(line).append('\n');
+            bytes += lineBytes;
+            return true;
+        }
+
+        // 截断说明不计入上限，保证一定能输出
+        void notice(String line) {
+            text.append(line).append('\n');
+        }
+
+        String text() {
+            return text.toString().stripTrailing();
+        }
+    }
+
+    record Result(String text, int rowCount, boolean truncated) {
+    }
+}
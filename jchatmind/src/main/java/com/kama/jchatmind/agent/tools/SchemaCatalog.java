@@ -0,0 +1,185 @@
+package com.kama.jchatmind.agent.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * public schema 的表结构目录，供 describeSchema 工具直接返回，模型不必每次查询 information_schema
+ * 首次使用时从只读连接池加载，之后每 refresh-seconds 重新加载一次；加载失败时沿用上一次的结果
+ * 配置了 allowed-tables 时只包含列出的表，TableChangeListener 也只在这些表上建立变更通知触发器
+ */
+@Slf4j
+@Component
+public class SchemaCatalog {
+
+    private static final String TABLES_SQL = """
+            SELECT c.relname AS table_name,
+                   GREATEST(c.reltuples, 0)::bigint AS estimated_rows,
+                   obj_description(c.oid, 'pg_class') AS comment
+            FROM pg_class c
+                     JOIN pg_namespace n ON n.oid = c.relnamespace
+            WHERE n.nspname = 'public'
+              AND c.relkind IN ('r', 'p', 'v', 'm')
+              AND NOT c.relispartition
+            ORDER BY c.relname
+            """;
+
+    private static final String COLUMNS_SQL = """
+            SELECT c.table_name,
+                   c.column_name,
+                   c.data_type,
+                   c.udt_name,
+                   c.is_nullable,
+                   c.column_default,
+                   EXISTS (SELECT 1
+                           FROM information_schema.table_constraints tc
+                                    JOIN information_schema.key_column_usage k
+                                         ON k.constraint_name = tc.constraint_name
+                                             AND k.table_schema = tc.table_schema
+                           WHERE tc.constraint_type = 'PRIMARY KEY'
+                             AND tc.table_schema = c.table_schema
+                             AND tc.table_name = c.table_name
+                             AND k.column_name = c.column_name) AS primary_key
+            FROM information_schema.columns c
+            WHERE c.table_schema = 'public'
+            ORDER BY c.table_name, c.ordinal_position
+            """;
+
+    private final AgentSqlDataSource agentSqlDataSource;
+    private final Set<String> allowedTables;
+    private volatile Snapshot snapshot;
+
+    @Value("${agent.tools.database.schema.refresh-seconds:600}")
+    private long refreshSeconds;
+
+    public SchemaCatalog(AgentSqlDataSource agentSqlDataSource,
+                         @Value("${agent.tools.database.allowed-tables:}") List<String> allowedTables) {
+        this.agentSqlDataSource = agentSqlDataSource;
+        this.allowedTables = allowedTables.stream()
+                .map(String::strip)
+                .filter(table -> !table.isEmpty())
+                .map(String::toLowerCase)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * 配置的表名（小写），未配置时为空
+     */
+    public Set<String> getAllowedTables() {
+        return allowedTables;
+    }
+
+    /**
+     * 所有表的概览：表名、估算行数、注释
+     */
+    public String describeTables() {
+        Snapshot current = current();
+        if (current.tables.isEmpty()) {
+            return "public schema 下没有表";
+        }
+        StringBuilder text = new StringBuilder("public schema 下的表（行数为统计信息中的估算值）:\n");
+        for (Table table : current.tables.values()) {
+            text.append("- ").append(table.name).append("（约 ").append(table.estimatedRows).append(" 行，")
+                    .append(table.columns.size()).append(" 列）");
+            if (table.comment != null) {
+                text.append(": ").append(table.comment);
+            }
+            text.append('\n');
+        }
+        return text.toString().stripTrailing();
+    }
+
+    /**
+     * 单张表的列定义
+     */
+    public String describeTable(String tableName) {
+        Snapshot current = current();
+        Table table = current.tables.get(tableName.strip().toLowerCase());
+        if (table == null) {
+            return "错误：表不存在 - " + tableName + "。可用的表: " + String.join(", ", current.tables.keySet());
+        }
+        StringBuilder text = new StringBuilder("表 ").append(table.name).append(" 的列（约 ")
+                .append(table.estimatedRows).append(" 行）:\n");
+        for (Column column : table.columns) {
+            text.append("- ").append(column.name).append(' ').append(column.type);
+            if (column.primaryKey) {
+                text.append(" PRIMARY KEY");
+            }
+            if (!column.nullable) {
+                text.append(" NOT NULL");
+            }
+            if (column.defaultValue != null) {
+                text.append(" DEFAULT ").append(column.defaultValue);
+            }
+            text.append('\n');
+        }
+        return text.toString().stripTrailing();
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.loadedAtMillis <= refreshSeconds * 1000) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && System.currentTimeMillis() - current.loadedAtMillis <= refreshSeconds * 1000) {
+                return current;
+            }
+            try {
+                snapshot = load();
+            } catch (RuntimeException e) {
+                if (current == null) {
+                    throw e;
+                }
+                log.warn("刷新表结构目录失败，沿用上一次的结果: {}", e.getMessage());
+                snapshot = new Snapshot(current.tables, System.currentTimeMillis());
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot load() {
+        long start = System.currentTimeMillis();
+        Map<String, Table> tables = new LinkedHashMap<>();
+        agentSqlDataSource.getJdbcTemplate().query(TABLES_SQL, rs -> {
+            String name = rs.getString("table_name");
+            if (!allowedTables.isEmpty() && !allowedTables.contains(name.toLowerCase())) {
+                return;
+            }
+            tables.put(name.toLowerCase(), new Table(name, rs.getLong("estimated_rows"), rs.getString("comment"),
+                    new ArrayList<>()));
+        });
+        agentSqlDataSource.getJdbcTemplate().query(COLUMNS_SQL, rs -> {
+            Table table = tables.get(rs.getString("table_name").toLowerCase());
+            if (table == null) {
+                return;
+            }
+            // 数组、枚举、vector 等类型的 data_type 为 ARRAY / USER-DEFINED，使用 udt_name 更直观
+            String dataType = rs.getString("data_type");
+            String type = "ARRAY".equals(dataType) || "USER-DEFINED".equals(dataType) ? rs.getString("udt_name") : dataType;
+            table.columns.add(new Column(rs.getString("column_name"), type, "YES".equals(rs.getString("is_nullable")),
+                    rs.getString("column_default"), rs.getBoolean("primary_key")));
+        });
+        log.info("表结构目录加载完成: tables={}, 耗时 {} ms", tables.size(), System.currentTimeMillis() - start);
+        return new Snapshot(tables, System.currentTimeMillis());
+    }
+
+    private record Snapshot(Map<String, Table> tables, long loadedAtMillis) {
+    }
+
+    private record Table(String name, long estimatedRows, String comment, List<Column> columns) {
+    }
+
+    private record Column(String name, String type, boolean nullable, String defaultValue, boolean primaryKey) {
+    }
+}
@@ -0,0 +1,135 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * 通过 PostgreSQL LISTEN/NOTIFY 接收表变更通知，使 QueryResultCache 中相关的缓存项失效
+ * 通知由 sql/query_cache_notify.sql 中的语句级触发器发出，payload 为表名；每次连接时以及每隔 resync-seconds
+ * 调用 jchatmind_sync_table_notify，只在 allowed-tables（见 SchemaCatalog）上保留触发器，未配置时不建立任何触发器
+ * 使用一条独立的长连接（不占用任何连接池），连接断开期间可能漏掉通知，重连后整体清空缓存
+ * 仅在 agent.tools.database.cache.listen.enabled=true 时创建，未启用时缓存只依赖 TTL 失效
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "agent.tools.database.cache.listen.enabled", havingValue = "true")
+public class TableChangeListener {
+
+    private static final long RECONNECT_DELAY_MS = 5_000;
+
+    private final QueryResultCache queryResultCache;
+    private final SchemaCatalog schemaCatalog;
+    private final MetricsRegistry metricsRegistry;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private final long resyncMillis;
+    private final Thread listener;
+    private volatile boolean running = true;
+
+    public TableChangeListener(QueryResultCache queryResultCache,
+                               SchemaCatalog schemaCatalog,
+                               MetricsRegistry metricsRegistry,
+                               @Value("${spring.datasource.url}") String url,
+                               @Value("${spring.datasource.username}") String username,
+                               @Value("${spring.datasource.password}") String password,
+                               @Value("${agent.tools.database.cache.listen.channel:jchatmind_table_changed}") String channel,
+                               @Value("${agent.tools.database.cache.listen.resync-seconds:600}") long resyncSeconds) {
+        this.queryResultCache = queryResultCache;
+        this.schemaCatalog = schemaCatalog;
+        this.resyncMillis = resyncSeconds * 1000;
+        this.metricsRegistry = metricsRegistry;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("非法的通知频道名: " + channel);
+        }
+        this.channel = channel;
+
+        this.listener = new Thread(this::listen, "table-change-listener");
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(url, username, password)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                // 断线期间的变更无从得知，(重新)开始监听后清空一次
+                queryResultCache.invalidateAll();
+                log.info("开始监听表变更通知: channel={}", channel);
+                syncTriggers(connection);
+                long syncedAt = System.currentTimeMillis();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    if (resyncMillis > 0 && System.currentTimeMillis() - syncedAt >= resyncMillis) {
+                        syncTriggers(connection);
+                        syncedAt = System.currentTimeMillis();
+                    }
+                    PGNotification[] notifications = pgConnection.getNotifications(10_000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        queryResultCache.invalidateTable(notification.getParameter());
+                        metricsRegistry.increment("agent.sql.cache.notify");
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("表变更监听连接异常，{} ms 后重连: {}", RECONNECT_DELAY_MS, e.getMessage());
+                queryResultCache.invalidateAll();
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 同步失败（如未执行 sql/query_cache_notify.sql）不影响监听，缓存仍按 TTL 失效
+     */
+    private void syncTriggers(Connection connection) {
+        Set<String> tables = schemaCatalog.getAllowedTables();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT jchatmind_sync_table_notify(?)")) {
+            statement.setArray(1, connection.createArrayOf("text", tables.toArray()));
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                log.info("表变更通知触发器已同步: tables={}, triggers={}", tables, rs.getInt(1));
+            }
+            if (tables.isEmpty()) {
+                log.warn("未配置 agent.tools.database.allowed-tables，不建立表变更通知触发器，查询缓存只按 TTL 失效");
+            }
+        } catch (SQLException e) {
+            log.warn("同步表变更通知触发器失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        listener.interrupt();
+    }
+}
@@ -20,6 +20,8 @@ public class TerminateTool implements Tool {
         return ToolType.FIXED;
     }
 
-    @org.springframework.ai.tool.annotation.Tool(name = "terminate", description = "如果你觉得当前所有的任务已经执行完毕了，就执行这个工具调用")
+    // returnDirect：只调用 terminate 时不再把结果交给模型，直接结束本次运行
+    @org.springframework.ai.tool.annotation.Tool(name = "terminate", returnDirect = true,
+            description = "如果你觉得当前所有的任务已经执行完毕了，就执行这个工具调用。可以与最终回答放在同一次回复中，不需要单独再回复一次")
     public void terminate() {}
 }
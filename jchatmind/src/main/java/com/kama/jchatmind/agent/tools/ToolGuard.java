@@ -0,0 +1,59 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.resilience.CircuitBreaker;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 为 Agent 的工具调用加上超时与熔断，JChatMindFactory 构建的每个 ToolCallback 都经过这里包装
+ * 熔断器按工具名在所有 Agent 间共享，某个工具持续失败时对所有 Agent 都快速失败
+ * 超时时间读取 agent.tools.guard.timeout-ms.<工具名>，未配置时使用 default-timeout-ms
+ */
+@Component
+public class ToolGuard {
+
+    private final Environment environment;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadPoolTaskExecutor toolExecutor;
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    @Value("${agent.tools.guard.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.tools.guard.default-timeout-ms:30000}")
+    private long defaultTimeoutMs;
+
+    @Value("${agent.tools.guard.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${agent.tools.guard.circuit.open-ms:60000}")
+    private long openMs;
+
+    public ToolGuard(Environment environment,
+                     MetricsRegistry metricsRegistry,
+                     @Qualifier("toolExecutor") ThreadPoolTaskExecutor toolExecutor) {
+        this.environment = environment;
+        this.metricsRegistry = metricsRegistry;
+        this.toolExecutor = toolExecutor;
+    }
+
+    public ToolCallback wrap(ToolCallback toolCallback) {
+        if (!enabled) {
+            return toolCallback;
+        }
+        String name = toolCallback.getToolDefinition().name();
+        long timeoutMs = environment.getProperty("agent.tools.guard.timeout-ms." + name, Long.class, defaultTimeoutMs);
+        CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(name,
+                key -> new CircuitBreaker("tool-" + key, failureThreshold, openMs));
+        return new GuardedToolCallback(toolCallback, timeoutMs, circuitBreaker, toolExecutor.getThreadPoolExecutor(),
+                metricsRegistry);
+    }
+}
@@ -0,0 +1,199 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.StringUtils;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具结果复用：标记了 @Memoizable 的工具，在作用域内以相同参数再次调用时直接返回之前的结果
+ * - key 为工具名 + 归一化的 JSON 参数（对象字段按名称排序），参数顺序或空白不同也能命中
+ * - RUN 作用域的结果随 Run 对象（一次 JChatMind 运行）丢弃；SESSION 作用域按会话保存，会话数与每个会话的条数都有上限
+ * - 错误结果（"错误" 开头的文本、ToolGuard 返回的超时 / 熔断结果）不缓存
+ * 命中时模型收到的内容与实际执行完全相同，只是省去了工具耗时
+ */
+@Component
+public class ToolMemo {
+
+    private final ObjectMapper objectMapper;
+    private final MetricsRegistry metricsRegistry;
+    private final Map<String, Map<String, Entry>> sessions;
+
+    @Value("${agent.tools.memo.enabled:true}")
+    private boolean enabled;
+
+    @Value("${agent.tools.memo.max-entries-per-session:64}")
+    private int maxEntriesPerSession;
+
+    public ToolMemo(ObjectMapper objectMapper,
+                    MetricsRegistry metricsRegistry,
+                    @Value("${agent.tools.memo.max-sessions:1000}") int maxSessions) {
+        this.objectMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.metricsRegistry = metricsRegistry;
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, Entry>> eldest) {
+                return size() > maxSessions;
+            }
+        };
+    }
+
+    /**
+     * 开始一次 Agent 运行
+     */
+    public Run newRun(String chatSessionId) {
+        return new Run(chatSessionId);
+    }
+
+    /**
+     * 找出 toolType 中标记了 @Memoizable 的工具方法，key 为工具名
+     */
+    public static Map<String, Memoizable> memoizableTools(Class<?> toolType) {
+        Map<String, Memoizable> tools = new HashMap<>();
+        for (Method method : ClassUtils.getUserClass(toolType).getMethods()) {
+            org.springframework.ai.tool.annotation.Tool tool = method.getAnnotation(org.springframework.ai.tool.annotation.Tool.class);
+            Memoizable memoizable = method.getAnnotation(Memoizable.class);
+            if (tool != null && memoizable != null) {
+                tools.put(StringUtils.hasText(tool.name()) ? tool.name() : method.getName(), memoizable);
+            }
+        }
+        return tools;
+    }
+
+    private Map<String, Entry> sessionEntries(String chatSessionId) {
+        synchronized (sessions) {
+            return sessions.computeIfAbsent(chatSessionId, id -> new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntriesPerSession;
+                }
+            });
+        }
+    }
+
+    private String canonicalize(String toolInput) {
+        if (!StringUtils.hasText(toolInput)) {
+            return "";
+        }
+        try {
+            return objectMapper.writeValueAsString(objectMapper.readValue(toolInput, Object.class));
+        } catch (JsonProcessingException e) {
+            return toolInput.strip();
+        }
+    }
+
+    private static boolean cacheable(String output) {
+        return output != null && !GuardedToolCallback.isFailureResult(output);
+    }
+
+    public class Run {
+        private final String chatSessionId;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+        private Run(String chatSessionId) {
+            this.chatSessionId = chatSessionId;
+        }
+
+        /**
+         * memoizable 为 null 或未启用时原样返回
+         */
+        public ToolCallback wrap(ToolCallback toolCallback, Memoizable memoizable) {
+            if (!enabled || memoizable == null) {
+                return toolCallback;
+            }
+            return new MemoizingToolCallback(toolCallback, memoizable, this);
+        }
+
+        private String get(Memoizable memoizable, String key) {
+            Entry entry;
+            if (memoizable.scope() == Memoizable.Scope.RUN) {
+                entry = entries.get(key);
+            } else {
+                Map<String, Entry> session = sessionEntries(chatSessionId);
+                synchronized (session) {
+                    entry = session.get(key);
+                }
+            }
+            return entry != null && entry.isValid() ? entry.output : null;
+        }
+
+        private void put(Memoizable memoizable, String key, String output) {
+            long expiresAt = memoizable.ttlSeconds() > 0
+                    ? System.currentTimeMillis() + memoizable.ttlSeconds() * 1000
+                    : Long.MAX_VALUE;
+            Entry entry = new Entry(output, expiresAt);
+            if (memoizable.scope() == Memoizable.Scope.RUN) {
+                entries.put(key, entry);
+            } else {
+                Map<String, Entry> session = sessionEntries(chatSessionId);
+                synchronized (session) {
+                    session.put(key, entry);
+                }
+            }
+        }
+    }
+
+    private class MemoizingToolCallback implements ToolCallback {
+        private final ToolCallback delegate;
+        private final Memoizable memoizable;
+        private final Run run;
+        private final String name;
+
+        MemoizingToolCallback(ToolCallback delegate, Memoizable memoizable, Run run) {
+            this.delegate = delegate;
+            this.memoizable = memoizable;
+            this.run = run;
+            this.name = delegate.getToolDefinition().name();
+        }
+
+        @Override
+        public ToolDefinition getToolDefinition() {
+            return delegate.getToolDefinition();
+        }
+
+        @Override
+        public ToolMetadata getToolMetadata() {
+            return delegate.getToolMetadata();
+        }
+
+        @Override
+        public String call(String toolInput) {
+            return call(toolInput, null);
+        }
+
+        @Override
+        public String call(String toolInput, ToolContext toolContext) {
+            String key = name + ":" + canonicalize(toolInput);
+            String cached = run.get(memoizable, key);
+            if (cached != null) {
+                metricsRegistry.increment("tool." + name + ".memo_hit");
+                return cached;
+            }
+            String output = toolContext == null ? delegate.call(toolInput) : delegate.call(toolInput, toolContext);
+            if (cacheable(output)) {
+                run.put(memoizable, key, output);
+            }
+            return output;
+        }
+    }
+
+    private record Entry(String output, long expiresAtMillis) {
+        boolean isValid() {
+            return System.currentTimeMillis() < expiresAtMillis;
+        }
+    }
+}
@@ -1,14 +1,17 @@
 package com.kama.jchatmind.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
 
     @Bean
@@ -21,4 +24,139 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * 文档解析专用线程池，与处理聊天事件的 async-event 线程池隔离，
+     * 线程数即同时处理的文档数（任务由 IngestionJobServiceImpl 按空闲线程数领取，不在内存中排队）
+     */
+    @Bean
+    public ThreadPoolTaskExecutor ingestionExecutor(@Value("${ingestion.worker.parallelism:2}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(parallelism);
+        executor.setThreadNamePrefix("ingestion-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 邮件发送线程池，与 async-event 线程池隔离，线程数即同时发送的批次数（同时打开的 SMTP 连接数）
+     * 邮件由 EmailServiceImpl 按空闲线程数从发件箱领取，不在内存中排队
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mailExecutor(@Value("${email.outbox.parallelism:1}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(parallelism);
+        executor.setThreadNamePrefix("mail-outbox-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 删除文档 / 知识库后的后台清理线程池，单线程串行执行，避免多个大批量删除同时竞争 IO
+     * 清理任务由 StorageCleanupServiceImpl 按空闲线程数从 storage_cleanup_job 领取，不在内存中排队
+     */
+    @Bean
+    public ThreadPoolTaskExecutor cleanupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.setThreadNamePrefix("storage-cleanup-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 内存向量索引加载 / 重建线程池，加载期间检索回退到 pgvector
+     */
+    @Bean
+    public ThreadPoolTaskExecutor vectorIndexExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("vector-index-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * embedding 合并批次的执行线程池，线程数即同时发往后端的批次数
+     */
+    @Bean
+    public ThreadPoolTaskExecutor embeddingBatchExecutor(@Value("${rag.embedding.batching.max-concurrent-batches:4}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency);
+        executor.setThreadNamePrefix("embedding-batch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 模型调用线程池，调用线程在此等待结果以实现超时控制；
+     * 并发由各模型网关的信号量限制，这里不排队；超时的调用会被中断，但仍占用线程和网关的并发名额直到 HTTP 请求结束
+     * 线程耗尽时网关直接降级，不计入熔断
+     */
+    @Bean
+    public ThreadPoolTaskExecutor llmCallExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(64);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("llm-call-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 知识库预取线程池（见 KnowledgePrefetcher），队列满时跳过预取，由模型按需调用 KnowledgeTool
+     */
+    @Bean
+    public ThreadPoolTaskExecutor knowledgePrefetchExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("knowledge-prefetch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 会话摘要线程池，摘要生成不在回复的关键路径上，队列满时跳过，下一轮回复后再检查
+     */
+    @Bean
+    public ThreadPoolTaskExecutor summaryExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("session-summary-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 工具执行线程池（见 ToolGuard），调用方按工具超时时间等待结果，超时后中断执行线程
+     * 不排队：线程用尽时直接拒绝，向模型返回繁忙结果，避免请求堆积在卡住的工具后面
+     */
+    @Bean
+    public ThreadPoolTaskExecutor toolExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("agent-tool-");
+        executor.initialize();
+        return executor;
+    }
 }
@@ -1,17 +1,40 @@
 package com.kama.jchatmind.config;
 
+import com.kama.jchatmind.llm.GatewayChatModel;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Component
 public class ChatClientRegistry {
 
     private final Map<String, ChatClient> chatClients;
 
-    public ChatClientRegistry(Map<String, ChatClient> chatClients) {
+    public ChatClientRegistry(Map<String, ChatClient> chatClients, List<GatewayChatModel> gateways) {
         this.chatClients = chatClients;
+
+        // 按 llm.gateway.<provider>.fallback 连接各模型的降级目标
+        Map<String, GatewayChatModel> gatewayByName = gateways.stream()
+                .collect(Collectors.toMap(GatewayChatModel::getName, Function.identity()));
+        for (GatewayChatModel gateway : gateways) {
+            String fallback = gateway.getSettings().getFallback();
+            if (!StringUtils.hasText(fallback)) {
+                continue;
+            }
+            GatewayChatModel target = gatewayByName.get(fallback);
+            if (target == null || target == gateway) {
+                log.warn("模型 {} 的降级目标 {} 不存在，忽略", gateway.getName(), fallback);
+                continue;
+            }
+            gateway.setFallback(target);
+        }
     }
 
     public ChatClient get(String key) {
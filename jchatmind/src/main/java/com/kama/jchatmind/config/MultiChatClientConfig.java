@@ -1,22 +1,77 @@
 package com.kama.jchatmind.config;
 
+import com.kama.jchatmind.llm.GatewayChatModel;
+import com.kama.jchatmind.llm.GatewaySettings;
+import com.kama.jchatmind.metrics.MetricsRegistry;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.deepseek.DeepSeekChatModel;
 import org.springframework.ai.zhipuai.ZhiPuAiChatModel;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 @Configuration
 public class MultiChatClientConfig {
+
+    private final Environment environment;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadPoolTaskExecutor llmCallExecutor;
+
+    public MultiChatClientConfig(Environment environment,
+                                 MetricsRegistry metricsRegistry,
+                                 @Qualifier("llmCallExecutor") ThreadPoolTaskExecutor llmCallExecutor) {
+        this.environment = environment;
+        this.metricsRegistry = metricsRegistry;
+        this.llmCallExecutor = llmCallExecutor;
+    }
+
     // deepseek
+    @Bean
+    public GatewayChatModel deepSeekGateway(DeepSeekChatModel deepSeekChatModel) {
+        return new GatewayChatModel("deepseek-chat", deepSeekChatModel, gatewaySettings("deepseek"),
+                llmCallExecutor, metricsRegistry);
+    }
+
     @Bean("deepseek-chat")
-    public ChatClient deepSeekChatClient(DeepSeekChatModel deepSeekChatModel) {
-        return ChatClient.create(deepSeekChatModel);
+    public ChatClient deepSeekChatClient(@Qualifier("deepSeekGateway") GatewayChatModel deepSeekGateway) {
+        return ChatClient.create(deepSeekGateway);
     }
 
     // zhipuai
+    @Bean
+    public GatewayChatModel zhiPuAiGateway(ZhiPuAiChatModel zhiPuAiChatModel) {
+        return new GatewayChatModel("glm-4.6", zhiPuAiChatModel, gatewaySettings("zhipuai"),
+                llmCallExecutor, metricsRegistry);
+    }
+
     @Bean("glm-4.6")
-    public ChatClient zhiPuAiChatClient(ZhiPuAiChatModel zhiPuAiChatModel) {
-        return ChatClient.create(zhiPuAiChatModel);
+    public ChatClient zhiPuAiChatClient(@Qualifier("zhiPuAiGateway") GatewayChatModel zhiPuAiGateway) {
+        return ChatClient.create(zhiPuAiGateway);
+    }
+
+    /**
+     * 读取 llm.gateway.<provider> 下的配置，未配置的项使用 GatewaySettings 的默认值
+     */
+    private GatewaySettings gatewaySettings(String provider) {
+        String prefix = "llm.gateway." + provider + ".";
+        GatewaySettings defaults = GatewaySettings.builder().build();
+        return GatewaySettings.builder()
+                .maxConcurrency(environment.getProperty(prefix + "max-concurrency", Integer.class, defaults.getMaxConcurrency()))
+                .ratePerSecond(environment.getProperty(prefix + "rate-per-second", Double.class, defaults.getRatePerSecond()))
+                .burst(environment.getProperty(prefix + "burst", Integer.class, defaults.getBurst()))
+                .queueTimeoutMs(environment.getProperty(prefix + "queue-timeout-ms", Long.class, defaults.getQueueTimeoutMs()))
+                .minTimeoutMs(environment.getProperty(prefix + "min-timeout-ms", Long.class, defaults.getMinTimeoutMs()))
+                .maxTimeoutMs(environment.getProperty(prefix + "max-timeout-ms", Long.class, defaults.getMaxTimeoutMs()))
+                .timeoutMultiplier(environment.getProperty(prefix + "timeout-multiplier", Double.class, defaults.getTimeoutMultiplier()))
+                .minSamples(environment.getProperty(prefix + "min-samples", Integer.class, defaults.getMinSamples()))
+                .maxAttempts(environment.getProperty(prefix + "max-attempts", Integer.class, defaults.getMaxAttempts()))
+                .baseBackoffMs(environment.getProperty(prefix + "base-backoff-ms", Long.class, defaults.getBaseBackoffMs()))
+                .maxBackoffMs(environment.getProperty(prefix + "max-backoff-ms", Long.class, defaults.getMaxBackoffMs()))
+                .circuitFailureThreshold(environment.getProperty(prefix + "circuit.failure-threshold", Integer.class, defaults.getCircuitFailureThreshold()))
+                .circuitOpenMs(environment.getProperty(prefix + "circuit.open-ms", Long.class, defaults.getCircuitOpenMs()))
+                .fallback(environment.getProperty(prefix + "fallback"))
+                .build();
     }
 }
@@ -5,6 +5,7 @@ import com.kama.jchatmind.model.request.CreateAgentRequest;
 import com.kama.jchatmind.model.request.UpdateAgentRequest;
 import com.kama.jchatmind.model.response.CreateAgentResponse;
 import com.kama.jchatmind.model.response.GetAgentsResponse;
+import com.kama.jchatmind.model.vo.AgentUsageVO;
 import com.kama.jchatmind.service.AgentFacadeService;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
@@ -41,4 +42,10 @@ public class AgentController {
         agentFacadeService.updateAgent(agentId, request);
         return ApiResponse.success();
     }
+
+    // 查询 agent 的 token 用量及前缀缓存命中情况
+    @GetMapping("/agents/{agentId}/usage")
+    public ApiResponse<AgentUsageVO> getAgentUsage(@PathVariable String agentId) {
+        return ApiResponse.success(agentFacadeService.getAgentUsage(agentId));
+    }
 }
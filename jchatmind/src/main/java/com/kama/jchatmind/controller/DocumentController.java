@@ -43,6 +43,14 @@ public class DocumentController {
         return ApiResponse.success(documentFacadeService.uploadDocument(kbId, file));
     }
 
+    // 重新上传文档内容（增量更新 chunks）
+    @PutMapping("/documents/{documentId}/content")
+    public ApiResponse<CreateDocumentResponse> reuploadDocument(
+            @PathVariable String documentId,
+            @RequestParam("file") MultipartFile file) {
+        return ApiResponse.success(documentFacadeService.reuploadDocument(documentId, file));
+    }
+
     // 删除文档
     @DeleteMapping("/documents/{documentId}")
     public ApiResponse<Void> deleteDocument(@PathVariable String documentId) {
@@ -0,0 +1,24 @@
+package com.kama.jchatmind.controller;
+
+import com.kama.jchatmind.model.common.ApiResponse;
+import com.kama.jchatmind.model.response.GetIngestionJobResponse;
+import com.kama.jchatmind.service.IngestionJobService;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@AllArgsConstructor
+public class IngestionJobController {
+
+    private final IngestionJobService ingestionJobService;
+
+    // 查询文档解析任务的状态与进度
+    @GetMapping("/ingestion-jobs/{jobId}")
+    public ApiResponse<GetIngestionJobResponse> getJob(@PathVariable String jobId) {
+        return ApiResponse.success(ingestionJobService.getJob(jobId));
+    }
+}
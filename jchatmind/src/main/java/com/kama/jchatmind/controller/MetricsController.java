@@ -0,0 +1,24 @@
+package com.kama.jchatmind.controller;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.common.ApiResponse;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+@AllArgsConstructor
+public class MetricsController {
+
+    private final MetricsRegistry metricsRegistry;
+
+    // 查询进程内指标（缓存命中率、耗时分布等）
+    @GetMapping("/metrics")
+    public ApiResponse<Map<String, Object>> getMetrics() {
+        return ApiResponse.success(metricsRegistry.snapshot());
+    }
+}
@@ -20,4 +20,10 @@ public class SseController {
     public SseEmitter connect(@PathVariable String chatSessionId) {
         return sseService.connect(chatSessionId);
     }
+
+    // 订阅文档解析任务的进度
+    @RequestMapping(value = "/connect/ingestion/{jobId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter connectIngestion(@PathVariable String jobId) {
+        return sseService.connect(jobId);
+    }
 }
@@ -0,0 +1,23 @@
+package com.kama.jchatmind.controller;
+
+import com.kama.jchatmind.model.common.ApiResponse;
+import com.kama.jchatmind.model.response.GetCleanupReportsResponse;
+import com.kama.jchatmind.service.StorageCleanupService;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api")
+@AllArgsConstructor
+public class StorageCleanupController {
+
+    private final StorageCleanupService storageCleanupService;
+
+    // 查询最近的存储清理报告（删除的 chunk 数、释放的文件空间等）
+    @GetMapping("/storage/cleanup-reports")
+    public ApiResponse<GetCleanupReportsResponse> getCleanupReports() {
+        return ApiResponse.success(storageCleanupService.getRecentReports());
+    }
+}
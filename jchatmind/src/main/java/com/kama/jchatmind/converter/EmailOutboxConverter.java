@@ -0,0 +1,26 @@
+package com.kama.jchatmind.converter;
+
+import com.kama.jchatmind.model.entity.EmailOutbox;
+import com.kama.jchatmind.model.vo.EmailOutboxVO;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+@Component
+public class EmailOutboxConverter {
+
+    public EmailOutboxVO toVO(EmailOutbox emailOutbox) {
+        Assert.notNull(emailOutbox, "EmailOutbox cannot be null");
+
+        return EmailOutboxVO.builder()
+                .id(emailOutbox.getId())
+                .recipient(emailOutbox.getRecipient())
+                .subject(emailOutbox.getSubject())
+                .status(emailOutbox.getStatus())
+                .attempts(emailOutbox.getAttempts())
+                .lastError(emailOutbox.getLastError())
+                .nextRunAt(emailOutbox.getNextRunAt())
+                .sentAt(emailOutbox.getSentAt())
+                .createdAt(emailOutbox.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.kama.jchatmind.converter;
+
+import com.kama.jchatmind.model.entity.IngestionJob;
+import com.kama.jchatmind.model.vo.IngestionJobVO;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+@Component
+public class IngestionJobConverter {
+
+    public IngestionJobVO toVO(IngestionJob ingestionJob) {
+        Assert.notNull(ingestionJob, "IngestionJob cannot be null");
+
+        return IngestionJobVO.builder()
+                .id(ingestionJob.getId())
+                .kbId(ingestionJob.getKbId())
+                .docId(ingestionJob.getDocId())
+                .status(ingestionJob.getStatus())
+                .stage(ingestionJob.getStage())
+                .totalSections(ingestionJob.getTotalSections())
+                .processedSections(ingestionJob.getProcessedSections())
+                .attempts(ingestionJob.getAttempts())
+                .lastError(ingestionJob.getLastError())
+                .createdAt(ingestionJob.getCreatedAt())
+                .updatedAt(ingestionJob.getUpdatedAt())
+                .build();
+    }
+}
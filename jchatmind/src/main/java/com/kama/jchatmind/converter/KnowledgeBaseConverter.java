@@ -62,9 +62,15 @@ public class KnowledgeBaseConverter {
     public KnowledgeBaseDTO toDTO(CreateKnowledgeBaseRequest request) {
         Assert.notNull(request, "CreateKnowledgeBaseRequest cannot be null");
 
+        KnowledgeBaseDTO.MetaData metadata = null;
+        if (request.getVectorStore() != null) {
+            metadata = new KnowledgeBaseDTO.MetaData();
+            metadata.setVectorStore(request.getVectorStore());
+        }
         return KnowledgeBaseDTO.builder()
                 .name(request.getName())
                 .description(request.getDescription())
+                .metadata(metadata)
                 .build();
     }
 
@@ -78,5 +84,11 @@ public class KnowledgeBaseConverter {
         if (request.getDescription() != null) {
             dto.setDescription(request.getDescription());
         }
+        if (request.getVectorStore() != null) {
+            if (dto.getMetadata() == null) {
+                dto.setMetadata(new KnowledgeBaseDTO.MetaData());
+            }
+            dto.getMetadata().setVectorStore(request.getVectorStore());
+        }
     }
 }
@@ -3,6 +3,7 @@ package com.kama.jchatmind.event.listener;
 import com.kama.jchatmind.agent.JChatMind;
 import com.kama.jchatmind.agent.JChatMindFactory;
 import com.kama.jchatmind.event.ChatEvent;
+import com.kama.jchatmind.service.SessionSummaryService;
 import lombok.AllArgsConstructor;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Async;
@@ -13,12 +14,18 @@ import org.springframework.stereotype.Component;
 public class ChatEventListener {
 
     private final JChatMindFactory jChatMindFactory;
+    private final SessionSummaryService sessionSummaryService;
 
     @Async
     @EventListener
     public void handle(ChatEvent event) {
-        // 创建一个 Agent 实例处理聊天事件
-        JChatMind jChatMind = jChatMindFactory.create(event.getAgentId(), event.getSessionId());
-        jChatMind.run();
+        // 创建一个 Agent 实例处理聊天事件，创建过程中用用户消息预取知识库
+        JChatMind jChatMind = jChatMindFactory.create(event.getAgentId(), event.getSessionId(), event.getUserInput());
+        try {
+            jChatMind.run();
+        } finally {
+            // 回复完成后在后台把滑出窗口的消息合并进会话摘要
+            sessionSummaryService.scheduleSummarize(event.getAgentId(), event.getSessionId());
+        }
     }
 }
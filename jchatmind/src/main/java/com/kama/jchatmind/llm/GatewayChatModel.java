@@ -0,0 +1,305 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.LatencyHistogram;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.resilience.CircuitBreaker;
+import com.kama.jchatmind.resilience.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.retry.NonTransientAiException;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 模型提供方网关，包装具体的 ChatModel（DeepSeek / ZhiPu 等）
+ * - 令牌桶限流 + 信号量限制并发，排队超时直接降级，排队耗时计入 llm.<name>.queue_wait
+ * - 每次调用的超时按近期耗时 p95 自适应调整
+ * - 失败后按 full jitter 退避重试，连续失败触发熔断
+ * - 重试耗尽、熔断或排队超时时降级到 fallback 模型（只降级一层，不会链式降级）
+ * - 并发名额一直占用到底层调用真正返回：超时的调用会被中断，但在 HTTP 请求结束前仍计入并发
+ */
+@Slf4j
+public class GatewayChatModel implements ChatModel {
+
+    private final String name;
+    private final ChatModel delegate;
+    private final GatewaySettings settings;
+    private final Executor executor;
+    private final MetricsRegistry metricsRegistry;
+    private final Semaphore permits;
+    private final TokenBucket tokenBucket;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyHistogram latency;
+    private volatile GatewayChatModel fallback;
+
+    public GatewayChatModel(String name,
+                            ChatModel delegate,
+                            GatewaySettings settings,
+                            Executor executor,
+                            MetricsRegistry metricsRegistry) {
+        this.name = name;
+        this.delegate = delegate;
+        this.settings = settings;
+        this.executor = executor;
+        this.metricsRegistry = metricsRegistry;
+        this.permits = new Semaphore(settings.getMaxConcurrency(), true);
+        this.tokenBucket = new TokenBucket(settings.getRatePerSecond(), settings.getBurst());
+        this.circuitBreaker = new CircuitBreaker("llm-" + name, settings.getCircuitFailureThreshold(), settings.getCircuitOpenMs());
+        this.latency = metricsRegistry.histogram(metric("latency"));
+
+        metricsRegistry.gauge(metric("inflight"), () -> settings.getMaxConcurrency() - permits.availablePermits());
+        metricsRegistry.gauge(metric("queued"), permits::getQueueLength);
+        metricsRegistry.gauge(metric("timeout_ms"), this::currentTimeoutMs);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public GatewaySettings getSettings() {
+        return settings;
+    }
+
+    public void setFallback(GatewayChatModel fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        try {
+            return callOnce(prompt);
+        } catch (GatewayUnavailableException e) {
+            GatewayChatModel target = this.fallback;
+            if (target == null) {
+                throw new BizException("模型 " + name + " 调用失败: " + e.getMessage());
+            }
+            log.warn("模型 {} 不可用（{}），降级到 {}", name, e.getMessage(), target.name);
+            metricsRegistry.increment(metric("fallback"));
+            try {
+                return target.callOnce(prompt);
+            } catch (GatewayUnavailableException fallbackError) {
+                throw new BizException("模型 " + name + " 及降级模型 " + target.name + " 均调用失败: " + fallbackError.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 流式调用不经过超时与重试（流的耗时取决于输出长度），受限流、并发名额和熔断约束
+     * 排队在 boundedElastic 线程上等待，不阻塞订阅方线程；首个响应之前失败时与 call 一样降级到 fallback 模型，
+     * 已经输出部分内容后失败则直接报错
+     */
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return streamOnce(prompt).onErrorResume(GatewayUnavailableException.class, e -> {
+            GatewayChatModel target = this.fallback;
+            if (target == null) {
+                return Flux.error(new BizException("模型 " + name + " 调用失败: " + e.getMessage()));
+            }
+            log.warn("模型 {} 不可用（{}），流式调用降级到 {}", name, e.getMessage(), target.name);
+            metricsRegistry.increment(metric("fallback"));
+            return target.streamOnce(prompt).onErrorMap(GatewayUnavailableException.class,
+                    fallbackError -> new BizException("模型 " + name + " 及降级模型 " + target.name + " 均调用失败: " + fallbackError.getMessage()));
+        });
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    /**
+     * 在本提供方上完成一次调用（含重试），不降级；不可用时抛出 GatewayUnavailableException
+     * 每次尝试单独排队取并发名额，名额由执行调用的线程在底层调用返回后释放
+     */
+    private ChatResponse callOnce(Prompt prompt) {
+        RuntimeException lastError = null;
+        for (int attempt = 1; attempt <= settings.getMaxAttempts(); attempt++) {
+            if (attempt > 1) {
+                metricsRegistry.increment(metric("retry"));
+                backoff(attempt - 1);
+            }
+            acquire();
+            if (!circuitBreaker.tryAcquire()) {
+                permits.release();
+                metricsRegistry.increment(metric("circuit_open"));
+                throw new GatewayUnavailableException("熔断中", lastError);
+            }
+            try {
+                return invoke(prompt);
+            } catch (NonTransientAiException e) {
+                // 请求本身有问题（如参数错误、鉴权失败），重试和降级都没有意义
+                circuitBreaker.onCancel();
+                throw e;
+            } catch (BizException | GatewayUnavailableException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                circuitBreaker.onFailure();
+                metricsRegistry.increment(metric("error"));
+                log.warn("模型 {} 第 {} 次调用失败: {}", name, attempt, e.getMessage());
+                lastError = e;
+            }
+        }
+        throw new GatewayUnavailableException("重试 " + settings.getMaxAttempts() + " 次后仍失败", lastError);
+    }
+
+    /**
+     * 调用方已持有一个并发名额，名额的释放由本方法负责：
+     * 调用开始执行后由执行线程在 delegate.call 返回时释放；调用未能开始（线程池拒绝、开始前被取消）时由调用方线程释放
+     */
+    private ChatResponse invoke(Prompt prompt) {
+        long timeoutMs = currentTimeoutMs();
+        long start = System.currentTimeMillis();
+        // 抢到 started 的一方负责释放名额
+        AtomicBoolean started = new AtomicBoolean();
+        FutureTask<ChatResponse> future = new FutureTask<>(() -> {
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return delegate.call(prompt);
+            } finally {
+                permits.release();
+            }
+        });
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            // 调用线程耗尽是本地资源不足，不是提供方故障，不计入熔断
+            permits.release();
+            circuitBreaker.onCancel();
+            metricsRegistry.increment(metric("executor_rejected"));
+            throw new GatewayUnavailableException("调用线程已满", null);
+        }
+        try {
+            ChatResponse response = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            circuitBreaker.onSuccess();
+            latency.record(System.currentTimeMillis() - start);
+            return response;
+        } catch (TimeoutException e) {
+            cancel(future, started);
+            metricsRegistry.increment(metric("timeout"));
+            throw new IllegalStateException("调用超时（" + timeoutMs + " ms）");
+        } catch (InterruptedException e) {
+            cancel(future, started);
+            Thread.currentThread().interrupt();
+            circuitBreaker.onCancel();
+            throw new BizException("模型调用被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // 中断正在执行的调用；调用尚未开始时不会再执行，名额在这里释放
+    private void cancel(FutureTask<ChatResponse> future, AtomicBoolean started) {
+        future.cancel(true);
+        if (started.compareAndSet(false, true)) {
+            permits.release();
+        }
+    }
+
+    /**
+     * 在本提供方上完成一次流式调用，不降级；首个响应之前不可用时发出 GatewayUnavailableException
+     * 限流和并发名额的等待放在 boundedElastic 线程上，名额在流结束、出错或被取消时释放
+     */
+    private Flux<ChatResponse> streamOnce(Prompt prompt) {
+        return Flux.using(() -> {
+                    acquire();
+                    return permits;
+                }, acquired -> guardedStream(prompt), Semaphore::release)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<ChatResponse> guardedStream(Prompt prompt) {
+        if (!circuitBreaker.tryAcquire()) {
+            metricsRegistry.increment(metric("circuit_open"));
+            return Flux.error(new GatewayUnavailableException("熔断中", null));
+        }
+        AtomicBoolean emitted = new AtomicBoolean();
+        return delegate.stream(prompt)
+                .doOnNext(response -> emitted.set(true))
+                .doOnComplete(circuitBreaker::onSuccess)
+                .doOnCancel(circuitBreaker::onCancel)
+                .onErrorMap(e -> {
+                    if (e instanceof NonTransientAiException) {
+                        circuitBreaker.onCancel();
+                        return e;
+                    }
+                    circuitBreaker.onFailure();
+                    metricsRegistry.increment(metric("error"));
+                    log.warn("模型 {} 流式调用失败: {}", name, e.getMessage());
+                    // 已经输出了部分内容，不能再切换到其他模型重新生成
+                    return emitted.get()
+                            ? new BizException("模型 " + name + " 流式输出中断: " + e.getMessage())
+                            : new GatewayUnavailableException("流式调用失败", e);
+                });
+    }
+
+    /**
+     * 先取令牌再取并发名额，两者共用 queueTimeoutMs 的等待时间
+     */
+    private void acquire() {
+        long start = System.currentTimeMillis();
+        try {
+            if (!tokenBucket.acquire(settings.getQueueTimeoutMs())) {
+                metricsRegistry.increment(metric("rejected"));
+                throw new GatewayUnavailableException("限流排队超时", null);
+            }
+            long remaining = settings.getQueueTimeoutMs() - (System.currentTimeMillis() - start);
+            if (!permits.tryAcquire(Math.max(0, remaining), TimeUnit.MILLISECONDS)) {
+                metricsRegistry.increment(metric("rejected"));
+                throw new GatewayUnavailableException("并发排队超时", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException("模型调用被中断");
+        } finally {
+            metricsRegistry.recordLatency(metric("queue_wait"), System.currentTimeMillis() - start);
+        }
+    }
+
+    private long currentTimeoutMs() {
+        if (latency.count() < settings.getMinSamples()) {
+            return settings.getMaxTimeoutMs();
+        }
+        long adaptive = (long) (latency.percentile(0.95) * settings.getTimeoutMultiplier());
+        return Math.max(settings.getMinTimeoutMs(), Math.min(settings.getMaxTimeoutMs(), adaptive));
+    }
+
+    private void backoff(int retry) {
+        long ceiling = Math.min(settings.getMaxBackoffMs(), settings.getBaseBackoffMs() << Math.min(retry - 1, 20));
+        long sleepMs = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BizException("模型调用被中断");
+        }
+    }
+
+    private String metric(String suffix) {
+        return "llm." + name + "." + suffix;
+    }
+
+    private static class GatewayUnavailableException extends RuntimeException {
+        GatewayUnavailableException(String message, Throwable cause) {
+            super(cause == null ? message : message + ": " + cause.getMessage(), cause);
+        }
+    }
+}
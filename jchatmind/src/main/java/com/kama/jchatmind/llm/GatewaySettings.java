@@ -0,0 +1,62 @@
+package com.kama.jchatmind.llm;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 单个模型提供方的网关配置，对应 application.yaml 中 llm.gateway.<provider> 下的配置项
+ */
+@Data
+@Builder
+public class GatewaySettings {
+
+    // 同时在途的请求数上限
+    @Builder.Default
+    private int maxConcurrency = 8;
+
+    // 每秒允许发出的请求数，<= 0 表示不限流
+    @Builder.Default
+    private double ratePerSecond = 0;
+
+    // 令牌桶容量，允许的瞬时突发请求数
+    @Builder.Default
+    private int burst = 10;
+
+    // 排队（限流 + 并发名额）最长等待时间，超过后直接走降级
+    @Builder.Default
+    private long queueTimeoutMs = 10_000;
+
+    // 自适应超时：取最近耗时 p95 的 timeoutMultiplier 倍，限制在 [minTimeoutMs, maxTimeoutMs] 之间
+    @Builder.Default
+    private long minTimeoutMs = 10_000;
+
+    @Builder.Default
+    private long maxTimeoutMs = 120_000;
+
+    @Builder.Default
+    private double timeoutMultiplier = 3;
+
+    // 样本数不足时使用 maxTimeoutMs
+    @Builder.Default
+    private int minSamples = 20;
+
+    // 包含首次调用在内的最大尝试次数
+    @Builder.Default
+    private int maxAttempts = 2;
+
+    // 重试退避：在 [0, min(maxBackoffMs, baseBackoffMs * 2^n)] 内随机取值（full jitter）
+    @Builder.Default
+    private long baseBackoffMs = 500;
+
+    @Builder.Default
+    private long maxBackoffMs = 5_000;
+
+    @Builder.Default
+    private int circuitFailureThreshold = 5;
+
+    @Builder.Default
+    private long circuitOpenMs = 30_000;
+
+    // 失败时降级使用的模型（ChatClient 名称），为空表示不降级
+    private String fallback;
+}
@@ -0,0 +1,95 @@
+package com.kama.jchatmind.mail;
+
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在一个 SMTP 连接上发送一批邮件
+ * JavaMailSender.send(SimpleMailMessage...) 只建立一次 Transport 连接，逐封发送，单封失败不会中断同批的其他邮件
+ * 收件人地址格式错误会导致整批在发送前就失败，所以先逐封校验，格式错误的邮件不参与发送
+ */
+public class MailBatchSender {
+
+    private final JavaMailSender mailSender;
+
+    public MailBatchSender(JavaMailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+
+    /**
+     * @return 发送失败的邮件（messages 中的下标）及原因，不在结果中的邮件均已发送成功
+     */
+    public Map<Integer, Exception> send(List<SimpleMailMessage> messages) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        // 按对象身份定位失败的邮件，内容完全相同的两封邮件也能区分
+        Map<SimpleMailMessage, Integer> indexes = new IdentityHashMap<>();
+        List<SimpleMailMessage> sendable = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            SimpleMailMessage message = messages.get(i);
+            try {
+                for (String to : message.getTo()) {
+                    new InternetAddress(to, true);
+                }
+                indexes.put(message, i);
+                sendable.add(message);
+            } catch (AddressException e) {
+                failures.put(i, new MailParseException(e));
+            }
+        }
+        if (sendable.isEmpty()) {
+            return failures;
+        }
+
+        try {
+            mailSender.send(sendable.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) {
+                // 没有逐封的失败信息（如连接失败），整批视为失败
+                sendable.forEach(message -> failures.put(indexes.get(message), e));
+            } else {
+                failedMessages.forEach((message, cause) -> {
+                    Integer index = indexes.get(message);
+                    if (index != null) {
+                        failures.put(index, cause);
+                    }
+                });
+            }
+        } catch (MailException e) {
+            // 认证失败等，整批未发送
+            sendable.forEach(message -> failures.put(indexes.get(message), e));
+        }
+        return failures;
+    }
+
+    /**
+     * 重试也不会成功的失败：地址格式错误、邮件构造失败、服务器以 5xx 拒收收件人
+     */
+    public static boolean isPermanent(Exception e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MailParseException || cause instanceof MailPreparationException) {
+                return true;
+            }
+            // 5xx 拒收的地址在 invalidAddresses 中，4xx（稍后重试）的在 validUnsentAddresses 中
+            if (cause instanceof SendFailedException sendFailed
+                    && sendFailed.getInvalidAddresses() != null
+                    && sendFailed.getInvalidAddresses().length > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
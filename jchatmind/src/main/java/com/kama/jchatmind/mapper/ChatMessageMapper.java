@@ -2,7 +2,9 @@ package com.kama.jchatmind.mapper;
 
 import com.kama.jchatmind.model.entity.ChatMessage;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -19,7 +21,15 @@ public interface ChatMessageMapper {
 
     List<ChatMessage> selectBySessionId(String sessionId);
 
-    List<ChatMessage> selectBySessionIdRecently(String sessionId, int limit);
+    List<ChatMessage> selectBySessionIdRecently(@Param("sessionId") String sessionId,
+                                               @Param("after") LocalDateTime after,
+                                               @Param("limit") int limit);
+
+    List<ChatMessage> selectBySessionIdAfter(@Param("sessionId") String sessionId,
+                                             @Param("after") LocalDateTime after,
+                                             @Param("limit") int limit);
+
+    int countBySessionIdAfter(@Param("sessionId") String sessionId, @Param("after") LocalDateTime after);
 
     int deleteById(String id);
 
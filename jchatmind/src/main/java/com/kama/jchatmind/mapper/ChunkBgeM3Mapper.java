@@ -22,9 +22,64 @@ public interface ChunkBgeM3Mapper {
 
     int updateById(ChunkBgeM3 chunkBgeM3);
 
+    /**
+     * 查询文档下所有 chunk 的 id 和 metadata（不加载 embedding），用于增量更新时比对章节哈希
+     */
+    List<ChunkBgeM3> selectRefsByDocId(@Param("docId") String docId);
+
+    /**
+     * 按 ID 批量查询 chunk（不加载 embedding）
+     */
+    List<ChunkBgeM3> selectByIds(@Param("ids") List<String> ids);
+
+    /**
+     * 按 ID 顺序分页查询知识库下 chunk 的 id、doc_id 和 embedding（不加载内容），用于加载内存向量索引
+     *
+     * @param table   知识库所在的表，由 ChunkPartitionService.tableFor 给出
+     * @param afterId 上一页最后一个 chunk 的 ID，第一页传 null
+     */
+    List<ChunkBgeM3> selectEmbeddingPage(@Param("table") String table,
+                                         @Param("kbId") String kbId,
+                                         @Param("afterId") String afterId,
+                                         @Param("limit") int limit);
+
+    int deleteByIds(@Param("ids") List<String> ids);
+
+    /**
+     * 分批删除文档下的 chunk，每次最多删除 limit 行，避免长事务和长时间持锁
+     */
+    int deleteBatchByDocId(@Param("table") String table, @Param("docId") String docId, @Param("limit") int limit);
+
+    /**
+     * 分批删除知识库下的 chunk，每次最多删除 limit 行
+     */
+    int deleteBatchByKbId(@Param("kbId") String kbId, @Param("limit") int limit);
+
+    /**
+     * @param table 知识库所在的表，启用分区时直接查询分区表，只扫描该知识库自己的向量索引
+     */
     List<ChunkBgeM3> similaritySearch(
+            @Param("table") String table,
+            @Param("kbId") String kbId,
+            @Param("vectorLiteral") String vectorLiteral,
+            @Param("limit") int limit
+    );
+
+    /**
+     * 两阶段检索：先按量化向量（halfvec / binary）召回 candidates 个候选，再用全精度向量重新排序取前 limit 个
+     * 量化表达式与 sql/chunk_quantization.sql 中的表达式索引保持一致，才能命中索引
+     *
+     * @param table        知识库所在的表
+     * @param quantization halfvec 或 binary
+     * @param dimension    向量维度，用于量化类型的类型修饰符
+     */
+    List<ChunkBgeM3> similaritySearchQuantized(
+            @Param("table") String table,
             @Param("kbId") String kbId,
             @Param("vectorLiteral") String vectorLiteral,
+            @Param("quantization") String quantization,
+            @Param("dimension") int dimension,
+            @Param("candidates") int candidates,
             @Param("limit") int limit
     );
 }
@@ -23,5 +23,7 @@ public interface DocumentMapper {
 
     int deleteById(String id);
 
+    int deleteByKbId(String kbId);
+
     int updateById(Document document);
 }
@@ -0,0 +1,47 @@
+package com.kama.jchatmind.mapper;
+
+import com.kama.jchatmind.model.entity.EmailOutbox;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 针对表【email_outbox】的数据库操作Mapper
+ * @Entity com.kama.jchatmind.model.entity.EmailOutbox
+ */
+@Mapper
+public interface EmailOutboxMapper {
+    int insert(EmailOutbox emailOutbox);
+
+    EmailOutbox selectById(String id);
+
+    /**
+     * 领取一批待发送的邮件，同时回收超过 staleSeconds 未完成（实例重启或崩溃遗留）、尝试次数未满 maxAttempts 的 SENDING 邮件
+     */
+    List<EmailOutbox> claimBatch(@Param("limit") int limit,
+                                 @Param("staleSeconds") long staleSeconds,
+                                 @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * 超过 staleSeconds 未完成且尝试次数已达 maxAttempts 的 SENDING 邮件标记为 FAILED
+     */
+    int failStale(@Param("staleSeconds") long staleSeconds,
+                  @Param("maxAttempts") int maxAttempts,
+                  @Param("lastError") String lastError);
+
+    int markSent(@Param("ids") List<String> ids);
+
+    /**
+     * retryDelaySeconds 不为空时，next_run_at 设为数据库当前时间之后的 retryDelaySeconds 秒
+     */
+    int markFailed(@Param("id") String id,
+                   @Param("status") String status,
+                   @Param("lastError") String lastError,
+                   @Param("retryDelaySeconds") Long retryDelaySeconds);
+
+    /**
+     * 把已领取但没能交给线程池的邮件放回队列，不消耗尝试次数
+     */
+    int releaseClaim(@Param("ids") List<String> ids);
+}
@@ -0,0 +1,51 @@
+package com.kama.jchatmind.mapper;
+
+import com.kama.jchatmind.model.entity.IngestionJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 针对表【ingestion_job】的数据库操作Mapper
+ * @Entity com.kama.jchatmind.model.entity.IngestionJob
+ */
+@Mapper
+public interface IngestionJobMapper {
+    int insert(IngestionJob ingestionJob);
+
+    IngestionJob selectById(String id);
+
+    List<IngestionJob> selectByDocId(String docId);
+
+    /**
+     * 领取待执行的任务，同时回收超过 staleSeconds 没有心跳（实例重启或崩溃遗留）的 RUNNING 任务
+     */
+    List<IngestionJob> claimRunnable(@Param("limit") int limit,
+                                     @Param("staleSeconds") long staleSeconds);
+
+    int updateProgress(@Param("id") String id,
+                       @Param("stage") String stage,
+                       @Param("processedSections") Integer processedSections,
+                       @Param("totalSections") Integer totalSections);
+
+    int markSucceeded(@Param("id") String id);
+
+    /**
+     * 取消文档（或知识库下所有文档）尚未开始的解析任务
+     */
+    int cancelPending(@Param("docId") String docId, @Param("kbId") String kbId, @Param("reason") String reason);
+
+    /**
+     * retryDelaySeconds 不为空时，next_run_at 设为数据库当前时间之后的 retryDelaySeconds 秒
+     */
+    int markFailed(@Param("id") String id,
+                   @Param("status") String status,
+                   @Param("lastError") String lastError,
+                   @Param("retryDelaySeconds") Long retryDelaySeconds);
+
+    /**
+     * 把已领取但没能开始执行的任务放回队列，不消耗重试次数
+     */
+    int releaseClaim(@Param("id") String id);
+}
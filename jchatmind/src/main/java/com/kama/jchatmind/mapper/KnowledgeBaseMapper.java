@@ -21,6 +21,16 @@ public interface KnowledgeBaseMapper {
 
     List<KnowledgeBase> selectByIdBatch(List<String> ids);
 
+    /**
+     * 知识库内容版本号，知识库不存在时返回 null
+     */
+    Long selectContentVersion(String id);
+
+    /**
+     * 内容版本号加一并返回新值，知识库不存在时返回 null
+     */
+    Long bumpContentVersion(String id);
+
     int deleteById(String id);
 
     int updateById(KnowledgeBase knowledgeBase);
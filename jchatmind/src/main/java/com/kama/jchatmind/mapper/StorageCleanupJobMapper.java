@@ -0,0 +1,42 @@
+package com.kama.jchatmind.mapper;
+
+import com.kama.jchatmind.model.entity.StorageCleanupJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 针对表【storage_cleanup_job】的数据库操作Mapper
+ * @Entity com.kama.jchatmind.model.entity.StorageCleanupJob
+ */
+@Mapper
+public interface StorageCleanupJobMapper {
+    int insert(StorageCleanupJob storageCleanupJob);
+
+    /**
+     * 领取待执行的清理任务，同时回收超过 staleSeconds 没有心跳（实例重启或崩溃遗留）的 RUNNING 任务
+     */
+    List<StorageCleanupJob> claimRunnable(@Param("limit") int limit,
+                                          @Param("staleSeconds") long staleSeconds);
+
+    /**
+     * 刷新 updated_at，表示任务仍在执行
+     */
+    int heartbeat(@Param("id") String id);
+
+    int markSucceeded(@Param("id") String id);
+
+    /**
+     * retryDelaySeconds 不为空时，next_run_at 设为数据库当前时间之后的 retryDelaySeconds 秒
+     */
+    int markFailed(@Param("id") String id,
+                   @Param("status") String status,
+                   @Param("lastError") String lastError,
+                   @Param("retryDelaySeconds") Long retryDelaySeconds);
+
+    /**
+     * 把已领取但没能开始执行的任务放回队列，不消耗重试次数
+     */
+    int releaseClaim(@Param("id") String id);
+}
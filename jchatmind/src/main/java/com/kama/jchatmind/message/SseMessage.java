@@ -1,6 +1,7 @@
 package com.kama.jchatmind.message;
 
 import com.kama.jchatmind.model.vo.ChatMessageVO;
+import com.kama.jchatmind.model.vo.IngestionJobVO;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -21,6 +22,7 @@ public class SseMessage {
         private ChatMessageVO message;
         private String statusText;
         private Boolean done;
+        private IngestionJobVO ingestionJob;
     }
 
     @Data
@@ -36,11 +38,13 @@ public class SseMessage {
     // 3. AI 思考中
     // 4. AI 执行中
     // 5. AI 完成
+    // 6. 文档解析进度
     public enum Type {
         AI_GENERATED_CONTENT,
         AI_PLANNING,
         AI_THINKING,
         AI_EXECUTING,
         AI_DONE,
+        INGESTION_PROGRESS,
     }
 }
@@ -0,0 +1,76 @@
+package com.kama.jchatmind.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定分桶的耗时直方图（毫秒），无锁累加
+ * 分位数按桶上界近似估算，足够用于观察 p50/p95/p99 的量级变化
+ */
+public class LatencyHistogram {
+
+    private static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        int index = BOUNDS.length;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            if (value <= BOUNDS[i]) {
+                index = i;
+                break;
+            }
+        }
+        buckets[index].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * 估算分位数，返回所在桶的上界；落在最后一个桶时返回观测到的最大值
+     */
+    public long percentile(double p) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return i < BOUNDS.length ? Math.min(BOUNDS[i], max.get()) : max.get();
+            }
+        }
+        return max.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        long total = count.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("avgMs", total == 0 ? 0 : sum.sum() / total);
+        result.put("p50Ms", percentile(0.50));
+        result.put("p95Ms", percentile(0.95));
+        result.put("p99Ms", percentile(0.99));
+        result.put("maxMs", max.get());
+        return result;
+    }
+}
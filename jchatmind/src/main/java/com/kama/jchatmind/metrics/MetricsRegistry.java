@@ -0,0 +1,64 @@
+package com.kama.jchatmind.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的轻量指标注册表，各模块按名称累加计数，通过 /api/metrics 查看
+ * 指标名使用点号分隔，如 rag.cache.hit.exact
+ */
+@Component
+public class MetricsRegistry {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    public void increment(String name) {
+        increment(name, 1);
+    }
+
+    public void increment(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public long count(String name) {
+        LongAdder adder = counters.get(name);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    /**
+     * 记录一次耗时（毫秒）到指定名称的直方图
+     */
+    public void recordLatency(String name, long millis) {
+        histogram(name).record(millis);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * 注册瞬时值指标，快照时调用 supplier 读取当前值（如队列长度、吞吐量）
+     */
+    public void gauge(String name, Supplier<? extends Number> supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * 所有指标的快照，按名称排序
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new TreeMap<>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        histograms.forEach((name, histogram) -> result.put(name, histogram.snapshot()));
+        gauges.forEach((name, supplier) -> result.put(name, supplier.get()));
+        return result;
+    }
+}
@@ -22,5 +22,12 @@ public class ChatSessionDTO {
 
     @Data
     public static class MetaData {
+        // 滚动摘要：早于 summarizedUntil 的消息已合并进 summary，加载上下文时不再读取
+        private String summary;
+
+        private LocalDateTime summarizedUntil;
+
+        // 已合并进摘要的消息条数
+        private Integer summarizedMessages;
     }
 }
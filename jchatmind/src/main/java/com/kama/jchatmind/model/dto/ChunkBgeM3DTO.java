@@ -26,5 +26,7 @@ public class ChunkBgeM3DTO {
 
     @Data
     public static class MetaData {
+        private String title; // 章节标题
+        private String contentHash; // 章节内容哈希（标题 + 正文的 SHA-256），用于增量更新
     }
 }
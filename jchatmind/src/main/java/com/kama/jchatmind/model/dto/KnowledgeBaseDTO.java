@@ -23,6 +23,9 @@ public class KnowledgeBaseDTO {
     @Data
     public static class MetaData {
         private String version;
+
+        // 检索后端：pgvector / memory，为空时使用 rag.vector-store.default
+        private String vectorStore;
     }
 
     @Override
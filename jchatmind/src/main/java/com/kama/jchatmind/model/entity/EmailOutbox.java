@@ -0,0 +1,40 @@
+package com.kama.jchatmind.model.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @TableName email_outbox
+ */
+@Data
+@Builder
+public class EmailOutbox {
+    private String id;
+
+    private String agentId;
+
+    private String chatSessionId;
+
+    private String recipient;
+
+    private String subject;
+
+    private String content;
+
+    // PENDING / SENDING / SENT / FAILED
+    private String status;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    private LocalDateTime nextRunAt;
+
+    private LocalDateTime sentAt;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,39 @@
+package com.kama.jchatmind.model.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @TableName ingestion_job
+ */
+@Data
+@Builder
+public class IngestionJob {
+    private String id;
+
+    private String kbId;
+
+    private String docId;
+
+    // PENDING / RUNNING / SUCCEEDED / FAILED
+    private String status;
+
+    // QUEUED / PARSING / EMBEDDING / COMPLETED
+    private String stage;
+
+    private Integer totalSections;
+
+    private Integer processedSections;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    private LocalDateTime nextRunAt;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,36 @@
+package com.kama.jchatmind.model.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * @TableName storage_cleanup_job
+ */
+@Data
+@Builder
+public class StorageCleanupJob {
+    private String id;
+
+    // DOCUMENT / KNOWLEDGE_BASE
+    private String target;
+
+    private String kbId;
+
+    // target 为 KNOWLEDGE_BASE 时为空
+    private String docId;
+
+    // PENDING / RUNNING / SUCCEEDED / FAILED
+    private String status;
+
+    private Integer attempts;
+
+    private String lastError;
+
+    private LocalDateTime nextRunAt;
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
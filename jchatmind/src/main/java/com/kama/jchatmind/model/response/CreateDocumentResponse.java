@@ -7,5 +7,7 @@ import lombok.Data;
 @Builder
 public class CreateDocumentResponse {
     private String documentId;
+    // 异步解析任务 ID，仅上传文件时返回
+    private String jobId;
 }
 
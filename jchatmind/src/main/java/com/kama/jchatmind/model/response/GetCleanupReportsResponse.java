@@ -0,0 +1,11 @@
+package com.kama.jchatmind.model.response;
+
+import com.kama.jchatmind.model.vo.CleanupReportVO;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class GetCleanupReportsResponse {
+    private CleanupReportVO[] reports;
+}
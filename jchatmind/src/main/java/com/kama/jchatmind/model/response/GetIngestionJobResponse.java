@@ -0,0 +1,11 @@
+package com.kama.jchatmind.model.response;
+
+import com.kama.jchatmind.model.vo.IngestionJobVO;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class GetIngestionJobResponse {
+    private IngestionJobVO job;
+}
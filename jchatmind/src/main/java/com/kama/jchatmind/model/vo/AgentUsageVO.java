@@ -0,0 +1,25 @@
+package com.kama.jchatmind.model.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class AgentUsageVO {
+    private String agentId;
+    // 模型调用次数
+    private Long calls;
+    private Long promptTokens;
+    private Long completionTokens;
+    // 命中提供方前缀缓存的输入 token 数（DeepSeek 的 prompt_cache_hit_tokens 等）
+    private Long cacheHitTokens;
+    // cacheHitTokens / promptTokens
+    private Double cacheHitRatio;
+    // 每一步（一次模型调用）输入 token 数的近似分位数
+    private Long stepPromptTokensP50;
+    private Long stepPromptTokensP95;
+    // 完成的回答数（JChatMind 运行次数）
+    private Long answers;
+    // 平均每个回答调用模型的次数
+    private Double llmCallsPerAnswer;
+}
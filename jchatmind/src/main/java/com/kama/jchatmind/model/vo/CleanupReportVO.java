@@ -0,0 +1,28 @@
+package com.kama.jchatmind.model.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class CleanupReportVO {
+    // DOCUMENT / KNOWLEDGE_BASE
+    private String target;
+    private String kbId;
+    private String docId;
+    private Long deletedChunks;
+    private Integer batches;
+    // 知识库有独立分区时直接删除分区，不再分批删除
+    private Boolean droppedPartition;
+    private Long deletedFileBytes;
+    // 是否在本次清理后触发了 VACUUM
+    private Boolean vacuumed;
+    // VACUUM 前后 chunk_bge_m3（启用分区时为对应分区）占用空间（字节），未触发 VACUUM 时为空
+    private Long tableBytesBefore;
+    private Long tableBytesAfter;
+    private Long elapsedMs;
+    private String error;
+    private LocalDateTime startedAt;
+}
@@ -0,0 +1,20 @@
+package com.kama.jchatmind.model.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class EmailOutboxVO {
+    private String id;
+    private String recipient;
+    private String subject;
+    private String status;
+    private Integer attempts;
+    private String lastError;
+    private LocalDateTime nextRunAt;
+    private LocalDateTime sentAt;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,22 @@
+package com.kama.jchatmind.model.vo;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class IngestionJobVO {
+    private String id;
+    private String kbId;
+    private String docId;
+    private String status;
+    private String stage;
+    private Integer totalSections;
+    private Integer processedSections;
+    private Integer attempts;
+    private String lastError;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,69 @@
+package com.kama.jchatmind.rag;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地 rerank 模型（cross-encoder）客户端
+ * 兼容 text-embeddings-inference 的 /rerank 接口：
+ * 请求 {"query": ..., "texts": [...]}，响应 [{"index": 0, "score": 0.98}, ...]
+ */
+@Slf4j
+@Component
+public class CrossEncoderClient {
+
+    private final WebClient webClient;
+
+    @Value("${rag.rerank.cross-encoder.enabled:false}")
+    private boolean enabled;
+
+    public CrossEncoderClient(WebClient.Builder builder,
+                              @Value("${rag.rerank.cross-encoder.base-url:http://localhost:8081}") String baseUrl) {
+        this.webClient = builder.baseUrl(baseUrl).build();
+    }
+
+    @Data
+    private static class RerankResult {
+        private int index;
+        private float score;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 为每个候选文本打分
+     *
+     * @param timeout 本次调用允许的最长耗时，超时抛出异常由调用方降级
+     * @return 与 texts 一一对应的分数
+     */
+    public float[] score(String query, List<String> texts, Duration timeout) {
+        List<RerankResult> results = webClient.post()
+                .uri("/rerank")
+                .bodyValue(Map.of(
+                        "query", query,
+                        "texts", texts
+                ))
+                .retrieve()
+                .bodyToFlux(RerankResult.class)
+                .collectList()
+                .block(timeout);
+        float[] scores = new float[texts.size()];
+        if (results != null) {
+            for (RerankResult result : results) {
+                if (result.getIndex() >= 0 && result.getIndex() < scores.length) {
+                    scores[result.getIndex()] = result.getScore();
+                }
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,67 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 知识库内容版本号，chunk 发生写入或删除时递增
+ * 依赖知识库内容的缓存把版本号记录在缓存项中，版本号不一致即视为失效
+ * 版本号保存在 knowledge_base.content_version（sql/knowledge_base_version.sql），多个实例共享：
+ * 本实例的写入立即可见，其他实例的写入最迟在 refresh-ms 后重新读取时可见
+ */
+@Component
+@Slf4j
+public class KnowledgeBaseVersions {
+
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final ConcurrentMap<String, Cached> versions = new ConcurrentHashMap<>();
+
+    @Value("${rag.cache.version-refresh-ms:1000}")
+    private long refreshMs;
+
+    public KnowledgeBaseVersions(KnowledgeBaseMapper knowledgeBaseMapper) {
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+    }
+
+    public long current(String kbId) {
+        Cached cached = versions.get(kbId);
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.readAtMillis < refreshMs) {
+            return cached.version;
+        }
+        long known = cached == null ? 0 : cached.version;
+        Long version;
+        try {
+            version = knowledgeBaseMapper.selectContentVersion(kbId);
+        } catch (Exception e) {
+            log.warn("读取知识库版本号失败: kbId={}, error={}", kbId, e.getMessage());
+            return known;
+        }
+        // 知识库已删除时沿用本地版本号
+        return update(kbId, version == null ? known : version, now);
+    }
+
+    public long bump(String kbId) {
+        Long version = knowledgeBaseMapper.bumpContentVersion(kbId);
+        if (version == null) {
+            // 知识库记录已删除（删除后的清理），只在本地递增，让本实例的缓存失效
+            Cached cached = versions.get(kbId);
+            version = (cached == null ? 0 : cached.version) + 1;
+        }
+        return update(kbId, version, System.currentTimeMillis());
+    }
+
+    // 版本号只增不减，并发读到的旧值不能覆盖较新的值
+    private long update(String kbId, long version, long readAtMillis) {
+        return versions.merge(kbId, new Cached(version, readAtMillis),
+                (old, latest) -> latest.version >= old.version ? latest : new Cached(old.version, readAtMillis)).version;
+    }
+
+    private record Cached(long version, long readAtMillis) {
+    }
+}
@@ -0,0 +1,63 @@
+package com.kama.jchatmind.rag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 最大边际相关性（MMR）重排
+ * 每一步选出 lambda * 相关性 - (1 - lambda) * 与已选结果的最大相似度 最高的候选，
+ * 在保持相关的同时压制同一章节的近似重复片段
+ */
+public final class MmrReranker {
+
+    private MmrReranker() {
+    }
+
+    /**
+     * @param unitVectors 候选向量（需已单位化，点积即余弦相似度）
+     * @param relevance   候选与查询的相关性分数，越大越相关
+     * @param k           需要选出的数量
+     * @param lambda      相关性权重，取值 [0, 1]，1 表示不做多样化
+     * @return 选中候选的下标，按选中顺序排列
+     */
+    public static List<Integer> select(float[][] unitVectors, float[] relevance, int k, float lambda) {
+        int n = unitVectors.length;
+        int limit = Math.min(k, n);
+        List<Integer> selected = new ArrayList<>(limit);
+        if (limit == 0) {
+            return selected;
+        }
+
+        // maxSim[i] 为候选 i 与已选集合的最大相似度，每选中一个只需增量更新
+        float[] maxSim = new float[n];
+        boolean[] taken = new boolean[n];
+        Arrays.fill(maxSim, Float.NEGATIVE_INFINITY);
+
+        for (int round = 0; round < limit; round++) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < n; i++) {
+                if (taken[i]) {
+                    continue;
+                }
+                float redundancy = round == 0 ? 0f : maxSim[i];
+                float score = lambda * relevance[i] - (1 - lambda) * redundancy;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            taken[best] = true;
+            selected.add(best);
+
+            float[] chosen = unitVectors[best];
+            for (int i = 0; i < n; i++) {
+                if (!taken[i]) {
+                    maxSim[i] = Math.max(maxSim[i], VectorMath.dot(unitVectors[i], chosen));
+                }
+            }
+        }
+        return selected;
+    }
+}
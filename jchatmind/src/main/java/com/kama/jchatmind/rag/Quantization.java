@@ -0,0 +1,64 @@
+package com.kama.jchatmind.rag;
+
+/**
+ * 向量量化工具
+ * - int8 标量量化：按向量最大绝对值对称缩放到 [-127, 127]，存储缩小 4 倍
+ * - 二值量化：只保留每个分量的符号位，存储缩小 32 倍，用汉明距离粗排
+ * 量化后的距离只用于召回候选，最终排序需要用全精度向量重新打分
+ */
+public final class Quantization {
+
+    private Quantization() {
+    }
+
+    /**
+     * int8 量化
+     *
+     * @param codes 输出的量化码，长度与 vector 相同
+     * @return 缩放系数，原值约等于 code * scale
+     */
+    public static float quantizeInt8(float[] vector, byte[] codes) {
+        float maxAbs = 0f;
+        for (float v : vector) {
+            maxAbs = Math.max(maxAbs, Math.abs(v));
+        }
+        if (maxAbs == 0f) {
+            return 0f;
+        }
+        float scale = maxAbs / 127f;
+        float inv = 1f / scale;
+        for (int i = 0; i < vector.length; i++) {
+            codes[i] = (byte) Math.round(vector[i] * inv);
+        }
+        return scale;
+    }
+
+    public static float[] dequantizeInt8(byte[] codes, float scale) {
+        float[] vector = new float[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            vector[i] = codes[i] * scale;
+        }
+        return vector;
+    }
+
+    /**
+     * 二值量化，分量大于 0 的位置 1，与 pgvector 的 binary_quantize 一致
+     */
+    public static long[] quantizeBinary(float[] vector) {
+        long[] bits = new long[(vector.length + 63) / 64];
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                bits[i >>> 6] |= 1L << (i & 63);
+            }
+        }
+        return bits;
+    }
+
+    public static int hamming(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+}
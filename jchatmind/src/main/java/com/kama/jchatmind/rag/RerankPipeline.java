@@ -0,0 +1,130 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.rag.store.VectorHit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * 检索后处理：对向量检索超量召回的候选做重排，选出最终送入上下文的片段
+ * 1. 可选：调用本地 cross-encoder 重新计算相关性，仅在剩余预算足够时调用，超时或失败回退到向量相似度
+ * 2. MMR 多样化，去掉同一章节的近似重复片段
+ * 整个流程受单次查询的耗时预算约束，各阶段耗时记录到 /api/metrics
+ */
+@Slf4j
+@Component
+public class RerankPipeline {
+
+    private final CrossEncoderClient crossEncoderClient;
+    private final MetricsRegistry metricsRegistry;
+
+    @Value("${rag.rerank.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.rerank.mmr-lambda:0.7}")
+    private float mmrLambda;
+
+    @Value("${rag.rerank.budget-ms:300}")
+    private long budgetMs;
+
+    // 剩余预算低于该值时不再调用 cross-encoder
+    @Value("${rag.rerank.cross-encoder.min-budget-ms:50}")
+    private long crossEncoderMinBudgetMs;
+
+    public RerankPipeline(CrossEncoderClient crossEncoderClient, MetricsRegistry metricsRegistry) {
+        this.crossEncoderClient = crossEncoderClient;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param query          查询文本
+     * @param queryEmbedding 查询向量
+     * @param candidates     向量检索的候选，需带 embedding，按距离升序
+     * @param contentLoader  为缺少内容的候选补齐内容，仅在需要调用 cross-encoder 时使用
+     * @param topK           最终返回数量
+     * @return 重排后的前 topK 个候选
+     */
+    public List<VectorHit> rerank(String query, float[] queryEmbedding, List<VectorHit> candidates,
+                                  UnaryOperator<List<VectorHit>> contentLoader, int topK) {
+        if (!enabled || candidates.size() <= 1) {
+            return candidates.subList(0, Math.min(topK, candidates.size()));
+        }
+        long start = System.currentTimeMillis();
+
+        int n = candidates.size();
+        float[] queryUnit = VectorMath.normalize(queryEmbedding);
+        float[][] unitVectors = new float[n][];
+        float[] relevance = new float[n];
+        for (int i = 0; i < n; i++) {
+            unitVectors[i] = VectorMath.normalize(candidates.get(i).embedding());
+            relevance[i] = VectorMath.dot(queryUnit, unitVectors[i]);
+        }
+
+        float[] crossScores = crossEncode(query, candidates, contentLoader, start);
+        if (crossScores != null) {
+            relevance = crossScores;
+        }
+        normalizeInPlace(relevance);
+
+        long mmrStart = System.currentTimeMillis();
+        List<Integer> selected = MmrReranker.select(unitVectors, relevance, topK, mmrLambda);
+        long end = System.currentTimeMillis();
+        metricsRegistry.recordLatency("rag.rerank.mmr", end - mmrStart);
+        metricsRegistry.recordLatency("rag.rerank.total", end - start);
+        if (end - start > budgetMs) {
+            metricsRegistry.increment("rag.rerank.budget.exceeded");
+        }
+        return selected.stream().map(candidates::get).toList();
+    }
+
+    private float[] crossEncode(String query, List<VectorHit> candidates,
+                                UnaryOperator<List<VectorHit>> contentLoader, long start) {
+        if (!crossEncoderClient.isEnabled()) {
+            return null;
+        }
+        long remaining = budgetMs - (System.currentTimeMillis() - start);
+        if (remaining < crossEncoderMinBudgetMs) {
+            metricsRegistry.increment("rag.rerank.cross_encoder.skipped");
+            return null;
+        }
+        long callStart = System.currentTimeMillis();
+        try {
+            List<VectorHit> withContents = contentLoader.apply(candidates);
+            float[] scores = crossEncoderClient.score(
+                    query,
+                    withContents.stream().map(hit -> hit.content() != null ? hit.content() : "").toList(),
+                    Duration.ofMillis(remaining)
+            );
+            metricsRegistry.recordLatency("rag.rerank.cross_encoder", System.currentTimeMillis() - callStart);
+            return scores;
+        } catch (Exception e) {
+            // 超时或服务不可用时回退到向量相似度，不影响检索结果的返回
+            metricsRegistry.increment("rag.rerank.cross_encoder.fallback");
+            log.warn("cross-encoder 重排失败，回退到向量相似度: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // 归一化到 [0, 1]，使不同来源的分数与余弦冗余度在同一量纲上比较
+    private static void normalizeInPlace(float[] scores) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float s : scores) {
+            min = Math.min(min, s);
+            max = Math.max(max, s);
+        }
+        float range = max - min;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = range == 0f ? 1f : (scores[i] - min) / range;
+        }
+    }
+}
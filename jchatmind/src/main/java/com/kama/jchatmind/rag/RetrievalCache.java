@@ -0,0 +1,151 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 知识库检索结果缓存
+ * 每个知识库维护一个按访问顺序淘汰的近期查询列表，缓存的是命中的 chunk ID：
+ * 1. 查询文本归一化后完全相同，直接命中，连 embedding 都不需要
+ * 2. 否则在 embedding 之后与近期查询向量比较余弦相似度，超过阈值视为同一查询
+ * 缓存项记录写入时的知识库版本号，知识库有写入或删除后自动失效
+ */
+@Component
+public class RetrievalCache {
+
+    private final ConcurrentMap<String, KbCache> caches = new ConcurrentHashMap<>();
+    private final KnowledgeBaseVersions knowledgeBaseVersions;
+    private final MetricsRegistry metricsRegistry;
+
+    @Value("${rag.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rag.cache.max-entries-per-kb:256}")
+    private int maxEntriesPerKb;
+
+    @Value("${rag.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${rag.cache.similarity-threshold:0.97}")
+    private float similarityThreshold;
+
+    public RetrievalCache(KnowledgeBaseVersions knowledgeBaseVersions, MetricsRegistry metricsRegistry) {
+        this.knowledgeBaseVersions = knowledgeBaseVersions;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * 按查询文本精确匹配
+     *
+     * @return 命中的 chunk ID 列表，未命中返回 null
+     */
+    public List<String> getExact(String kbId, String query) {
+        if (!enabled) {
+            return null;
+        }
+        KbCache cache = caches.get(kbId);
+        if (cache == null) {
+            return null;
+        }
+        long version = knowledgeBaseVersions.current(kbId);
+        synchronized (cache) {
+            Entry entry = cache.entries.get(normalize(query));
+            if (entry != null && isValid(entry, version)) {
+                metricsRegistry.increment("rag.cache.hit.exact");
+                return entry.chunkIds;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按查询向量近似匹配，需要在 getExact 未命中且完成 embedding 之后调用
+     *
+     * @return 命中的 chunk ID 列表，未命中返回 null
+     */
+    public List<String> getSimilar(String kbId, float[] queryEmbedding) {
+        if (!enabled) {
+            return null;
+        }
+        KbCache cache = caches.get(kbId);
+        if (cache == null) {
+            metricsRegistry.increment("rag.cache.miss");
+            return null;
+        }
+        long version = knowledgeBaseVersions.current(kbId);
+        float[] unit = VectorMath.normalize(queryEmbedding);
+        synchronized (cache) {
+            Entry best = null;
+            float bestScore = similarityThreshold;
+            Iterator<Entry> iterator = cache.entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (!isValid(entry, version)) {
+                    iterator.remove();
+                    metricsRegistry.increment("rag.cache.evicted.stale");
+                    continue;
+                }
+                float score = VectorMath.dot(unit, entry.unitEmbedding);
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                metricsRegistry.increment("rag.cache.hit.similar");
+                return best.chunkIds;
+            }
+        }
+        metricsRegistry.increment("rag.cache.miss");
+        return null;
+    }
+
+    /**
+     * 写入缓存，version 为执行检索前读取的知识库版本号，
+     * 避免检索过程中知识库发生变化时把旧结果记在新版本下
+     */
+    public void put(String kbId, long version, String query, float[] queryEmbedding, List<String> chunkIds) {
+        if (!enabled) {
+            return;
+        }
+        KbCache cache = caches.computeIfAbsent(kbId, k -> new KbCache(maxEntriesPerKb));
+        Entry entry = new Entry(version, VectorMath.normalize(queryEmbedding), List.copyOf(chunkIds),
+                System.currentTimeMillis());
+        synchronized (cache) {
+            cache.entries.put(normalize(query), entry);
+        }
+    }
+
+    private boolean isValid(Entry entry, long currentVersion) {
+        return entry.version == currentVersion
+                && System.currentTimeMillis() - entry.createdAtMillis <= ttlSeconds * 1000;
+    }
+
+    private static String normalize(String query) {
+        return query == null ? "" : query.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    private record Entry(long version, float[] unitEmbedding, List<String> chunkIds, long createdAtMillis) {
+    }
+
+    private static class KbCache {
+        private final Map<String, Entry> entries;
+
+        KbCache(int maxEntries) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.kama.jchatmind.rag;
+
+/**
+ * 向量计算工具
+ * 点积按 4 路展开、用 4 个独立累加器，打断单一累加器的加法依赖链，让 CPU 流水线并行执行多条乘加（指令级并行）；
+ * 浮点累加要求严格顺序，JDK 17 的 C2 不会把这类归约自动向量化为 SIMD 指令
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    public static float dot(float[] a, float[] b) {
+        int n = Math.min(a.length, b.length);
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float norm(float[] a) {
+        return (float) Math.sqrt(dot(a, a));
+    }
+
+    /**
+     * 余弦相似度，任一向量为零向量时返回 0
+     */
+    public static float cosine(float[] a, float[] b) {
+        float na = norm(a);
+        float nb = norm(b);
+        if (na == 0f || nb == 0f) {
+            return 0f;
+        }
+        return dot(a, b) / (na * nb);
+    }
+
+    /**
+     * 返回单位化后的新向量，零向量原样复制
+     */
+    public static float[] normalize(float[] a) {
+        float n = norm(a);
+        float[] result = new float[a.length];
+        if (n == 0f) {
+            System.arraycopy(a, 0, result, 0, a.length);
+            return result;
+        }
+        float inv = 1f / n;
+        for (int i = 0; i < a.length; i++) {
+            result[i] = a[i] * inv;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,208 @@
+package com.kama.jchatmind.rag.embedding;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * embedding 请求合并器，位于 RagService 与具体的 EmbeddingProvider 之间
+ * 并发的单条 embed 调用先进入队列，由合并线程在 max-wait-ms 窗口内攒够最多 max-batch-size 条后
+ * 作为一个批次发给后端，再把结果逐条交还给各自的调用方
+ * 同时在途的批次数受 max-concurrent-batches 限制：后端繁忙时请求在队列中积累，下一批自然更大
+ */
+@Slf4j
+@Component
+public class EmbeddingCoalescer {
+
+    private final EmbeddingProvider provider;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadPoolTaskExecutor embeddingBatchExecutor;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitMs;
+    private final long timeoutMs;
+    private final Semaphore inflightBatches;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+
+    // 最近一个统计窗口（约 1 秒）内的吞吐量，texts/s
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+    private final LongAdder windowTexts = new LongAdder();
+    private volatile double throughput;
+
+    public EmbeddingCoalescer(List<EmbeddingProvider> providers,
+                              MetricsRegistry metricsRegistry,
+                              @Qualifier("embeddingBatchExecutor") ThreadPoolTaskExecutor embeddingBatchExecutor,
+                              @Value("${rag.embedding.provider:ollama}") String providerName,
+                              @Value("${rag.embedding.batching.enabled:true}") boolean enabled,
+                              @Value("${rag.embedding.batching.max-batch-size:32}") int maxBatchSize,
+                              @Value("${rag.embedding.batching.max-wait-ms:2}") long maxWaitMs,
+                              @Value("${rag.embedding.batching.max-concurrent-batches:4}") int maxConcurrentBatches,
+                              @Value("${rag.embedding.batching.timeout-ms:30000}") long timeoutMs) {
+        this.provider = providers.stream()
+                .filter(p -> p.name().equals(providerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("未找到 embedding 后端: " + providerName
+                        + "，请检查 rag.embedding.provider 以及该后端的依赖是否在 classpath 中（onnx 需要 onnxruntime 与 tokenizers）"));
+        this.metricsRegistry = metricsRegistry;
+        this.embeddingBatchExecutor = embeddingBatchExecutor;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitMs = maxWaitMs;
+        this.timeoutMs = timeoutMs;
+        this.inflightBatches = new Semaphore(maxConcurrentBatches);
+
+        metricsRegistry.gauge("embedding.batch.queue_depth", queue::size);
+        metricsRegistry.gauge("embedding.batch.throughput_per_sec", this::throughput);
+
+        this.dispatcher = new Thread(this::dispatch, "embedding-coalescer");
+        this.dispatcher.setDaemon(true);
+        if (enabled) {
+            this.dispatcher.start();
+        }
+    }
+
+    public float[] embed(String text) {
+        return embed(List.of(text)).get(0);
+    }
+
+    /**
+     * 返回的向量与 texts 一一对应；未启用合并或本身已是一整批时直接调用后端
+     */
+    public List<float[]> embed(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        if (!enabled || texts.size() >= maxBatchSize) {
+            return provider.embed(texts);
+        }
+
+        List<Pending> pendings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            Pending pending = new Pending(text, System.nanoTime(), new CompletableFuture<>());
+            pendings.add(pending);
+            queue.add(pending);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        try {
+            for (Pending pending : pendings) {
+                embeddings.add(pending.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return embeddings;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pendings.forEach(pending -> pending.future.cancel(false));
+            throw new BizException("embedding 调用被中断");
+        } catch (TimeoutException e) {
+            // 尚未发出的请求在组批时会被跳过
+            pendings.forEach(pending -> pending.future.cancel(false));
+            throw new BizException("embedding 排队超时");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BizException bizException) {
+                throw bizException;
+            }
+            throw new BizException("embedding 调用失败: " + e.getCause().getMessage());
+        }
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<Pending> batch = new ArrayList<>(maxBatchSize);
+            try {
+                // 先拿到在途批次名额再开始组批，名额用尽时请求继续在队列中积累
+                inflightBatches.acquire();
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                batch.forEach(pending -> pending.future.completeExceptionally(new IllegalStateException("embedding 服务已关闭")));
+                return;
+            }
+            batch.removeIf(pending -> pending.future.isDone());
+            if (batch.isEmpty()) {
+                inflightBatches.release();
+                continue;
+            }
+            try {
+                embeddingBatchExecutor.execute(() -> runBatch(batch));
+            } catch (TaskRejectedException e) {
+                inflightBatches.release();
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+        }
+    }
+
+    private void runBatch(List<Pending> batch) {
+        try {
+            long now = System.nanoTime();
+            for (Pending pending : batch) {
+                metricsRegistry.recordLatency("embedding.batch.queue_wait", TimeUnit.NANOSECONDS.toMillis(now - pending.enqueuedAt));
+            }
+            metricsRegistry.histogram("embedding.batch.size").record(batch.size());
+            metricsRegistry.increment("embedding.batch.count");
+
+            List<float[]> embeddings = provider.embed(batch.stream().map(Pending::text).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(embeddings.get(i));
+            }
+            recordThroughput(batch.size());
+        } catch (Exception e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+        } finally {
+            inflightBatches.release();
+        }
+    }
+
+    private void recordThroughput(int texts) {
+        windowTexts.add(texts);
+        rollWindow();
+    }
+
+    private double throughput() {
+        rollWindow();
+        return throughput;
+    }
+
+    private void rollWindow() {
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= 1000 && windowStart.compareAndSet(start, now)) {
+            throughput = windowTexts.sumThenReset() * 1000.0 / (now - start);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.interrupt();
+        queue.forEach(pending -> pending.future.completeExceptionally(new IllegalStateException("embedding 服务已关闭")));
+    }
+
+    private record Pending(String text, long enqueuedAt, CompletableFuture<float[]> future) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.kama.jchatmind.rag.embedding;
+
+import java.util.List;
+
+/**
+ * 文本向量化后端，由 rag.embedding.provider 选择
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 后端名称，对应 rag.embedding.provider 的取值
+     */
+    String name();
+
+    /**
+     * 批量向量化，返回的向量与 texts 一一对应，均为 L2 单位化向量
+     * 各后端的向量尺度一致，切换后端或接口时库中已有的向量仍可比较
+     */
+    List<float[]> embed(List<String> texts);
+
+    default float[] embed(String text) {
+        return embed(List.of(text)).get(0);
+    }
+}
@@ -0,0 +1,166 @@
+package com.kama.jchatmind.rag.embedding;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.rag.VectorMath;
+import com.kama.jchatmind.resilience.CircuitBreaker;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.JdkClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于 Ollama /api/embed 接口的向量化后端
+ * /api/embed 本身返回单位化向量，这里仍统一做一次 L2 单位化，不依赖具体 Ollama 版本和模型的行为
+ * - 支持多个副本，按轮询选择主副本，已熔断的副本排到最后
+ * - 每次调用有整体截止时间，超时直接失败，不会无限阻塞调用线程
+ * - 主副本在 hedge-delay 内未返回时向下一个副本发出对冲请求，取先返回的结果
+ * - 每个副本独立熔断，连续失败达到阈值后暂停向其发送请求
+ * 底层使用 JDK HttpClient：连接池复用长连接，服务端支持时使用 HTTP/2（明文为 h2c 升级，不支持时回退到 HTTP/1.1）
+ */
+@Slf4j
+@Component
+public class OllamaEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String NAME = "ollama";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final MetricsRegistry metricsRegistry;
+    private final String model;
+    private final Duration timeout;
+    private final Duration hedgeDelay;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public OllamaEmbeddingProvider(WebClient.Builder builder,
+                                   MetricsRegistry metricsRegistry,
+                                   @Value("${rag.embedding.ollama.base-urls:http://localhost:11434}") List<String> baseUrls,
+                                   @Value("${rag.embedding.ollama.model:bge-m3}") String model,
+                                   @Value("${rag.embedding.ollama.connect-timeout-ms:1000}") long connectTimeoutMs,
+                                   @Value("${rag.embedding.ollama.timeout-ms:10000}") long timeoutMs,
+                                   @Value("${rag.embedding.ollama.hedge-delay-ms:500}") long hedgeDelayMs,
+                                   @Value("${rag.embedding.ollama.circuit.failure-threshold:5}") int failureThreshold,
+                                   @Value("${rag.embedding.ollama.circuit.open-ms:10000}") long openMs) {
+        this.metricsRegistry = metricsRegistry;
+        this.model = model;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.hedgeDelay = Duration.ofMillis(hedgeDelayMs);
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        for (int i = 0; i < baseUrls.size(); i++) {
+            WebClient webClient = builder.clone()
+                    .baseUrl(baseUrls.get(i))
+                    .clientConnector(new JdkClientHttpConnector(httpClient))
+                    .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                    .build();
+            replicas.add(new Replica(i, webClient,
+                    new CircuitBreaker("embedding-" + baseUrls.get(i), failureThreshold, openMs)));
+        }
+    }
+
+    @Data
+    private static class EmbedResponse {
+        private List<float[]> embeddings;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        List<Replica> ordered = orderedReplicas();
+        long start = System.currentTimeMillis();
+
+        Mono<List<float[]>> result = call(ordered.get(0), texts);
+        if (ordered.size() > 1 && !hedgeDelay.isZero()) {
+            Replica backup = ordered.get(1);
+            Mono<List<float[]>> hedged = Mono.delay(hedgeDelay)
+                    .then(Mono.defer(() -> {
+                        metricsRegistry.increment("embedding.hedged");
+                        return call(backup, texts);
+                    }));
+            // 先成功的一方胜出，另一方被取消
+            result = Mono.firstWithValue(result, hedged);
+        }
+
+        try {
+            List<float[]> embeddings = result.block(timeout);
+            if (embeddings == null || embeddings.size() != texts.size()) {
+                throw new IllegalStateException("embedding 返回数量与输入不一致");
+            }
+            metricsRegistry.recordLatency("embedding.latency", System.currentTimeMillis() - start);
+            metricsRegistry.increment("embedding.texts", texts.size());
+            return embeddings;
+        } catch (Exception e) {
+            metricsRegistry.increment("embedding.error");
+            log.warn("embedding 调用失败: texts={}, error={}", texts.size(), e.getMessage());
+            throw new BizException("embedding 调用失败: " + e.getMessage());
+        }
+    }
+
+    private Mono<List<float[]>> call(Replica replica, List<String> texts) {
+        return Mono.defer(() -> {
+            if (!replica.circuitBreaker.tryAcquire()) {
+                metricsRegistry.increment("embedding.circuit.rejected");
+                return Mono.error(new IllegalStateException(replica.circuitBreaker.getName() + " 熔断中"));
+            }
+            long start = System.currentTimeMillis();
+            return replica.webClient.post()
+                    .uri("/api/embed")
+                    .bodyValue(Map.of(
+                            "model", model,
+                            "input", texts
+                    ))
+                    .retrieve()
+                    .bodyToMono(EmbedResponse.class)
+                    .timeout(timeout)
+                    .map(response -> response.getEmbeddings().stream().map(VectorMath::normalize).toList())
+                    .doOnSuccess(r -> {
+                        replica.circuitBreaker.onSuccess();
+                        metricsRegistry.recordLatency("embedding.replica." + replica.index + ".latency",
+                                System.currentTimeMillis() - start);
+                    })
+                    .doOnError(e -> replica.circuitBreaker.onFailure())
+                    .doOnCancel(replica.circuitBreaker::onCancel);
+        });
+    }
+
+    /**
+     * 从轮询位置开始排列副本，熔断中的副本排在最后（全部熔断时仍会尝试，以便试探恢复）
+     */
+    private List<Replica> orderedReplicas() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        List<Replica> healthy = new ArrayList<>();
+        List<Replica> open = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                open.add(replica);
+            } else {
+                healthy.add(replica);
+            }
+        }
+        healthy.addAll(open);
+        return healthy;
+    }
+
+    private record Replica(int index, WebClient webClient, CircuitBreaker circuitBreaker) {
+    }
+}
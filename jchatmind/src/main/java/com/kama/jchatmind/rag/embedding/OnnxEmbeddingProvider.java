@@ -0,0 +1,174 @@
+package com.kama.jchatmind.rag.embedding;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.rag.VectorMath;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内 ONNX Runtime 向量化后端，加载 bge-m3 / bge-small 等模型的 ONNX 导出，向量化不经过网络
+ * - 分词使用 HuggingFace tokenizers（tokenizer.json），与模型导出时的分词器一致
+ * - 并发请求由 EmbeddingCoalescer 动态合批后传入，单次推理最多 max-batch-size 条
+ * - 单次推理内部的并行度由 intra-op-threads 控制，推理互斥执行，避免多个批次互相抢占 CPU
+ * 仅在 rag.embedding.provider=onnx 且 classpath 中有 onnxruntime 与 tokenizers（pom 中的可选依赖）时创建，
+ * 模型文件需事先下载到 model-path
+ */
+@Slf4j
+@Component
+@ConditionalOnClass(name = {"ai.onnxruntime.OrtEnvironment", "ai.djl.huggingface.tokenizers.HuggingFaceTokenizer"})
+@ConditionalOnProperty(name = "rag.embedding.provider", havingValue = OnnxEmbeddingProvider.NAME)
+public class OnnxEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String NAME = "onnx";
+
+    private final MetricsRegistry metricsRegistry;
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final HuggingFaceTokenizer tokenizer;
+    private final boolean meanPooling;
+    private final int maxBatchSize;
+    private final ReentrantLock inferenceLock = new ReentrantLock();
+
+    public OnnxEmbeddingProvider(MetricsRegistry metricsRegistry,
+                                 @Value("${rag.embedding.onnx.model-path:./models/bge-m3/model.onnx}") String modelPath,
+                                 @Value("${rag.embedding.onnx.tokenizer-path:./models/bge-m3/tokenizer.json}") String tokenizerPath,
+                                 @Value("${rag.embedding.onnx.max-length:512}") int maxLength,
+                                 @Value("${rag.embedding.onnx.pooling:cls}") String pooling,
+                                 @Value("${rag.embedding.onnx.intra-op-threads:4}") int intraOpThreads,
+                                 @Value("${rag.embedding.onnx.max-batch-size:32}") int maxBatchSize) throws OrtException, IOException {
+        this.metricsRegistry = metricsRegistry;
+        this.meanPooling = "mean".equalsIgnoreCase(pooling);
+        this.maxBatchSize = maxBatchSize;
+
+        this.environment = OrtEnvironment.getEnvironment();
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setIntraOpNumThreads(intraOpThreads);
+            options.setInterOpNumThreads(1);
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            this.session = environment.createSession(modelPath, options);
+        }
+        this.tokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(Path.of(tokenizerPath))
+                .optMaxLength(maxLength)
+                .optTruncation(true)
+                .optPadding(true)
+                .build();
+        log.info("ONNX embedding 模型加载完成: model={}, intraOpThreads={}, maxBatchSize={}",
+                modelPath, intraOpThreads, maxBatchSize);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    /**
+     * 合批由 EmbeddingCoalescer 完成，这里按 max-batch-size 切分后逐批推理；
+     * 推理互斥执行，CPU 并行度交给 ONNX Runtime 的 intra-op 线程池
+     */
+    @Override
+    public List<float[]> embed(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        try {
+            for (int from = 0; from < texts.size(); from += maxBatchSize) {
+                List<String> batch = texts.subList(from, Math.min(texts.size(), from + maxBatchSize));
+                long start = System.currentTimeMillis();
+                inferenceLock.lock();
+                try {
+                    embeddings.addAll(infer(batch));
+                } finally {
+                    inferenceLock.unlock();
+                }
+                metricsRegistry.recordLatency("embedding.latency", System.currentTimeMillis() - start);
+            }
+            metricsRegistry.increment("embedding.texts", texts.size());
+            return embeddings;
+        } catch (OrtException e) {
+            metricsRegistry.increment("embedding.error");
+            log.error("ONNX 推理失败: texts={}", texts.size(), e);
+            throw new BizException("embedding 调用失败: " + e.getMessage());
+        }
+    }
+
+    private List<float[]> infer(List<String> texts) throws OrtException {
+        Encoding[] encodings = tokenizer.batchEncode(texts);
+        int batchSize = encodings.length;
+        int sequenceLength = encodings[0].getIds().length;
+        long[][] inputIds = new long[batchSize][];
+        long[][] attentionMask = new long[batchSize][];
+        long[][] typeIds = new long[batchSize][];
+        for (int i = 0; i < batchSize; i++) {
+            inputIds[i] = encodings[i].getIds();
+            attentionMask[i] = encodings[i].getAttentionMask();
+            typeIds[i] = encodings[i].getTypeIds();
+        }
+
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, inputIds));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, attentionMask));
+            // bge-m3（XLM-RoBERTa）的导出没有 token_type_ids 输入
+            if (session.getInputNames().contains("token_type_ids")) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, typeIds));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                // 第一个输出为 last_hidden_state: [batch, sequence, hidden]
+                float[][][] hidden = (float[][][]) result.get(0).getValue();
+                List<float[]> embeddings = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    float[] pooled = meanPooling ? meanPool(hidden[i], attentionMask[i], sequenceLength) : hidden[i][0];
+                    embeddings.add(VectorMath.normalize(pooled));
+                }
+                return embeddings;
+            }
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    private float[] meanPool(float[][] tokens, long[] mask, int sequenceLength) {
+        float[] pooled = new float[tokens[0].length];
+        int count = 0;
+        for (int t = 0; t < sequenceLength; t++) {
+            if (mask[t] == 0) {
+                continue;
+            }
+            count++;
+            for (int d = 0; d < pooled.length; d++) {
+                pooled[d] += tokens[t][d];
+            }
+        }
+        for (int d = 0; d < pooled.length; d++) {
+            pooled[d] /= Math.max(1, count);
+        }
+        return pooled;
+    }
+
+    @PreDestroy
+    public void close() throws OrtException {
+        session.close();
+        tokenizer.close();
+    }
+}
@@ -0,0 +1,270 @@
+package com.kama.jchatmind.rag.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ * 向量单位化后存放在 VectorStorage 中，距离为 1 - 余弦相似度；
+ * 对单位向量而言该距离与 pgvector 的 L2 距离排序一致
+ * 删除采用墓碑标记，检索时跳过，墓碑比例过高时由调用方重建
+ * 本类不是线程安全的，并发控制由调用方负责（读写锁：检索并发、写入互斥）
+ */
+public class HnswIndex {
+
+    private final VectorStorage storage;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    // links.get(node)[level] 为该节点在该层的邻居列表
+    private final List<int[][]> links = new ArrayList<>();
+    private final List<int[]> linkCounts = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(VectorStorage storage, int m, int efConstruction) {
+        this.storage = storage;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    public int size() {
+        return storage.size();
+    }
+
+    public int liveSize() {
+        return storage.size() - deletedCount;
+    }
+
+    public double deletedRatio() {
+        return storage.size() == 0 ? 0 : (double) deletedCount / storage.size();
+    }
+
+    public float[] vector(int node) {
+        return storage.get(node);
+    }
+
+    public void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * 插入一个单位向量，返回节点编号
+     */
+    public int insert(float[] unitVector) {
+        int node = storage.append(unitVector);
+        int level = randomLevel();
+        int[][] nodeLinks = new int[level + 1][];
+        int[] counts = new int[level + 1];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[maxLinks(l)];
+        }
+        links.add(nodeLinks);
+        linkCounts.add(counts);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(unitVector, current, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> nearest = searchLayer(unitVector, current, efConstruction, l);
+            List<Candidate> neighbors = selectNeighbors(nearest, m);
+            for (Candidate neighbor : neighbors) {
+                addLink(node, neighbor.node, l);
+                addLink(neighbor.node, node, l);
+            }
+            current = neighbors.get(0).node;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 检索最近的 k 个未删除节点
+     *
+     * @param ef 检索宽度，越大召回越高、越慢，实际取 max(ef, k)
+     */
+    public List<Candidate> search(float[] unitQuery, int k, int ef) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(unitQuery, current, l);
+        }
+        // 墓碑节点仍参与图的遍历，但会占用结果名额，按墓碑比例放大检索宽度
+        int width = (int) Math.ceil(Math.max(ef, k) / Math.max(0.1, 1 - deletedRatio()));
+        PriorityQueue<Candidate> nearest = searchLayer(unitQuery, current, width, 0);
+        List<Candidate> sorted = new ArrayList<>(nearest);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        List<Candidate> result = new ArrayList<>(k);
+        for (Candidate candidate : sorted) {
+            if (!deleted.get(candidate.node)) {
+                result.add(candidate);
+                if (result.size() == k) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links.get(current)[level];
+            int count = linkCounts.get(current)[level];
+            for (int i = 0; i < count; i++) {
+                float d = distance(query, neighbors[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层上做宽度为 ef 的最佳优先搜索，返回按距离降序的大顶堆（堆顶为当前最远的结果）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        BitSet visited = new BitSet(storage.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+
+        Candidate first = new Candidate(start, distance(query, start));
+        visited.set(start);
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (closest.distance > results.peek().distance && results.size() >= ef) {
+                break;
+            }
+            int[][] nodeLinks = links.get(closest.node);
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            int count = linkCounts.get(closest.node)[level];
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 启发式邻居选择：候选只有在离新节点比离所有已选邻居都近时才入选，
+     * 使邻居分布在不同方向上，提升图的连通性
+     */
+    private List<Candidate> selectNeighbors(PriorityQueue<Candidate> nearest, int limit) {
+        List<Candidate> sorted = new ArrayList<>(nearest);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : sorted) {
+            if (selected.size() >= limit) {
+                break;
+            }
+            boolean diverse = true;
+            float[] vector = storage.get(candidate.node);
+            for (Candidate chosen : selected) {
+                if (1 - storage.dot(chosen.node, vector) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.add(candidate);
+            }
+        }
+        // 不足 limit 时用被跳过的最近候选补齐
+        for (int i = 0; i < skipped.size() && selected.size() < limit; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    private void addLink(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int[] counts = linkCounts.get(from);
+        if (counts[level] < neighbors.length) {
+            neighbors[counts[level]++] = to;
+            return;
+        }
+        // 邻居已满：若新节点比最远的邻居更近则替换之
+        float[] vector = storage.get(from);
+        int farthest = -1;
+        float farthestDistance = 1 - storage.dot(to, vector);
+        for (int i = 0; i < neighbors.length; i++) {
+            float d = 1 - storage.dot(neighbors[i], vector);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthest = i;
+            }
+        }
+        if (farthest >= 0) {
+            neighbors[farthest] = to;
+        }
+    }
+
+    private float distance(float[] query, int node) {
+        return 1 - storage.dot(node, query);
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) Math.floor(-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+    }
+
+    public record Candidate(int node, float distance) {
+    }
+}
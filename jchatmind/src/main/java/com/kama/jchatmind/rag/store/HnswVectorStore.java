@@ -0,0 +1,379 @@
+package com.kama.jchatmind.rag.store;
+
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.rag.VectorMath;
+import com.kama.jchatmind.service.ChunkPartitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * 进程内 HNSW 检索后端，适合中小规模知识库：检索不经过网络，也不需要解析文本格式的向量
+ * 每个知识库一个独立索引，启动时（或切换到该后端时）从 chunk_bge_m3 分页加载，
+ * 之后由入库和清理流程的写入钩子保持同步；加载完成前 isReady 返回 false，由路由回退到 pgvector
+ * 重新加载（重建）时新索引在后台完整构建，期间旧索引继续服务，构建完成后再替换并删除旧索引；
+ * 每次加载是一个新的代，段文件以 kbId-代号 为前缀，新旧两代的文件互不覆盖
+ */
+@Slf4j
+@Component
+public class HnswVectorStore implements VectorStore {
+
+    public static final String NAME = "memory";
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final ChunkPartitionService chunkPartitionService;
+    private final ConcurrentMap<String, KbIndex> indexes = new ConcurrentHashMap<>();
+    // 正在构建、尚未替换上线的索引，写入钩子同时作用于它，保证替换时不丢失加载期间的变更
+    private final ConcurrentMap<String, KbIndex> loadingIndexes = new ConcurrentHashMap<>();
+    private final AtomicLong generations = new AtomicLong();
+
+    @Value("${rag.vector-store.memory.data-dir:./data/vector-index}")
+    private String dataDir;
+
+    @Value("${rag.vector-store.memory.vectors-per-segment:16384}")
+    private int vectorsPerSegment;
+
+    @Value("${rag.vector-store.memory.m:16}")
+    private int m;
+
+    @Value("${rag.vector-store.memory.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${rag.vector-store.memory.ef-search:64}")
+    private int efSearch;
+
+    // none：索引直接使用全精度向量；int8：图遍历使用 int8 量化向量，候选再用全精度向量重新打分
+    @Value("${rag.vector-store.memory.quantization:none}")
+    private String quantization;
+
+    // 量化检索时召回 limit * rescoreFactor 个候选参与重新打分
+    @Value("${rag.vector-store.memory.rescore-factor:4}")
+    private int rescoreFactor;
+
+    // 墓碑比例超过该值时重建索引
+    @Value("${rag.vector-store.memory.rebuild-deleted-ratio:0.3}")
+    private double rebuildDeletedRatio;
+
+    public HnswVectorStore(ChunkBgeM3Mapper chunkBgeM3Mapper, ChunkPartitionService chunkPartitionService) {
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.chunkPartitionService = chunkPartitionService;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    public boolean isReady(String kbId) {
+        KbIndex index = indexes.get(kbId);
+        return index != null && index.ready;
+    }
+
+    /**
+     * 从 chunk_bge_m3 加载知识库的全部向量，在后台线程中调用
+     */
+    public void load(String kbId) {
+        long start = System.currentTimeMillis();
+        KbIndex index = new KbIndex(kbId, generations.incrementAndGet());
+        KbIndex superseded;
+        synchronized (loadingIndexes) {
+            superseded = loadingIndexes.put(kbId, index);
+        }
+        if (superseded != null) {
+            superseded.close();
+        }
+
+        try {
+            String table = chunkPartitionService.tableFor(kbId);
+            String afterId = null;
+            while (true) {
+                List<ChunkBgeM3> page = chunkBgeM3Mapper.selectEmbeddingPage(table, kbId, afterId, LOAD_PAGE_SIZE);
+                for (ChunkBgeM3 chunk : page) {
+                    index.add(chunk.getDocId(), chunk.getId(), chunk.getEmbedding(), true);
+                }
+                if (page.size() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            index.finishLoading();
+        } catch (RuntimeException e) {
+            loadingIndexes.remove(kbId, index);
+            index.close();
+            throw e;
+        }
+
+        KbIndex previous;
+        synchronized (loadingIndexes) {
+            // 加载期间知识库被删除，或者又开始了更新的一次加载，本次结果作废
+            if (loadingIndexes.get(kbId) != index) {
+                index.close();
+                return;
+            }
+            // 先上线再移出加载表，写入钩子任何时刻都至少能看到新索引
+            previous = indexes.put(kbId, index);
+            loadingIndexes.remove(kbId, index);
+        }
+        if (previous != null) {
+            previous.close();
+        }
+        log.info("知识库向量索引加载完成: kbId={}, chunks={}, 耗时 {} ms",
+                kbId, index.liveSize(), System.currentTimeMillis() - start);
+    }
+
+    public boolean needsRebuild(String kbId) {
+        KbIndex index = indexes.get(kbId);
+        return index != null && index.ready && index.deletedRatio() > rebuildDeletedRatio;
+    }
+
+    @Override
+    public List<VectorHit> search(String kbId, float[] query, int limit) {
+        KbIndex index = indexes.get(kbId);
+        if (index == null) {
+            return List.of();
+        }
+        return index.search(query, limit);
+    }
+
+    @Override
+    public void add(String kbId, String docId, String chunkId, float[] embedding) {
+        forEachIndex(kbId, index -> index.add(docId, chunkId, embedding, false));
+    }
+
+    @Override
+    public void remove(String kbId, Collection<String> chunkIds) {
+        forEachIndex(kbId, index -> index.remove(chunkIds));
+    }
+
+    @Override
+    public void removeDocument(String kbId, String docId) {
+        forEachIndex(kbId, index -> index.removeDocument(docId));
+    }
+
+    @Override
+    public void drop(String kbId) {
+        KbIndex loadingIndex;
+        KbIndex index;
+        synchronized (loadingIndexes) {
+            loadingIndex = loadingIndexes.remove(kbId);
+            index = indexes.remove(kbId);
+        }
+        if (loadingIndex != null) {
+            loadingIndex.close();
+        }
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    // 写入同时作用于正在构建的新索引和在线索引；先读加载表，与 load 中先上线后移出的顺序配合，替换过程中不会漏掉新索引
+    private void forEachIndex(String kbId, Consumer<KbIndex> action) {
+        KbIndex loadingIndex = loadingIndexes.get(kbId);
+        KbIndex index = indexes.get(kbId);
+        if (loadingIndex != null) {
+            action.accept(loadingIndex);
+        }
+        if (index != null && index != loadingIndex) {
+            action.accept(index);
+        }
+    }
+
+    private boolean quantized() {
+        return "int8".equalsIgnoreCase(quantization);
+    }
+
+    @PreDestroy
+    public void close() {
+        loadingIndexes.values().forEach(KbIndex::close);
+        loadingIndexes.clear();
+        indexes.values().forEach(KbIndex::close);
+        indexes.clear();
+    }
+
+    private class KbIndex {
+        private final String kbId;
+        // 段文件前缀，每一代不同，关闭旧一代时只删除旧一代的文件
+        private final String filePrefix;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> nodeByChunkId = new HashMap<>();
+        private final List<String> chunkIdByNode = new ArrayList<>();
+        private final List<String> docIdByNode = new ArrayList<>();
+        // 加载期间被删除的 chunk，防止分页读到删除前的旧数据后又加回索引
+        private final Set<String> removedDuringLoad = new HashSet<>();
+        // 全精度向量，用于返回结果和量化检索的重新打分
+        private MappedVectorStorage fullStorage;
+        // 图遍历使用的向量，未启用量化时与 fullStorage 是同一个对象
+        private VectorStorage indexStorage;
+        private HnswIndex index;
+        private volatile boolean ready;
+        private boolean closed;
+
+        KbIndex(String kbId, long generation) {
+            this.kbId = kbId;
+            this.filePrefix = kbId + "-" + generation;
+        }
+
+        void add(String docId, String chunkId, float[] embedding, boolean fromLoad) {
+            if (embedding == null) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                if (closed || nodeByChunkId.containsKey(chunkId) || (fromLoad && removedDuringLoad.contains(chunkId))) {
+                    return;
+                }
+                if (index == null) {
+                    // 维度由第一个向量决定
+                    fullStorage = new MappedVectorStorage(Path.of(dataDir), filePrefix, embedding.length, vectorsPerSegment);
+                    indexStorage = quantized()
+                            ? new Int8VectorStorage(Path.of(dataDir), filePrefix, embedding.length, vectorsPerSegment)
+                            : fullStorage;
+                    index = new HnswIndex(indexStorage, m, efConstruction);
+                }
+                float[] unit = VectorMath.normalize(embedding);
+                int node = index.insert(unit);
+                if (indexStorage != fullStorage) {
+                    fullStorage.append(unit);
+                }
+                nodeByChunkId.put(chunkId, node);
+                chunkIdByNode.add(chunkId);
+                docIdByNode.add(docId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Collection<String> chunkIds) {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                for (String chunkId : chunkIds) {
+                    Integer node = nodeByChunkId.remove(chunkId);
+                    if (node != null) {
+                        index.markDeleted(node);
+                    }
+                    if (!ready) {
+                        removedDuringLoad.add(chunkId);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void removeDocument(String docId) {
+            List<String> chunkIds = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                for (int node = 0; node < docIdByNode.size(); node++) {
+                    if (docId.equals(docIdByNode.get(node)) && nodeByChunkId.containsKey(chunkIdByNode.get(node))) {
+                        chunkIds.add(chunkIdByNode.get(node));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            remove(chunkIds);
+        }
+
+        List<VectorHit> search(float[] query, int limit) {
+            lock.readLock().lock();
+            try {
+                if (index == null) {
+                    return List.of();
+                }
+                float[] unitQuery = VectorMath.normalize(query);
+                boolean rescore = indexStorage != fullStorage;
+                List<HnswIndex.Candidate> candidates = index.search(unitQuery, rescore ? limit * rescoreFactor : limit,
+                        rescore ? efSearch * rescoreFactor : efSearch);
+                if (rescore) {
+                    // 量化距离只用于召回，用全精度向量重新打分后取前 limit 个
+                    candidates = candidates.stream()
+                            .map(c -> new HnswIndex.Candidate(c.node(), 1 - fullStorage.dot(c.node(), unitQuery)))
+                            .sorted(Comparator.comparingDouble(HnswIndex.Candidate::distance))
+                            .limit(limit)
+                            .toList();
+                }
+                List<VectorHit> hits = new ArrayList<>(limit);
+                for (HnswIndex.Candidate candidate : candidates) {
+                    hits.add(new VectorHit(chunkIdByNode.get(candidate.node()),
+                            fullStorage.get(candidate.node()), candidate.distance(), null));
+                }
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void finishLoading() {
+            lock.writeLock().lock();
+            try {
+                removedDuringLoad.clear();
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int liveSize() {
+            lock.readLock().lock();
+            try {
+                return index == null ? 0 : index.liveSize();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        double deletedRatio() {
+            lock.readLock().lock();
+            try {
+                return index == null ? 0 : index.deletedRatio();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void close() {
+            lock.writeLock().lock();
+            try {
+                ready = false;
+                closed = true;
+                nodeByChunkId.clear();
+                chunkIdByNode.clear();
+                docIdByNode.clear();
+                if (indexStorage != null && indexStorage != fullStorage) {
+                    indexStorage.close();
+                }
+                if (fullStorage != null) {
+                    fullStorage.close();
+                }
+                fullStorage = null;
+                indexStorage = null;
+                index = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.kama.jchatmind.rag.store;
+
+import com.kama.jchatmind.rag.Quantization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * int8 标量量化的堆外向量存储，每个分量 1 字节，约为 float 存储的 1/4
+ * 每个向量单独记录缩放系数（放在堆上，每个向量 4 字节），码值存放在内存映射段文件中
+ * 点积为近似值，需要精确排序时由调用方用全精度向量对候选重新打分
+ */
+public class Int8VectorStorage implements VectorStorage {
+
+    private final Path directory;
+    private final String prefix;
+    private final int dimension;
+    private final int vectorsPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<Path> segmentFiles = new ArrayList<>();
+    private float[] scales = new float[1024];
+    private int size;
+
+    public Int8VectorStorage(Path directory, String prefix, int dimension, int vectorsPerSegment) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.dimension = dimension;
+        this.vectorsPerSegment = vectorsPerSegment;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * (dimension + Float.BYTES);
+    }
+
+    @Override
+    public int append(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: expected=" + dimension + ", actual=" + vector.length);
+        }
+        int node = size;
+        int segment = node / vectorsPerSegment;
+        if (segment == segments.size()) {
+            segments.add(mapSegment(segment));
+        }
+        byte[] codes = new byte[dimension];
+        float scale = Quantization.quantizeInt8(vector, codes);
+        segments.get(segment).put((node % vectorsPerSegment) * dimension, codes);
+        if (node == scales.length) {
+            scales = Arrays.copyOf(scales, scales.length * 2);
+        }
+        scales[node] = scale;
+        size++;
+        return node;
+    }
+
+    @Override
+    public float dot(int node, float[] query) {
+        MappedByteBuffer buffer = segments.get(node / vectorsPerSegment);
+        int offset = (node % vectorsPerSegment) * dimension;
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += buffer.get(offset + i) * query[i];
+            s1 += buffer.get(offset + i + 1) * query[i + 1];
+            s2 += buffer.get(offset + i + 2) * query[i + 2];
+            s3 += buffer.get(offset + i + 3) * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += buffer.get(offset + i) * query[i];
+        }
+        return ((s0 + s1) + (s2 + s3)) * scales[node];
+    }
+
+    @Override
+    public float[] get(int node) {
+        byte[] codes = new byte[dimension];
+        segments.get(node / vectorsPerSegment).get((node % vectorsPerSegment) * dimension, codes);
+        return Quantization.dequantizeInt8(codes, scales[node]);
+    }
+
+    private MappedByteBuffer mapSegment(int segment) {
+        Path file = directory.resolve(String.format("%s-%05d.i8", prefix, segment));
+        long bytes = (long) vectorsPerSegment * dimension;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            segmentFiles.add(file);
+            return mapped;
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射向量段文件失败: " + file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+        for (Path file : segmentFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // 段文件在下次启动时会被覆盖，删除失败不影响使用
+            }
+        }
+        segmentFiles.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,130 @@
+package com.kama.jchatmind.rag.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 堆外向量存储：按固定容量切分为多个内存映射段文件，向量按节点编号顺序追加
+ * 向量数据不占用 Java 堆，由操作系统页缓存管理，大知识库也不会给 GC 带来压力
+ * 段文件只是运行期的存储介质，启动时从 chunk_bge_m3 重建，不作为持久化数据
+ */
+public class MappedVectorStorage implements VectorStorage {
+
+    private final Path directory;
+    private final String prefix;
+    private final int dimension;
+    private final int vectorsPerSegment;
+    private final List<FloatBuffer> segments = new ArrayList<>();
+    private final List<Path> segmentFiles = new ArrayList<>();
+    private int size;
+
+    public MappedVectorStorage(Path directory, String prefix, int dimension, int vectorsPerSegment) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.dimension = dimension;
+        this.vectorsPerSegment = vectorsPerSegment;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long bytes() {
+        return (long) size * dimension * Float.BYTES;
+    }
+
+    @Override
+    public int append(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配: expected=" + dimension + ", actual=" + vector.length);
+        }
+        int node = size;
+        int segment = node / vectorsPerSegment;
+        if (segment == segments.size()) {
+            segments.add(mapSegment(segment));
+        }
+        segments.get(segment).put((node % vectorsPerSegment) * dimension, vector);
+        size++;
+        return node;
+    }
+
+    /**
+     * 直接读取映射内存计算点积，不复制数组，累加方式与 VectorMath.dot 相同（4 路展开、4 个累加器）
+     */
+    @Override
+    public float dot(int node, float[] query) {
+        FloatBuffer buffer = segments.get(node / vectorsPerSegment);
+        int offset = (node % vectorsPerSegment) * dimension;
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += buffer.get(offset + i) * query[i];
+            s1 += buffer.get(offset + i + 1) * query[i + 1];
+            s2 += buffer.get(offset + i + 2) * query[i + 2];
+            s3 += buffer.get(offset + i + 3) * query[i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += buffer.get(offset + i) * query[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float[] get(int node) {
+        float[] vector = new float[dimension];
+        segments.get(node / vectorsPerSegment).get((node % vectorsPerSegment) * dimension, vector);
+        return vector;
+    }
+
+    private FloatBuffer mapSegment(int segment) {
+        Path file = directory.resolve(String.format("%s-%05d.seg", prefix, segment));
+        long bytes = (long) vectorsPerSegment * dimension * Float.BYTES;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            segmentFiles.add(file);
+            return mapped.order(ByteOrder.nativeOrder()).asFloatBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException("映射向量段文件失败: " + file, e);
+        }
+    }
+
+    /**
+     * 删除段文件，映射内存在缓冲区被回收后释放
+     */
+    @Override
+    public void close() {
+        segments.clear();
+        for (Path file : segmentFiles) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // 段文件在下次启动时会被覆盖，删除失败不影响使用
+            }
+        }
+        segmentFiles.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kama.jchatmind.rag.store;
+
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.service.ChunkPartitionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 基于 pgvector 的检索后端，直接查询 chunk_bge_m3，无需同步
+ * 可选量化检索：先按 halfvec / binary 量化索引召回候选，再用全精度向量重新排序
+ */
+@Component
+public class PgVectorStore implements VectorStore {
+
+    public static final String NAME = "pgvector";
+
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final ChunkPartitionService chunkPartitionService;
+
+    // none / halfvec / binary，启用前需先执行 sql/chunk_quantization.sql 创建对应的表达式索引
+    @Value("${rag.vector-store.pgvector.quantization:none}")
+    private String quantization;
+
+    @Value("${rag.vector-store.pgvector.rescore-factor:4}")
+    private int rescoreFactor;
+
+    @Value("${rag.embedding.dimension:1024}")
+    private int dimension;
+
+    public PgVectorStore(ChunkBgeM3Mapper chunkBgeM3Mapper, ChunkPartitionService chunkPartitionService) {
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.chunkPartitionService = chunkPartitionService;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<VectorHit> search(String kbId, float[] query, int limit) {
+        String table = chunkPartitionService.tableFor(kbId);
+        List<ChunkBgeM3> chunks = "halfvec".equalsIgnoreCase(quantization) || "binary".equalsIgnoreCase(quantization)
+                ? chunkBgeM3Mapper.similaritySearchQuantized(table, kbId, toPgVector(query), quantization.toLowerCase(),
+                        dimension, limit * rescoreFactor, limit)
+                : chunkBgeM3Mapper.similaritySearch(table, kbId, toPgVector(query), limit);
+        return chunks.stream()
+                .map(chunk -> new VectorHit(chunk.getId(), chunk.getEmbedding(),
+                        l2Distance(query, chunk.getEmbedding()), chunk.getContent()))
+                .toList();
+    }
+
+    private static float l2Distance(float[] a, float[] b) {
+        if (b == null) {
+            return Float.NaN;
+        }
+        float sum = 0f;
+        int n = Math.min(a.length, b.length);
+        for (int i = 0; i < n; i++) {
+            float d = a[i] - b[i];
+            sum += d * d;
+        }
+        return (float) Math.sqrt(sum);
+    }
+
+    public static String toPgVector(float[] v) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < v.length; i++) {
+            sb.append(v[i]);
+            if (i < v.length - 1) sb.append(",");
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+}
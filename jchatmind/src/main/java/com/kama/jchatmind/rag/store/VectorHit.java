@@ -0,0 +1,12 @@
+package com.kama.jchatmind.rag.store;
+
+/**
+ * 向量检索命中的 chunk
+ *
+ * @param chunkId   chunk ID
+ * @param embedding chunk 向量，供重排使用
+ * @param distance  与查询的距离，越小越相似
+ * @param content   chunk 内容，后端未返回内容时为 null，由调用方按 ID 补齐
+ */
+public record VectorHit(String chunkId, float[] embedding, float distance, String content) {
+}
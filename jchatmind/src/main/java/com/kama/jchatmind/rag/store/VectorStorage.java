@@ -0,0 +1,36 @@
+package com.kama.jchatmind.rag.store;
+
+import java.io.Closeable;
+
+/**
+ * HNSW 索引使用的向量存储，节点编号即追加顺序
+ */
+public interface VectorStorage extends Closeable {
+
+    int dimension();
+
+    int size();
+
+    /**
+     * 追加一个向量，返回其节点编号
+     */
+    int append(float[] vector);
+
+    /**
+     * 节点向量与查询向量的点积
+     */
+    float dot(int node, float[] query);
+
+    /**
+     * 读取节点向量，量化存储返回反量化后的近似值
+     */
+    float[] get(int node);
+
+    /**
+     * 向量数据占用的字节数
+     */
+    long bytes();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,46 @@
+package com.kama.jchatmind.rag.store;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 向量检索后端
+ * chunk_bge_m3 表始终是数据的来源，后端只负责检索；
+ * 不直接读表的后端通过写入钩子与表保持同步
+ */
+public interface VectorStore {
+
+    /**
+     * 后端名称，对应知识库 metadata 中的 vectorStore 配置
+     */
+    String name();
+
+    /**
+     * 检索与查询向量最相近的 chunk，按距离升序
+     */
+    List<VectorHit> search(String kbId, float[] query, int limit);
+
+    /**
+     * chunk 写入 chunk_bge_m3 之后调用
+     */
+    default void add(String kbId, String docId, String chunkId, float[] embedding) {
+    }
+
+    /**
+     * chunk 从 chunk_bge_m3 删除之后调用
+     */
+    default void remove(String kbId, Collection<String> chunkIds) {
+    }
+
+    /**
+     * 文档被删除时调用
+     */
+    default void removeDocument(String kbId, String docId) {
+    }
+
+    /**
+     * 知识库被删除或切换到其他后端时调用
+     */
+    default void drop(String kbId) {
+    }
+}
@@ -0,0 +1,161 @@
+package com.kama.jchatmind.rag.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.converter.KnowledgeBaseConverter;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
+import com.kama.jchatmind.model.entity.KnowledgeBase;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 按知识库选择检索后端
+ * 知识库 metadata 中的 vectorStore 指定后端（pgvector / memory），未指定时使用 rag.vector-store.default；
+ * 内存索引尚未加载完成时回退到 pgvector
+ * 同时作为 chunk 写入 / 删除的统一钩子，转发给各个后端
+ */
+@Slf4j
+@Component
+public class VectorStoreRouter {
+
+    private final Map<String, VectorStore> stores;
+    private final PgVectorStore pgVectorStore;
+    private final HnswVectorStore hnswVectorStore;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+    private final KnowledgeBaseConverter knowledgeBaseConverter;
+    private final ThreadPoolTaskExecutor vectorIndexExecutor;
+    private final MetricsRegistry metricsRegistry;
+
+    // kbId -> 后端名称
+    private final ConcurrentMap<String, String> backends = new ConcurrentHashMap<>();
+    // 正在加载或重建的内存索引，避免重复提交
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+
+    @Value("${rag.vector-store.default:pgvector}")
+    private String defaultBackend;
+
+    public VectorStoreRouter(List<VectorStore> stores,
+                             PgVectorStore pgVectorStore,
+                             HnswVectorStore hnswVectorStore,
+                             KnowledgeBaseMapper knowledgeBaseMapper,
+                             KnowledgeBaseConverter knowledgeBaseConverter,
+                             @Qualifier("vectorIndexExecutor") ThreadPoolTaskExecutor vectorIndexExecutor,
+                             MetricsRegistry metricsRegistry) {
+        this.stores = stores.stream().collect(Collectors.toMap(VectorStore::name, Function.identity()));
+        this.pgVectorStore = pgVectorStore;
+        this.hnswVectorStore = hnswVectorStore;
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+        this.knowledgeBaseConverter = knowledgeBaseConverter;
+        this.vectorIndexExecutor = vectorIndexExecutor;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * 启动后在后台加载所有使用内存后端的知识库
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadMemoryIndexes() {
+        for (KnowledgeBase knowledgeBase : knowledgeBaseMapper.selectAll()) {
+            if (HnswVectorStore.NAME.equals(backendOf(knowledgeBase.getId()))) {
+                scheduleLoad(knowledgeBase.getId());
+            }
+        }
+    }
+
+    public VectorStore storeFor(String kbId) {
+        VectorStore store = stores.getOrDefault(backendOf(kbId), pgVectorStore);
+        if (store == hnswVectorStore && !hnswVectorStore.isReady(kbId)) {
+            metricsRegistry.increment("rag.vector_store.memory.fallback");
+            scheduleLoad(kbId);
+            return pgVectorStore;
+        }
+        return store;
+    }
+
+    /**
+     * 知识库的后端配置发生变化时调用
+     */
+    public void onBackendChanged(String kbId) {
+        backends.remove(kbId);
+        if (HnswVectorStore.NAME.equals(backendOf(kbId))) {
+            scheduleLoad(kbId);
+        } else {
+            hnswVectorStore.drop(kbId);
+        }
+    }
+
+    public void onChunkInserted(String kbId, String docId, String chunkId, float[] embedding) {
+        stores.values().forEach(store -> store.add(kbId, docId, chunkId, embedding));
+    }
+
+    public void onChunksDeleted(String kbId, Collection<String> chunkIds) {
+        stores.values().forEach(store -> store.remove(kbId, chunkIds));
+        rebuildIfNeeded(kbId);
+    }
+
+    public void onDocumentDeleted(String kbId, String docId) {
+        stores.values().forEach(store -> store.removeDocument(kbId, docId));
+        rebuildIfNeeded(kbId);
+    }
+
+    public void onKnowledgeBaseDeleted(String kbId) {
+        stores.values().forEach(store -> store.drop(kbId));
+        backends.remove(kbId);
+    }
+
+    private void rebuildIfNeeded(String kbId) {
+        if (hnswVectorStore.needsRebuild(kbId)) {
+            log.info("内存向量索引删除比例过高，后台重建: kbId={}", kbId);
+            scheduleLoad(kbId);
+        }
+    }
+
+    private void scheduleLoad(String kbId) {
+        if (!loading.add(kbId)) {
+            return;
+        }
+        vectorIndexExecutor.execute(() -> {
+            try {
+                hnswVectorStore.load(kbId);
+            } catch (Exception e) {
+                log.error("加载内存向量索引失败: kbId={}", kbId, e);
+                hnswVectorStore.drop(kbId);
+            } finally {
+                loading.remove(kbId);
+            }
+        });
+    }
+
+    private String backendOf(String kbId) {
+        return backends.computeIfAbsent(kbId, id -> {
+            KnowledgeBase knowledgeBase = knowledgeBaseMapper.selectById(id);
+            if (knowledgeBase == null) {
+                return defaultBackend;
+            }
+            try {
+                KnowledgeBaseDTO.MetaData metadata = knowledgeBaseConverter.toDTO(knowledgeBase).getMetadata();
+                return metadata != null && metadata.getVectorStore() != null
+                        ? metadata.getVectorStore()
+                        : defaultBackend;
+            } catch (JsonProcessingException e) {
+                log.warn("知识库 metadata 解析失败，使用默认检索后端: kbId={}", id);
+                return defaultBackend;
+            }
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.kama.jchatmind.resilience;
+
+/**
+ * 简单的熔断器
+ * - CLOSED：正常放行，连续失败达到阈值后进入 OPEN
+ * - OPEN：直接拒绝，经过 openMillis 后进入 HALF_OPEN
+ * - HALF_OPEN：只放行一个试探请求，成功则恢复 CLOSED，失败则重新 OPEN
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 请求前调用，返回 false 表示熔断中，应直接失败或改用其他资源
+     * 返回 true 后必须以 onSuccess / onFailure / onCancel 之一结束
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < openMillis) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * 请求被取消（如对冲请求中落后的一方），不计入成功或失败
+     */
+    public synchronized void onCancel() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,54 @@
+package com.kama.jchatmind.resilience;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限流器：以 ratePerSecond 的速度补充令牌，最多积累 burst 个
+ * ratePerSecond <= 0 表示不限流
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 获取一个令牌，令牌不足时最多等待 timeoutMillis，超时返回 false
+     */
+    public boolean acquire(long timeoutMillis) throws InterruptedException {
+        if (ratePerNano <= 0) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos, remaining));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+}
@@ -4,6 +4,7 @@ import com.kama.jchatmind.model.request.CreateAgentRequest;
 import com.kama.jchatmind.model.request.UpdateAgentRequest;
 import com.kama.jchatmind.model.response.CreateAgentResponse;
 import com.kama.jchatmind.model.response.GetAgentsResponse;
+import com.kama.jchatmind.model.vo.AgentUsageVO;
 
 public interface AgentFacadeService {
     GetAgentsResponse getAgents();
@@ -13,4 +14,6 @@ public interface AgentFacadeService {
     void deleteAgent(String agentId);
 
     void updateAgent(String agentId, UpdateAgentRequest request);
+
+    AgentUsageVO getAgentUsage(String agentId);
 }
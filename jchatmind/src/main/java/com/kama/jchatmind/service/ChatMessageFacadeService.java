@@ -6,12 +6,16 @@ import com.kama.jchatmind.model.request.UpdateChatMessageRequest;
 import com.kama.jchatmind.model.response.CreateChatMessageResponse;
 import com.kama.jchatmind.model.response.GetChatMessagesResponse;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ChatMessageFacadeService {
     GetChatMessagesResponse getChatMessagesBySessionId(String sessionId);
 
-    List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, int limit);
+    /**
+     * 会话最近的 limit 条消息，after 不为空时只取该时间之后的消息（之前的已合并进会话摘要）
+     */
+    List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, LocalDateTime after, int limit);
 
     CreateChatMessageResponse createChatMessage(CreateChatMessageRequest request);
 
@@ -0,0 +1,30 @@
+package com.kama.jchatmind.service;
+
+/**
+ * chunk_bge_m3 按 kb_id 分区管理（storage.partitioning.enabled）
+ * 每个知识库一个 LIST 分区，向量索引按分区各自维护；删除知识库时直接删除分区
+ * 启用前需执行 sql/chunk_partitioning.sql 把 chunk_bge_m3 迁移为分区表
+ */
+public interface ChunkPartitionService {
+    /**
+     * 分区是否启用（配置开启且 chunk_bge_m3 已是分区表）
+     */
+    boolean isEnabled();
+
+    /**
+     * 查询该知识库 chunk 时应使用的表名：存在独立分区时返回分区表，否则返回 chunk_bge_m3
+     */
+    String tableFor(String kbId);
+
+    /**
+     * 为知识库创建分区，已存在时忽略
+     */
+    void createPartition(String kbId);
+
+    /**
+     * 卸载并删除知识库的分区，等待父表锁超过 storage.partitioning.lock-timeout-ms 时放弃
+     *
+     * @return 被删除的 chunk 行数（统计信息估算值），知识库没有独立分区或等锁超时时返回 -1
+     */
+    long dropPartition(String kbId);
+}
@@ -15,6 +15,8 @@ public interface DocumentFacadeService {
 
     CreateDocumentResponse uploadDocument(String kbId, MultipartFile file);
 
+    CreateDocumentResponse reuploadDocument(String documentId, MultipartFile file);
+
     void deleteDocument(String documentId);
 
     void updateDocument(String documentId, UpdateDocumentRequest request);
@@ -28,6 +28,15 @@ public interface DocumentStorageService {
      */
     void deleteFile(String filePath) throws IOException;
 
+    /**
+     * 递归删除目录（相对于存储根目录），如 "kbId" 或 "kbId/documentId"
+     *
+     * @param relativeDir 相对目录路径
+     * @return 删除的文件总字节数
+     * @throws IOException 目录删除失败
+     */
+    long deleteDirectory(String relativeDir) throws IOException;
+
     /**
      * 获取文件的完整路径
      *
@@ -1,15 +1,41 @@
 package com.kama.jchatmind.service;
 
+import com.kama.jchatmind.model.vo.EmailOutboxVO;
+
 /**
  * 邮件服务接口
+ * 邮件先写入发件箱（email_outbox），由后台 worker 分批发送，失败按退避时间重试
  */
 public interface EmailService {
     /**
-     * 异步发送邮件
+     * 提交一封邮件，立即返回邮件 ID，实际发送由后台 worker 完成
+     *
+     * @param to            收件人邮箱地址
+     * @param subject       邮件主题
+     * @param content       邮件内容
+     * @param agentId       提交邮件的 Agent，可为空
+     * @param chatSessionId 提交邮件的会话，可为空
+     * @return 邮件ID
+     */
+    String submit(String to, String subject, String content, String agentId, String chatSessionId);
+
+    /**
+     * 查询邮件的发送状态，只能查到同一 Agent、同一会话提交的邮件
      *
-     * @param to      收件人邮箱地址
-     * @param subject 邮件主题
-     * @param content 邮件内容
+     * @param messageId     邮件ID
+     * @param agentId       查询方的 Agent，可为空
+     * @param chatSessionId 查询方的会话，可为空
+     * @return 邮件信息
+     */
+    EmailOutboxVO getMessage(String messageId, String agentId, String chatSessionId);
+
+    /**
+     * 邮件状态
      */
-    void sendEmailAsync(String to, String subject, String content);
+    enum Status {
+        PENDING,
+        SENDING,
+        SENT,
+        FAILED
+    }
 }
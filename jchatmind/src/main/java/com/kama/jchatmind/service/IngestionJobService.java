@@ -0,0 +1,45 @@
+package com.kama.jchatmind.service;
+
+import com.kama.jchatmind.model.response.GetIngestionJobResponse;
+
+/**
+ * 文档异步解析（解析 -> embedding -> 入库）任务服务接口
+ */
+public interface IngestionJobService {
+    /**
+     * 提交一个文档解析任务，立即返回任务 ID，实际处理由后台 worker 完成
+     *
+     * @param kbId       知识库ID
+     * @param documentId 文档ID
+     * @return 任务ID
+     */
+    String submit(String kbId, String documentId);
+
+    /**
+     * 查询任务状态与进度
+     *
+     * @param jobId 任务ID
+     * @return 任务信息
+     */
+    GetIngestionJobResponse getJob(String jobId);
+
+    /**
+     * 任务状态
+     */
+    enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    /**
+     * 任务当前所处阶段
+     */
+    enum Stage {
+        QUEUED,
+        PARSING,
+        EMBEDDING,
+        COMPLETED
+    }
+}
@@ -0,0 +1,19 @@
+package com.kama.jchatmind.service;
+
+import com.kama.jchatmind.model.dto.ChatSessionDTO;
+
+/**
+ * 会话滚动摘要：把滑出上下文窗口的旧消息增量合并成一段摘要，保存在 chat_session.metadata 中，
+ * Agent 加载上下文时只读取摘要之后的消息，使每一步的输入 token 不随会话变长而增长
+ */
+public interface SessionSummaryService {
+    /**
+     * 会话当前的摘要状态，没有摘要时返回 null
+     */
+    ChatSessionDTO.MetaData getSummary(String sessionId);
+
+    /**
+     * 异步检查并更新会话摘要，在 Agent 完成一轮回复后调用，不阻塞回复
+     */
+    void scheduleSummarize(String agentId, String sessionId);
+}
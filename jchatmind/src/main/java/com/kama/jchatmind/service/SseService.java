@@ -8,4 +8,7 @@ public interface SseService {
     SseEmitter connect(String chatSessionId);
 
     void send(String chatSessionId, SseMessage message);
+
+    // 是否有客户端订阅了该连接标识，推送前检查，避免为没有订阅者的消息做无用功
+    boolean isConnected(String chatSessionId);
 }
@@ -0,0 +1,42 @@
+package com.kama.jchatmind.service;
+
+import com.kama.jchatmind.model.response.GetCleanupReportsResponse;
+
+/**
+ * 文档 / 知识库删除后的后台清理服务：分批删除 chunk、删除存储目录，并在删除量较大时触发 VACUUM
+ * 清理任务保存在 storage_cleanup_job 表中，应与删除文档 / 知识库记录在同一事务中提交，重启后继续执行
+ */
+public interface StorageCleanupService {
+    /**
+     * 登记清理一个文档的 chunks 和存储目录的任务，由后台 worker 执行
+     */
+    void scheduleDocumentCleanup(String kbId, String documentId);
+
+    /**
+     * 登记清理一个知识库的所有 chunks 和存储目录的任务，由后台 worker 执行
+     */
+    void scheduleKnowledgeBaseCleanup(String kbId);
+
+    /**
+     * 最近的清理报告，最新的在前
+     */
+    GetCleanupReportsResponse getRecentReports();
+
+    /**
+     * 清理对象
+     */
+    enum Target {
+        DOCUMENT,
+        KNOWLEDGE_BASE
+    }
+
+    /**
+     * 清理任务状态
+     */
+    enum Status {
+        PENDING,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+}
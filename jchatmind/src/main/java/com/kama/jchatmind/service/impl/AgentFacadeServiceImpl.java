@@ -1,6 +1,7 @@
 package com.kama.jchatmind.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.agent.AgentUsageTracker;
 import com.kama.jchatmind.converter.AgentConverter;
 import com.kama.jchatmind.exception.BizException;
 import com.kama.jchatmind.mapper.AgentMapper;
@@ -10,6 +11,7 @@ import com.kama.jchatmind.model.request.CreateAgentRequest;
 import com.kama.jchatmind.model.request.UpdateAgentRequest;
 import com.kama.jchatmind.model.response.CreateAgentResponse;
 import com.kama.jchatmind.model.response.GetAgentsResponse;
+import com.kama.jchatmind.model.vo.AgentUsageVO;
 import com.kama.jchatmind.model.vo.AgentVO;
 import com.kama.jchatmind.service.AgentFacadeService;
 import lombok.AllArgsConstructor;
@@ -26,6 +28,7 @@ public class AgentFacadeServiceImpl implements AgentFacadeService {
 
     private final AgentMapper agentMapper;
     private final AgentConverter agentConverter;
+    private final AgentUsageTracker agentUsageTracker;
 
     @Override
     public GetAgentsResponse getAgents() {
@@ -118,4 +121,13 @@ public class AgentFacadeServiceImpl implements AgentFacadeService {
             throw new BizException("更新 agent 时发生序列化错误: " + e.getMessage());
         }
     }
+
+    @Override
+    public AgentUsageVO getAgentUsage(String agentId) {
+        Agent agent = agentMapper.selectById(agentId);
+        if (agent == null) {
+            throw new BizException("Agent 不存在: " + agentId);
+        }
+        return agentUsageTracker.get(agentId);
+    }
 }
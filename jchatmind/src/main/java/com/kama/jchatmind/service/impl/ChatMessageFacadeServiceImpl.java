@@ -49,8 +49,8 @@ public class ChatMessageFacadeServiceImpl implements ChatMessageFacadeService {
     }
 
     @Override
-    public List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, int limit) {
-        List<ChatMessage> chatMessages = chatMessageMapper.selectBySessionIdRecently(sessionId, limit);
+    public List<ChatMessageDTO> getChatMessagesBySessionIdRecently(String sessionId, LocalDateTime after, int limit) {
+        List<ChatMessage> chatMessages = chatMessageMapper.selectBySessionIdRecently(sessionId, after, limit);
         List<ChatMessageDTO> result = new ArrayList<>();
         for (ChatMessage chatMessage : chatMessages) {
             try {
@@ -0,0 +1,137 @@
+package com.kama.jchatmind.service.impl;
+
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.model.entity.KnowledgeBase;
+import com.kama.jchatmind.service.ChunkPartitionService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Service
+@Slf4j
+public class ChunkPartitionServiceImpl implements ChunkPartitionService {
+
+    private static final String PARENT_TABLE = "chunk_bge_m3";
+    private static final String PARTITION_PREFIX = "chunk_bge_m3_kb_";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final KnowledgeBaseMapper knowledgeBaseMapper;
+
+    // kbId -> 是否存在独立分区
+    private final ConcurrentMap<String, Boolean> partitions = new ConcurrentHashMap<>();
+
+    @Value("${storage.partitioning.enabled:false}")
+    private boolean configured;
+
+    // 卸载分区时等待父表锁的上限，超时则放弃，由调用方改为分批删除
+    @Value("${storage.partitioning.lock-timeout-ms:2000}")
+    private long lockTimeoutMs;
+
+    private volatile boolean enabled;
+
+    public ChunkPartitionServiceImpl(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     KnowledgeBaseMapper knowledgeBaseMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.knowledgeBaseMapper = knowledgeBaseMapper;
+    }
+
+    /**
+     * 启动时确认 chunk_bge_m3 已迁移为分区表，并为还没有分区的知识库补建分区
+     * 需要先于内存向量索引的加载执行
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void init() {
+        if (!configured) {
+            return;
+        }
+        String relkind = jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, PARENT_TABLE);
+        if (!"p".equals(relkind)) {
+            log.warn("storage.partitioning.enabled 已开启，但 {} 不是分区表，请先执行 sql/chunk_partitioning.sql，本次不启用分区",
+                    PARENT_TABLE);
+            return;
+        }
+        enabled = true;
+        for (KnowledgeBase knowledgeBase : knowledgeBaseMapper.selectAll()) {
+            createPartition(knowledgeBase.getId());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String tableFor(String kbId) {
+        if (!enabled) {
+            return PARENT_TABLE;
+        }
+        return partitionExists(kbId) ? partitionName(kbId) : PARENT_TABLE;
+    }
+
+    @Override
+    public void createPartition(String kbId) {
+        if (!enabled || partitionExists(kbId)) {
+            return;
+        }
+        String table = partitionName(kbId);
+        // 分区表上定义的索引（包括向量索引）会自动在新分区上创建
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table
+                + " PARTITION OF " + PARENT_TABLE + " FOR VALUES IN ('" + UUID.fromString(kbId) + "')");
+        partitions.put(kbId, true);
+        log.info("已创建知识库分区: kbId={}, table={}", kbId, table);
+    }
+
+    @Override
+    public long dropPartition(String kbId) {
+        if (!enabled || !partitionExists(kbId)) {
+            return -1;
+        }
+        String table = partitionName(kbId);
+        // 只用于清理报告，取统计信息中的估算行数，不为计数扫描整个分区（从未 ANALYZE 时 reltuples 为 -1）
+        Long rows = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = to_regclass(?)", Long.class, table);
+        // 存在 DEFAULT 分区时不能使用 DETACH CONCURRENTLY，普通 DETACH 需要父表的 ACCESS EXCLUSIVE 锁：
+        // 排在长时间的检索之后等锁时会阻塞所有知识库的检索，所以限制等锁时间，超时放弃
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                jdbcTemplate.execute("ALTER TABLE " + PARENT_TABLE + " DETACH PARTITION " + table);
+                jdbcTemplate.execute("DROP TABLE " + table);
+            });
+        } catch (CannotAcquireLockException e) {
+            log.warn("卸载知识库分区等锁超过 {} ms，改为分批删除: kbId={}, table={}", lockTimeoutMs, kbId, table);
+            return -1;
+        }
+        partitions.remove(kbId);
+        log.info("已删除知识库分区: kbId={}, table={}, 估算行数={}", kbId, table, rows);
+        return rows != null ? rows : 0;
+    }
+
+    private boolean partitionExists(String kbId) {
+        return partitions.computeIfAbsent(kbId, id -> jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, partitionName(id)));
+    }
+
+    /**
+     * 分区表名由 UUID 规范化生成，拼接进 SQL 前已校验格式，不存在注入风险
+     */
+    private static String partitionName(String kbId) {
+        return PARTITION_PREFIX + UUID.fromString(kbId).toString().replace("-", "");
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.kama.jchatmind.converter.DocumentConverter;
 import com.kama.jchatmind.exception.BizException;
 import com.kama.jchatmind.mapper.DocumentMapper;
+import com.kama.jchatmind.mapper.IngestionJobMapper;
 import com.kama.jchatmind.model.dto.DocumentDTO;
 import com.kama.jchatmind.model.entity.Document;
 import com.kama.jchatmind.model.request.CreateDocumentRequest;
@@ -11,21 +12,17 @@ import com.kama.jchatmind.model.request.UpdateDocumentRequest;
 import com.kama.jchatmind.model.response.CreateDocumentResponse;
 import com.kama.jchatmind.model.response.GetDocumentsResponse;
 import com.kama.jchatmind.model.vo.DocumentVO;
-import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
-import com.kama.jchatmind.model.entity.ChunkBgeM3;
 import com.kama.jchatmind.service.DocumentFacadeService;
 import com.kama.jchatmind.service.DocumentStorageService;
-import com.kama.jchatmind.service.MarkdownParserService;
-import com.kama.jchatmind.service.RagService;
+import com.kama.jchatmind.service.IngestionJobService;
+import com.kama.jchatmind.service.StorageCleanupService;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -38,9 +35,10 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
     private final DocumentMapper documentMapper;
     private final DocumentConverter documentConverter;
     private final DocumentStorageService documentStorageService;
-    private final MarkdownParserService markdownParserService;
-    private final RagService ragService;
-    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final IngestionJobService ingestionJobService;
+    private final IngestionJobMapper ingestionJobMapper;
+    private final StorageCleanupService storageCleanupService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public GetDocumentsResponse getDocuments() {
@@ -158,9 +156,10 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
 
             log.info("文档上传成功: kbId={}, documentId={}, filename={}", kbId, documentId, originalFilename);
 
-            // 如果是 Markdown 文件，进行解析并生成 chunks
+            // 如果是 Markdown 文件，提交异步解析任务，解析、embedding 和 chunk 入库由后台 worker 完成
+            String jobId = null;
             if ("md".equalsIgnoreCase(filetype) || "markdown".equalsIgnoreCase(filetype)) {
-                processMarkdownDocument(kbId, documentId, filePath);
+                jobId = ingestionJobService.submit(kbId, documentId);
             } else {
                 // TODO: 未来可以增加其他文件类型的处理逻辑
                 log.warn("待新增处理的文件类型: {}", filetype);
@@ -168,6 +167,7 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
 
             return CreateDocumentResponse.builder()
                     .documentId(documentId)
+                    .jobId(jobId)
                     .build();
         } catch (IOException e) {
             log.error("文件保存失败", e);
@@ -175,96 +175,85 @@ public class DocumentFacadeServiceImpl implements DocumentFacadeService {
         }
     }
 
+    /**
+     * 用新内容替换已有文档，提交增量解析任务：只有新增或修改的章节会重新 embedding
+     */
     @Override
-    public void deleteDocument(String documentId) {
-        Document document = documentMapper.selectById(documentId);
-        if (document == null) {
-            throw new BizException("文档不存在: " + documentId);
-        }
-
-        // 删除文件
+    public CreateDocumentResponse reuploadDocument(String documentId, MultipartFile file) {
         try {
-            DocumentDTO documentDTO = documentConverter.toDTO(document);
-            if (documentDTO.getMetadata() != null && documentDTO.getMetadata().getFilePath() != null) {
-                String filePath = documentDTO.getMetadata().getFilePath();
-                documentStorageService.deleteFile(filePath);
+            if (file.isEmpty()) {
+                throw new BizException("上传的文件为空");
+            }
+            Document existingDocument = documentMapper.selectById(documentId);
+            if (existingDocument == null) {
+                throw new BizException("文档不存在: " + documentId);
             }
-        } catch (Exception e) {
-            log.warn("删除文件失败，继续删除文档记录: documentId={}, error={}", documentId, e.getMessage());
-            // 即使文件删除失败，也继续删除数据库记录
-        }
-
-        // 删除数据库记录
-        int result = documentMapper.deleteById(documentId);
-        if (result <= 0) {
-            throw new BizException("删除文档失败");
-        }
-    }
 
-    /**
-     * 处理 Markdown 文档，解析并生成 chunks
-     */
-    private void processMarkdownDocument(String kbId, String documentId, String filePath) {
-        try {
-            log.info("开始处理 Markdown 文档: kbId={}, documentId={}, filePath={}", kbId, documentId, filePath);
+            DocumentDTO documentDTO = documentConverter.toDTO(existingDocument);
+            String filetype = getFileType(file.getOriginalFilename());
+            if (!filetype.equalsIgnoreCase(documentDTO.getFiletype())) {
+                throw new BizException("文件类型不一致: " + documentDTO.getFiletype() + " -> " + filetype);
+            }
+            String oldFilePath = documentDTO.getMetadata() != null ? documentDTO.getMetadata().getFilePath() : null;
 
-            // 从保存的文件路径读取文件
-            Path path = documentStorageService.getFilePath(filePath);
-            try (InputStream inputStream = Files.newInputStream(path)) {
-                // 解析 Markdown 文件
-                List<MarkdownParserService.MarkdownSection> sections = markdownParserService.parseMarkdown(inputStream);
+            // 保存新文件并更新文档记录
+            String filePath = documentStorageService.saveFile(existingDocument.getKbId(), documentId, file);
+            DocumentDTO.MetaData metadata = documentDTO.getMetadata() != null
+                    ? documentDTO.getMetadata()
+                    : new DocumentDTO.MetaData();
+            metadata.setFilePath(filePath);
+            documentDTO.setMetadata(metadata);
+            documentDTO.setSize(file.getSize());
 
-                System.out.println(sections);
+            Document updatedDocument = documentConverter.toEntity(documentDTO);
+            updatedDocument.setUpdatedAt(LocalDateTime.now());
+            documentMapper.updateById(updatedDocument);
 
-                if (sections.isEmpty()) {
-                    log.warn("Markdown 文档解析后没有找到任何章节: documentId={}", documentId);
-                    return;
+            // 删除旧文件
+            if (oldFilePath != null && !oldFilePath.equals(filePath)) {
+                try {
+                    documentStorageService.deleteFile(oldFilePath);
+                } catch (IOException e) {
+                    log.warn("删除旧文件失败: documentId={}, path={}, error={}", documentId, oldFilePath, e.getMessage());
                 }
+            }
 
-                LocalDateTime now = LocalDateTime.now();
-                int chunkCount = 0;
-
-                // 为每个章节生成 chunk
-                for (MarkdownParserService.MarkdownSection section : sections) {
-                    String title = section.getTitle();
-                    String content = section.getContent();
-
-                    if (title == null || title.trim().isEmpty()) {
-                        continue;
-                    }
-
-                    // 对标题进行 embedding
-                    float[] embedding = ragService.embed(title);
-
-                    // 创建 ChunkBgeM3 实体
-                    ChunkBgeM3 chunk = ChunkBgeM3.builder()
-                            .kbId(kbId)
-                            .docId(documentId)
-                            .content(content != null ? content : "")
-                            .metadata(null) // 可以存储标题信息到 metadata
-                            .embedding(embedding)
-                            .createdAt(now)
-                            .updatedAt(now)
-                            .build();
-
-                    // 插入数据库
-                    int result = chunkBgeM3Mapper.insert(chunk);
-
-                    if (result > 0) {
-                        chunkCount++;
-                        log.debug("创建 chunk 成功: title={}, chunkId={}", title, chunk.getId());
-                    } else {
-                        log.warn("创建 chunk 失败: title={}", title);
-                    }
-                }
-                log.info("Markdown 文档处理完成: documentId={}, 共生成 {} 个 chunks", documentId, chunkCount);
+            String jobId = null;
+            if ("md".equalsIgnoreCase(filetype) || "markdown".equalsIgnoreCase(filetype)) {
+                jobId = ingestionJobService.submit(existingDocument.getKbId(), documentId);
             }
-        } catch (Exception e) {
-            log.error("处理 Markdown 文档失败: documentId={}", documentId, e);
-            // 不抛出异常，避免影响文档上传流程
+            log.info("文档重新上传成功: documentId={}, jobId={}", documentId, jobId);
+
+            return CreateDocumentResponse.builder()
+                    .documentId(documentId)
+                    .jobId(jobId)
+                    .build();
+        } catch (IOException e) {
+            log.error("文件保存失败", e);
+            throw new BizException("文件保存失败: " + e.getMessage());
         }
     }
 
+    @Override
+    public void deleteDocument(String documentId) {
+        Document document = documentMapper.selectById(documentId);
+        if (document == null) {
+            throw new BizException("文档不存在: " + documentId);
+        }
+
+        // 删除记录与登记清理任务在同一事务中提交，不会出现记录已删除而清理任务丢失的情况
+        transactionTemplate.executeWithoutResult(status -> {
+            int result = documentMapper.deleteById(documentId);
+            if (result <= 0) {
+                throw new BizException("删除文档失败");
+            }
+
+            // 取消尚未开始的解析任务，chunks 和文件由后台分批清理
+            ingestionJobMapper.cancelPending(documentId, null, "文档已删除");
+            storageCleanupService.scheduleDocumentCleanup(document.getKbId(), documentId);
+        });
+    }
+
     /**
      * 从文件名提取文件类型
      */
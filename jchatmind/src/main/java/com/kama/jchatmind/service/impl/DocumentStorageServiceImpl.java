@@ -7,10 +7,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.UUID;
 
 @Service
@@ -76,6 +79,40 @@ public class DocumentStorageServiceImpl implements DocumentStorageService {
         }
     }
 
+    @Override
+    public long deleteDirectory(String relativeDir) throws IOException {
+        Path basePath = Paths.get(baseStoragePath).toAbsolutePath().normalize();
+        Path dir = basePath.resolve(relativeDir).toAbsolutePath().normalize();
+        // 防止误删存储根目录之外或根目录本身
+        if (!dir.startsWith(basePath) || dir.equals(basePath)) {
+            throw new IllegalArgumentException("非法的目录路径: " + relativeDir);
+        }
+        if (!Files.exists(dir)) {
+            return 0;
+        }
+
+        long[] deletedBytes = {0};
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                deletedBytes[0] += attrs.size();
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path d, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(d);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        log.info("目录删除成功: {}, 释放 {} 字节", relativeDir, deletedBytes[0]);
+        return deletedBytes[0];
+    }
+
     @Override
     public Path getFilePath(String filePath) {
         return Paths.get(baseStoragePath, filePath);
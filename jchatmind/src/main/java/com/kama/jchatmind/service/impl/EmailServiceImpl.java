@@ -1,44 +1,207 @@
 package com.kama.jchatmind.service.impl;
 
+import com.kama.jchatmind.converter.EmailOutboxConverter;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.mail.MailBatchSender;
+import com.kama.jchatmind.mapper.EmailOutboxMapper;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.entity.EmailOutbox;
+import com.kama.jchatmind.model.vo.EmailOutboxVO;
 import com.kama.jchatmind.service.EmailService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Slf4j
 @Service
 public class EmailServiceImpl implements EmailService {
 
-    private final JavaMailSender mailSender;
+    private final EmailOutboxMapper emailOutboxMapper;
+    private final EmailOutboxConverter emailOutboxConverter;
+    private final MailBatchSender mailBatchSender;
+    private final MetricsRegistry metricsRegistry;
+    private final ThreadPoolTaskExecutor mailExecutor;
+
+    // 正在发送的批次数，用于按空闲线程数领取邮件
+    private final AtomicInteger runningBatches = new AtomicInteger();
 
     @Value("${spring.mail.username}")
     private String from;
 
-    public EmailServiceImpl(JavaMailSender mailSender) {
-        this.mailSender = mailSender;
+    @Value("${email.outbox.parallelism:1}")
+    private int parallelism;
+
+    // 每批邮件共用一个 SMTP 连接
+    @Value("${email.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${email.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    // 第 n 次失败后等待 retry-backoff-seconds * 2^(n-1)，不超过 max-backoff-seconds
+    @Value("${email.outbox.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    @Value("${email.outbox.max-backoff-seconds:3600}")
+    private long maxBackoffSeconds;
+
+    // SENDING 超过该时长未完成，视为 worker 已失效，重新领取（可能导致重复发送）
+    @Value("${email.outbox.stale-timeout-seconds:300}")
+    private long staleTimeoutSeconds;
+
+    public EmailServiceImpl(JavaMailSender mailSender,
+                            EmailOutboxMapper emailOutboxMapper,
+                            EmailOutboxConverter emailOutboxConverter,
+                            MetricsRegistry metricsRegistry,
+                            @Qualifier("mailExecutor") ThreadPoolTaskExecutor mailExecutor) {
+        this.mailBatchSender = new MailBatchSender(mailSender);
+        this.emailOutboxMapper = emailOutboxMapper;
+        this.emailOutboxConverter = emailOutboxConverter;
+        this.metricsRegistry = metricsRegistry;
+        this.mailExecutor = mailExecutor;
     }
 
     @Override
-    @Async
-    public void sendEmailAsync(String to, String subject, String content) {
+    public String submit(String to, String subject, String content, String agentId, String chatSessionId) {
+        LocalDateTime now = LocalDateTime.now();
+        // next_run_at 为空时由数据库取当前时间，与领取时比较的 NOW() 使用同一个时钟
+        EmailOutbox message = EmailOutbox.builder()
+                .agentId(agentId)
+                .chatSessionId(chatSessionId)
+                .recipient(to)
+                .subject(subject)
+                .content(content)
+                .status(Status.PENDING.name())
+                .attempts(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        int result = emailOutboxMapper.insert(message);
+        if (result <= 0) {
+            throw new BizException("提交邮件失败");
+        }
+        metricsRegistry.increment("email.outbox.submitted");
+        log.info("邮件已进入发件箱: messageId={}, 收件人: {}, 主题: {}", message.getId(), to, subject);
+        return message.getId();
+    }
+
+    @Override
+    public EmailOutboxVO getMessage(String messageId, String agentId, String chatSessionId) {
+        EmailOutbox message = emailOutboxMapper.selectById(messageId);
+        // 其他 Agent / 会话的邮件按不存在处理，不暴露收件人与内容
+        if (message == null
+                || !Objects.equals(message.getAgentId(), agentId)
+                || !Objects.equals(message.getChatSessionId(), chatSessionId)) {
+            throw new BizException("邮件不存在: " + messageId);
+        }
+        return emailOutboxConverter.toVO(message);
+    }
+
+    /**
+     * 定时从发件箱领取邮件，每个空闲线程领取一批，整批在同一个 SMTP 连接上发送
+     */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval-ms:2000}")
+    public void poll() {
         try {
-            // 创建邮件消息
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(to);
-            message.setSubject(subject);
-            message.setText(content);
-            message.setFrom(from);
+            int failed = emailOutboxMapper.failStale(staleTimeoutSeconds, maxAttempts, "发送超时未完成，已达最大尝试次数");
+            if (failed > 0) {
+                metricsRegistry.increment("email.outbox.failed", failed);
+                log.warn("{} 封邮件发送超时未完成且已达最大尝试次数，标记为失败", failed);
+            }
+        } catch (Exception e) {
+            log.warn("处理超时未完成的邮件失败: {}", e.getMessage());
+        }
+        int freeSlots = parallelism - runningBatches.get();
+        for (int i = 0; i < freeSlots; i++) {
+            List<EmailOutbox> batch;
+            try {
+                batch = emailOutboxMapper.claimBatch(batchSize, staleTimeoutSeconds, maxAttempts);
+            } catch (Exception e) {
+                log.warn("领取待发送邮件失败: {}", e.getMessage());
+                return;
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            runningBatches.incrementAndGet();
+            try {
+                mailExecutor.execute(() -> {
+                    try {
+                        sendBatch(batch);
+                    } finally {
+                        runningBatches.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                // 线程池拒绝，放回队列等待下次领取，这次领取不算一次尝试
+                runningBatches.decrementAndGet();
+                emailOutboxMapper.releaseClaim(batch.stream().map(EmailOutbox::getId).toList());
+                return;
+            }
+        }
+    }
 
-            // 发送邮件
-            mailSender.send(message);
+    private void sendBatch(List<EmailOutbox> batch) {
+        try {
+            List<SimpleMailMessage> mailMessages = batch.stream().map(this::toMailMessage).toList();
+            long start = System.currentTimeMillis();
+            Map<Integer, Exception> failures = mailBatchSender.send(mailMessages);
+            metricsRegistry.recordLatency("email.outbox.batch_latency", System.currentTimeMillis() - start);
 
-            log.info("异步发送邮件成功，收件人: {}, 主题: {}", to, subject);
+            List<String> sentIds = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                Exception failure = failures.get(i);
+                if (failure == null) {
+                    sentIds.add(batch.get(i).getId());
+                } else {
+                    onFailure(batch.get(i), failure);
+                }
+            }
+            if (!sentIds.isEmpty()) {
+                emailOutboxMapper.markSent(sentIds);
+                metricsRegistry.increment("email.outbox.sent", sentIds.size());
+            }
+            log.info("邮件批次发送完成: 共 {} 封, 成功 {} 封", batch.size(), sentIds.size());
         } catch (Exception e) {
-            log.error("异步发送邮件失败，收件人: {}, 主题: {}, 错误: {}", to, subject, e.getMessage(), e);
+            // 状态未能写回的邮件保持 SENDING，超时后重新领取
+            log.error("邮件批次处理失败: 共 {} 封", batch.size(), e);
         }
     }
-}
 
+    private void onFailure(EmailOutbox message, Exception e) {
+        boolean retry = message.getAttempts() < maxAttempts && !MailBatchSender.isPermanent(e);
+        emailOutboxMapper.markFailed(message.getId(),
+                retry ? Status.PENDING.name() : Status.FAILED.name(),
+                e.getMessage(),
+                retry ? backoffSeconds(message.getAttempts()) : null);
+        metricsRegistry.increment(retry ? "email.outbox.retry" : "email.outbox.failed");
+        log.warn("邮件发送失败: messageId={}, 收件人: {}, attempt={}, retry={}, 错误: {}",
+                message.getId(), message.getRecipient(), message.getAttempts(), retry, e.getMessage());
+    }
+
+    private long backoffSeconds(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(maxBackoffSeconds, retryBackoffSeconds << exponent);
+    }
+
+    private SimpleMailMessage toMailMessage(EmailOutbox outbox) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(outbox.getRecipient());
+        message.setSubject(outbox.getSubject());
+        message.setText(outbox.getContent());
+        message.setFrom(from);
+        return message;
+    }
+}
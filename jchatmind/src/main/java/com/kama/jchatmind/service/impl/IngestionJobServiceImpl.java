@@ -0,0 +1,390 @@
+package com.kama.jchatmind.service.impl;
+
+import com.kama.jchatmind.converter.ChunkBgeM3Converter;
+import com.kama.jchatmind.converter.DocumentConverter;
+import com.kama.jchatmind.converter.IngestionJobConverter;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.mapper.DocumentMapper;
+import com.kama.jchatmind.mapper.IngestionJobMapper;
+import com.kama.jchatmind.message.SseMessage;
+import com.kama.jchatmind.model.dto.ChunkBgeM3DTO;
+import com.kama.jchatmind.model.dto.DocumentDTO;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.model.entity.Document;
+import com.kama.jchatmind.model.entity.IngestionJob;
+import com.kama.jchatmind.model.response.GetIngestionJobResponse;
+import com.kama.jchatmind.model.vo.IngestionJobVO;
+import com.kama.jchatmind.rag.KnowledgeBaseVersions;
+import com.kama.jchatmind.rag.store.VectorStoreRouter;
+import com.kama.jchatmind.service.DocumentStorageService;
+import com.kama.jchatmind.service.IngestionJobService;
+import com.kama.jchatmind.service.MarkdownParserService;
+import com.kama.jchatmind.service.RagService;
+import com.kama.jchatmind.service.SseService;
+import com.kama.jchatmind.service.StorageCleanupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+public class IngestionJobServiceImpl implements IngestionJobService {
+
+    private final IngestionJobMapper ingestionJobMapper;
+    private final IngestionJobConverter ingestionJobConverter;
+    private final DocumentMapper documentMapper;
+    private final DocumentConverter documentConverter;
+    private final DocumentStorageService documentStorageService;
+    private final MarkdownParserService markdownParserService;
+    private final RagService ragService;
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final ChunkBgeM3Converter chunkBgeM3Converter;
+    private final KnowledgeBaseVersions knowledgeBaseVersions;
+    private final VectorStoreRouter vectorStoreRouter;
+    private final SseService sseService;
+    private final StorageCleanupService storageCleanupService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor ingestionExecutor;
+
+    // 未变化章节的进度每隔多少个章节写一次库
+    private static final int PROGRESS_REPORT_INTERVAL = 20;
+
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    // 正在执行的任务数，用于按空闲线程数领取任务
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    @Value("${ingestion.worker.parallelism:2}")
+    private int parallelism;
+
+    @Value("${ingestion.worker.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${ingestion.worker.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    // RUNNING 任务超过该时长没有进度更新，视为 worker 已失效，重新领取
+    @Value("${ingestion.worker.stale-timeout-seconds:600}")
+    private long staleTimeoutSeconds;
+
+    public IngestionJobServiceImpl(IngestionJobMapper ingestionJobMapper,
+                                   IngestionJobConverter ingestionJobConverter,
+                                   DocumentMapper documentMapper,
+                                   DocumentConverter documentConverter,
+                                   DocumentStorageService documentStorageService,
+                                   MarkdownParserService markdownParserService,
+                                   RagService ragService,
+                                   ChunkBgeM3Mapper chunkBgeM3Mapper,
+                                   ChunkBgeM3Converter chunkBgeM3Converter,
+                                   KnowledgeBaseVersions knowledgeBaseVersions,
+                                   VectorStoreRouter vectorStoreRouter,
+                                   SseService sseService,
+                                   StorageCleanupService storageCleanupService,
+                                   TransactionTemplate transactionTemplate,
+                                   @Qualifier("ingestionExecutor") ThreadPoolTaskExecutor ingestionExecutor) {
+        this.ingestionJobMapper = ingestionJobMapper;
+        this.ingestionJobConverter = ingestionJobConverter;
+        this.documentMapper = documentMapper;
+        this.documentConverter = documentConverter;
+        this.documentStorageService = documentStorageService;
+        this.markdownParserService = markdownParserService;
+        this.ragService = ragService;
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.chunkBgeM3Converter = chunkBgeM3Converter;
+        this.knowledgeBaseVersions = knowledgeBaseVersions;
+        this.vectorStoreRouter = vectorStoreRouter;
+        this.sseService = sseService;
+        this.storageCleanupService = storageCleanupService;
+        this.transactionTemplate = transactionTemplate;
+        this.ingestionExecutor = ingestionExecutor;
+    }
+
+    @Override
+    public String submit(String kbId, String documentId) {
+        LocalDateTime now = LocalDateTime.now();
+        IngestionJob job = IngestionJob.builder()
+                .kbId(kbId)
+                .docId(documentId)
+                .status(Status.PENDING.name())
+                .stage(Stage.QUEUED.name())
+                .totalSections(0)
+                .processedSections(0)
+                .attempts(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        int result = ingestionJobMapper.insert(job);
+        if (result <= 0) {
+            throw new BizException("创建文档解析任务失败");
+        }
+        log.info("文档解析任务已提交: jobId={}, kbId={}, documentId={}", job.getId(), kbId, documentId);
+        return job.getId();
+    }
+
+    @Override
+    public GetIngestionJobResponse getJob(String jobId) {
+        IngestionJob job = ingestionJobMapper.selectById(jobId);
+        if (job == null) {
+            throw new BizException("文档解析任务不存在: " + jobId);
+        }
+        return GetIngestionJobResponse.builder()
+                .job(ingestionJobConverter.toVO(job))
+                .build();
+    }
+
+    /**
+     * 定时领取任务，任务状态全部保存在数据库中，实例重启后未完成的任务会被重新领取并从断点继续
+     */
+    @Scheduled(fixedDelayString = "${ingestion.worker.poll-interval-ms:1000}")
+    public void poll() {
+        int freeSlots = parallelism - runningJobs.get();
+        if (freeSlots <= 0) {
+            return;
+        }
+        List<IngestionJob> jobs;
+        try {
+            jobs = ingestionJobMapper.claimRunnable(freeSlots, staleTimeoutSeconds);
+        } catch (Exception e) {
+            log.warn("领取文档解析任务失败: {}", e.getMessage());
+            return;
+        }
+        for (IngestionJob job : jobs) {
+            runningJobs.incrementAndGet();
+            try {
+                ingestionExecutor.execute(() -> {
+                    try {
+                        runJob(job);
+                    } finally {
+                        runningJobs.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                // 线程池拒绝，放回队列等待下次领取，这次领取不算一次尝试
+                runningJobs.decrementAndGet();
+                ingestionJobMapper.releaseClaim(job.getId());
+            }
+        }
+    }
+
+    private void runJob(IngestionJob job) {
+        String jobId = job.getId();
+        Progress progress = new Progress();
+        try {
+            log.info("开始处理文档解析任务: jobId={}, documentId={}, attempt={}", jobId, job.getDocId(), job.getAttempts());
+            processMarkdownDocument(job, progress);
+            ingestionJobMapper.markSucceeded(jobId);
+            progress.stage = Stage.COMPLETED;
+            publishProgress(job, progress, Status.SUCCEEDED, null, true);
+            log.info("文档解析任务完成: jobId={}", jobId);
+        } catch (Exception e) {
+            boolean retry = job.getAttempts() < maxAttempts && !(e instanceof BizException);
+            Long retryDelaySeconds = retry ? retryBackoffSeconds * job.getAttempts() : null;
+            ingestionJobMapper.markFailed(jobId, retry ? Status.PENDING.name() : Status.FAILED.name(),
+                    e.getMessage(), retryDelaySeconds);
+            publishProgress(job, progress, retry ? Status.PENDING : Status.FAILED, e.getMessage(), !retry);
+            log.error("文档解析任务失败: jobId={}, attempt={}, retry={}", jobId, job.getAttempts(), retry, e);
+        }
+    }
+
+    /**
+     * 处理 Markdown 文档，解析并生成 chunks
+     * 每个章节以内容哈希标识：与文档现有 chunk 哈希相同的章节直接复用，
+     * 只对新增或修改的章节做 embedding 并入库，最后删除已不存在的章节对应的 chunk。
+     * 重试或重启后已入库的章节会被哈希匹配到，不会重复 embedding。
+     */
+    private void processMarkdownDocument(IngestionJob job, Progress progress) throws Exception {
+        String jobId = job.getId();
+        Document document = documentMapper.selectById(job.getDocId());
+        if (document == null) {
+            throw new BizException("文档不存在: " + job.getDocId());
+        }
+        DocumentDTO documentDTO = documentConverter.toDTO(document);
+        if (documentDTO.getMetadata() == null || documentDTO.getMetadata().getFilePath() == null) {
+            throw new BizException("文档缺少文件路径: " + job.getDocId());
+        }
+
+        ingestionJobMapper.updateProgress(jobId, Stage.PARSING.name(), 0, null);
+        progress.stage = Stage.PARSING;
+        Path path = documentStorageService.getFilePath(documentDTO.getMetadata().getFilePath());
+        List<MarkdownParserService.MarkdownSection> sections;
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            sections = markdownParserService.parseMarkdown(inputStream);
+        }
+        if (sections.isEmpty()) {
+            log.warn("Markdown 文档解析后没有找到任何章节: documentId={}", job.getDocId());
+        }
+
+        // 现有 chunk：contentHash -> chunkId 列表（同一文档可能存在内容完全相同的章节）
+        Map<String, Deque<String>> existingChunks = new HashMap<>();
+        List<String> staleChunkIds = new ArrayList<>();
+        for (ChunkBgeM3 ref : chunkBgeM3Mapper.selectRefsByDocId(job.getDocId())) {
+            ChunkBgeM3DTO.MetaData metadata = chunkBgeM3Converter.toDTO(ref).getMetadata();
+            String hash = metadata != null ? metadata.getContentHash() : null;
+            if (hash == null) {
+                // 旧版本入库的 chunk 没有哈希，无法比对，全部重新生成
+                staleChunkIds.add(ref.getId());
+            } else {
+                existingChunks.computeIfAbsent(hash, k -> new ArrayDeque<>()).add(ref.getId());
+            }
+        }
+
+        ingestionJobMapper.updateProgress(jobId, Stage.EMBEDDING.name(), 0, sections.size());
+        progress.stage = Stage.EMBEDDING;
+        progress.processedSections = 0;
+        progress.totalSections = sections.size();
+        publishProgress(job, progress, Status.RUNNING, null, false);
+
+        int reused = 0;
+        int embedded = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            MarkdownParserService.MarkdownSection section = sections.get(i);
+            String title = section.getTitle();
+            String content = section.getContent() != null ? section.getContent() : "";
+            int processedSections = i + 1;
+
+            if (title == null || title.trim().isEmpty()) {
+                continue;
+            }
+
+            String contentHash = contentHash(title, content);
+            Deque<String> sameHashChunks = existingChunks.get(contentHash);
+            if (sameHashChunks != null && !sameHashChunks.isEmpty()) {
+                // 章节未变化，复用已有 chunk
+                sameHashChunks.poll();
+                reused++;
+                if (processedSections % PROGRESS_REPORT_INTERVAL == 0) {
+                    ingestionJobMapper.updateProgress(jobId, null, processedSections, null);
+                }
+                continue;
+            }
+
+            // 对标题进行 embedding（耗时操作，放在事务之外）
+            float[] embedding = ragService.embed(title);
+
+            ChunkBgeM3DTO.MetaData metadata = new ChunkBgeM3DTO.MetaData();
+            metadata.setTitle(title);
+            metadata.setContentHash(contentHash);
+            LocalDateTime now = LocalDateTime.now();
+            ChunkBgeM3 chunk = chunkBgeM3Converter.toEntity(ChunkBgeM3DTO.builder()
+                    .kbId(job.getKbId())
+                    .docId(job.getDocId())
+                    .content(content)
+                    .metadata(metadata)
+                    .embedding(embedding)
+                    .createdAt(now)
+                    .updatedAt(now)
+                    .build());
+
+            transactionTemplate.executeWithoutResult(status -> {
+                chunkBgeM3Mapper.insert(chunk);
+                ingestionJobMapper.updateProgress(jobId, null, processedSections, null);
+            });
+            vectorStoreRouter.onChunkInserted(job.getKbId(), job.getDocId(), chunk.getId(), embedding);
+            embedded++;
+            progress.processedSections = processedSections;
+            publishProgress(job, progress, Status.RUNNING, null, false);
+        }
+
+        // 新 chunk 全部入库后再删除已不存在的章节，保证更新过程中检索不会出现空结果
+        existingChunks.values().forEach(staleChunkIds::addAll);
+        for (int from = 0; from < staleChunkIds.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = staleChunkIds.subList(from, Math.min(from + DELETE_BATCH_SIZE, staleChunkIds.size()));
+            chunkBgeM3Mapper.deleteByIds(batch);
+            vectorStoreRouter.onChunksDeleted(job.getKbId(), batch);
+        }
+        // 整个任务只更新一次知识库版本号：逐个 chunk 更新会反复写同一行 knowledge_base，并让检索缓存在整个任务期间失效
+        if (embedded > 0 || !staleChunkIds.isEmpty()) {
+            knowledgeBaseVersions.bump(job.getKbId());
+        }
+        ingestionJobMapper.updateProgress(jobId, null, sections.size(), null);
+        progress.processedSections = sections.size();
+
+        // 解析期间文档被删除：清理期间可能写入的 chunk，避免留下孤儿向量
+        if (documentMapper.selectById(job.getDocId()) == null) {
+            storageCleanupService.scheduleDocumentCleanup(job.getKbId(), job.getDocId());
+            throw new BizException("文档在解析过程中被删除: " + job.getDocId());
+        }
+
+        log.info("Markdown 文档处理完成: documentId={}, 共 {} 个章节, 复用 {} 个, 新增 embedding {} 个, 删除 {} 个过期 chunk",
+                job.getDocId(), sections.size(), reused, embedded, staleChunkIds.size());
+    }
+
+    private static String contentHash(String title, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(title.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 如果前端订阅了该任务的 sse 连接，推送最新进度
+     * 进度由执行线程自己维护的计数构造，不回查数据库；没有订阅者时直接返回
+     */
+    private void publishProgress(IngestionJob job, Progress progress, Status status, String lastError, boolean done) {
+        if (!sseService.isConnected(job.getId())) {
+            return;
+        }
+        IngestionJobVO vo = IngestionJobVO.builder()
+                .id(job.getId())
+                .kbId(job.getKbId())
+                .docId(job.getDocId())
+                .status(status.name())
+                .stage(progress.stage.name())
+                .totalSections(progress.totalSections)
+                .processedSections(progress.processedSections)
+                .attempts(job.getAttempts())
+                .lastError(lastError)
+                .createdAt(job.getCreatedAt())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        SseMessage sseMessage = SseMessage.builder()
+                .type(SseMessage.Type.INGESTION_PROGRESS)
+                .payload(SseMessage.Payload.builder()
+                        .ingestionJob(vo)
+                        .statusText(vo.getStage() + " " + vo.getProcessedSections() + "/" + vo.getTotalSections())
+                        .done(done)
+                        .build())
+                .build();
+        try {
+            sseService.send(job.getId(), sseMessage);
+        } catch (Exception e) {
+            // 检查之后连接断开，emitter 出错时会自行移除，之后的进度不再推送
+            log.warn("推送解析进度失败: jobId={}, error={}", job.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 执行线程内的任务进度，与写入 ingestion_job 的进度保持一致
+     */
+    private static class Progress {
+        private Stage stage = Stage.QUEUED;
+        private Integer processedSections;
+        private Integer totalSections;
+    }
+}
@@ -3,6 +3,8 @@ package com.kama.jchatmind.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.kama.jchatmind.converter.KnowledgeBaseConverter;
 import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.mapper.DocumentMapper;
+import com.kama.jchatmind.mapper.IngestionJobMapper;
 import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
 import com.kama.jchatmind.model.dto.KnowledgeBaseDTO;
 import com.kama.jchatmind.model.entity.KnowledgeBase;
@@ -11,9 +13,15 @@ import com.kama.jchatmind.model.request.UpdateKnowledgeBaseRequest;
 import com.kama.jchatmind.model.response.CreateKnowledgeBaseResponse;
 import com.kama.jchatmind.model.response.GetKnowledgeBasesResponse;
 import com.kama.jchatmind.model.vo.KnowledgeBaseVO;
+import com.kama.jchatmind.rag.store.HnswVectorStore;
+import com.kama.jchatmind.rag.store.PgVectorStore;
+import com.kama.jchatmind.rag.store.VectorStoreRouter;
+import com.kama.jchatmind.service.ChunkPartitionService;
 import com.kama.jchatmind.service.KnowledgeBaseFacadeService;
+import com.kama.jchatmind.service.StorageCleanupService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -25,6 +33,12 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
 
     private final KnowledgeBaseMapper knowledgeBaseMapper;
     private final KnowledgeBaseConverter knowledgeBaseConverter;
+    private final DocumentMapper documentMapper;
+    private final IngestionJobMapper ingestionJobMapper;
+    private final StorageCleanupService storageCleanupService;
+    private final VectorStoreRouter vectorStoreRouter;
+    private final ChunkPartitionService chunkPartitionService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public GetKnowledgeBasesResponse getKnowledgeBases() {
@@ -46,6 +60,8 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
     @Override
     public CreateKnowledgeBaseResponse createKnowledgeBase(CreateKnowledgeBaseRequest request) {
         try {
+            checkVectorStore(request.getVectorStore());
+
             // 将 CreateKnowledgeBaseRequest 转换为 KnowledgeBaseDTO
             KnowledgeBaseDTO knowledgeBaseDTO = knowledgeBaseConverter.toDTO(request);
             
@@ -62,6 +78,8 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
             if (result <= 0) {
                 throw new BizException("创建知识库失败");
             }
+            chunkPartitionService.createPartition(knowledgeBase.getId());
+            vectorStoreRouter.onBackendChanged(knowledgeBase.getId());
             
             // 返回生成的 knowledgeBaseId
             return CreateKnowledgeBaseResponse.builder()
@@ -78,16 +96,26 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
         if (knowledgeBase == null) {
             throw new BizException("知识库不存在: " + knowledgeBaseId);
         }
-        
-        int result = knowledgeBaseMapper.deleteById(knowledgeBaseId);
-        if (result <= 0) {
-            throw new BizException("删除知识库失败");
-        }
+
+        // 删除记录与登记清理任务在同一事务中提交，不会出现记录已删除而清理任务丢失的情况
+        transactionTemplate.executeWithoutResult(status -> {
+            int result = knowledgeBaseMapper.deleteById(knowledgeBaseId);
+            if (result <= 0) {
+                throw new BizException("删除知识库失败");
+            }
+
+            // 删除知识库下的文档记录，chunks 和存储目录由后台分批清理
+            documentMapper.deleteByKbId(knowledgeBaseId);
+            ingestionJobMapper.cancelPending(null, knowledgeBaseId, "知识库已删除");
+            storageCleanupService.scheduleKnowledgeBaseCleanup(knowledgeBaseId);
+        });
     }
 
     @Override
     public void updateKnowledgeBase(String knowledgeBaseId, UpdateKnowledgeBaseRequest request) {
         try {
+            checkVectorStore(request.getVectorStore());
+
             // 查询现有的知识库
             KnowledgeBase existingKnowledgeBase = knowledgeBaseMapper.selectById(knowledgeBaseId);
             if (existingKnowledgeBase == null) {
@@ -113,8 +141,19 @@ public class KnowledgeBaseFacadeServiceImpl implements KnowledgeBaseFacadeServic
             if (result <= 0) {
                 throw new BizException("更新知识库失败");
             }
+            if (request.getVectorStore() != null) {
+                vectorStoreRouter.onBackendChanged(knowledgeBaseId);
+            }
         } catch (JsonProcessingException e) {
             throw new BizException("更新知识库时发生序列化错误: " + e.getMessage());
         }
     }
+
+    private void checkVectorStore(String vectorStore) {
+        if (vectorStore != null
+                && !PgVectorStore.NAME.equals(vectorStore)
+                && !HnswVectorStore.NAME.equals(vectorStore)) {
+            throw new BizException("不支持的检索后端: " + vectorStore);
+        }
+    }
 }
@@ -2,65 +2,129 @@ package com.kama.jchatmind.service.impl;
 
 import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
 import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.rag.KnowledgeBaseVersions;
+import com.kama.jchatmind.rag.RerankPipeline;
+import com.kama.jchatmind.rag.RetrievalCache;
+import com.kama.jchatmind.rag.embedding.EmbeddingCoalescer;
+import com.kama.jchatmind.rag.store.VectorHit;
+import com.kama.jchatmind.rag.store.VectorStore;
+import com.kama.jchatmind.rag.store.VectorStoreRouter;
 import com.kama.jchatmind.service.RagService;
-import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.Assert;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class RagServiceImpl implements RagService {
 
-    // 封装本地的模型调用
-    private final WebClient webClient;
+    // 合并并发请求后调用 rag.embedding.provider 选择的向量化后端
+    private final EmbeddingCoalescer embeddingCoalescer;
     private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final RetrievalCache retrievalCache;
+    private final KnowledgeBaseVersions knowledgeBaseVersions;
+    private final RerankPipeline rerankPipeline;
+    private final MetricsRegistry metricsRegistry;
+    private final VectorStoreRouter vectorStoreRouter;
 
-    public RagServiceImpl(WebClient.Builder builder, ChunkBgeM3Mapper chunkBgeM3Mapper) {
-        this.webClient = builder.baseUrl("http://localhost:11434").build();
-        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
-    }
+    // 最终返回给模型的片段数
+    @Value("${rag.top-k:3}")
+    private int topK;
 
-    @Data
-    private static class EmbeddingResponse {
-        private float[] embedding;
-    }
+    // 重排前从向量检索超量召回的候选数
+    @Value("${rag.rerank.candidates:20}")
+    private int candidateCount;
 
-    private float[] doEmbed(String text) {
-        EmbeddingResponse resp = webClient.post()
-                .uri("/api/embeddings")
-                .bodyValue(Map.of(
-                        "model", "bge-m3",
-                        "prompt", text
-                ))
-                .retrieve()
-                .bodyToMono(EmbeddingResponse.class)
-                .block();
-        Assert.notNull(resp, "Embedding response cannot be null");
-        return resp.getEmbedding();
+    public RagServiceImpl(EmbeddingCoalescer embeddingCoalescer,
+                          ChunkBgeM3Mapper chunkBgeM3Mapper,
+                          RetrievalCache retrievalCache,
+                          KnowledgeBaseVersions knowledgeBaseVersions,
+                          RerankPipeline rerankPipeline,
+                          MetricsRegistry metricsRegistry,
+                          VectorStoreRouter vectorStoreRouter) {
+        this.embeddingCoalescer = embeddingCoalescer;
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.retrievalCache = retrievalCache;
+        this.knowledgeBaseVersions = knowledgeBaseVersions;
+        this.rerankPipeline = rerankPipeline;
+        this.metricsRegistry = metricsRegistry;
+        this.vectorStoreRouter = vectorStoreRouter;
     }
 
     @Override
     public float[] embed(String text) {
-        return doEmbed(text);
+        return embeddingCoalescer.embed(text);
     }
 
     @Override
     public List<String> similaritySearch(String kbId, String title) {
-        String queryEmbedding = toPgVector(doEmbed(title));
-        List<ChunkBgeM3> chunks = chunkBgeM3Mapper.similaritySearch(kbId, queryEmbedding, 3);
-        return chunks.stream().map(ChunkBgeM3::getContent).toList();
+        // 查询文本完全相同，跳过 embedding 和向量检索
+        List<String> cachedIds = retrievalCache.getExact(kbId, title);
+        if (cachedIds != null) {
+            return loadContents(cachedIds);
+        }
+
+        long version = knowledgeBaseVersions.current(kbId);
+        float[] embedding = embeddingCoalescer.embed(title);
+
+        // 与近期语义相近的查询复用结果，跳过向量检索
+        cachedIds = retrievalCache.getSimilar(kbId, embedding);
+        if (cachedIds != null) {
+            return loadContents(cachedIds);
+        }
+
+        List<VectorHit> hits = search(kbId, title, embedding);
+        List<String> chunkIds = hits.stream().map(VectorHit::chunkId).toList();
+        retrievalCache.put(kbId, version, title, embedding, chunkIds);
+        if (hits.stream().allMatch(hit -> hit.content() != null)) {
+            return hits.stream().map(VectorHit::content).toList();
+        }
+        return loadContents(chunkIds);
+    }
+
+    private List<VectorHit> search(String kbId, String query, float[] embedding) {
+        long start = System.currentTimeMillis();
+        VectorStore store = vectorStoreRouter.storeFor(kbId);
+        int limit = rerankPipeline.isEnabled() ? Math.max(candidateCount, topK) : topK;
+        // 启用重排时超量召回带向量的候选，再在进程内重排
+        List<VectorHit> candidates = store.search(kbId, embedding, limit);
+        metricsRegistry.recordLatency("rag.search." + store.name(), System.currentTimeMillis() - start);
+        if (!rerankPipeline.isEnabled()) {
+            return candidates;
+        }
+        return rerankPipeline.rerank(query, embedding, candidates, this::withContents, topK);
+    }
+
+    // 为缺少内容的检索结果（内存后端只返回 ID 和向量）按主键补齐内容
+    private List<VectorHit> withContents(List<VectorHit> hits) {
+        if (hits.stream().allMatch(hit -> hit.content() != null)) {
+            return hits;
+        }
+        Map<String, String> contents = chunkBgeM3Mapper.selectByIds(hits.stream().map(VectorHit::chunkId).toList())
+                .stream()
+                .collect(Collectors.toMap(ChunkBgeM3::getId, ChunkBgeM3::getContent));
+        return hits.stream()
+                .map(hit -> new VectorHit(hit.chunkId(), hit.embedding(), hit.distance(), contents.get(hit.chunkId())))
+                .toList();
     }
 
-    private String toPgVector(float[] v) {
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < v.length; i++) {
-            sb.append(v[i]);
-            if (i < v.length - 1) sb.append(",");
+    // 按缓存中的 chunk ID 取回内容，保持原有的相似度顺序
+    private List<String> loadContents(List<String> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return List.of();
         }
-        sb.append("]");
-        return sb.toString();
+        Map<String, ChunkBgeM3> chunkMap = chunkBgeM3Mapper.selectByIds(chunkIds)
+                .stream()
+                .collect(Collectors.toMap(ChunkBgeM3::getId, Function.identity()));
+        return chunkIds.stream()
+                .map(chunkMap::get)
+                .filter(Objects::nonNull)
+                .map(ChunkBgeM3::getContent)
+                .toList();
     }
 }
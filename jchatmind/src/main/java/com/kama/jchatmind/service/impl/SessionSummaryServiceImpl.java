@@ -0,0 +1,266 @@
+package com.kama.jchatmind.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.kama.jchatmind.config.ChatClientRegistry;
+import com.kama.jchatmind.converter.AgentConverter;
+import com.kama.jchatmind.converter.ChatMessageConverter;
+import com.kama.jchatmind.converter.ChatSessionConverter;
+import com.kama.jchatmind.mapper.AgentMapper;
+import com.kama.jchatmind.mapper.ChatMessageMapper;
+import com.kama.jchatmind.mapper.ChatSessionMapper;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.model.dto.AgentDTO;
+import com.kama.jchatmind.model.dto.ChatMessageDTO;
+import com.kama.jchatmind.model.dto.ChatSessionDTO;
+import com.kama.jchatmind.model.entity.Agent;
+import com.kama.jchatmind.model.entity.ChatMessage;
+import com.kama.jchatmind.model.entity.ChatSession;
+import com.kama.jchatmind.service.SessionSummaryService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+@Slf4j
+public class SessionSummaryServiceImpl implements SessionSummaryService {
+
+    private static final String SUMMARY_SYSTEM_PROMPT = """
+            你负责维护一段对话的滚动摘要。
+            根据「已有摘要」和「新增对话」输出更新后的完整摘要，要求：
+            - 保留用户的目标、偏好、已确认的事实和结论、未完成的事项
+            - 保留工具调用得到的关键数据（数字、名称、路径等），省略过程性内容
+            - 使用简洁的中文要点，不要复述对话原文，不要添加摘要之外的说明
+            """;
+
+    private final ChatSessionMapper chatSessionMapper;
+    private final ChatSessionConverter chatSessionConverter;
+    private final ChatMessageMapper chatMessageMapper;
+    private final ChatMessageConverter chatMessageConverter;
+    private final AgentMapper agentMapper;
+    private final AgentConverter agentConverter;
+    private final ChatClientRegistry chatClientRegistry;
+    private final ThreadPoolTaskExecutor summaryExecutor;
+    private final MetricsRegistry metricsRegistry;
+
+    // 正在生成摘要的会话，同一会话同时只有一个任务
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    @Value("${agent.summary.enabled:true}")
+    private boolean enabled;
+
+    // 未合并的消息比上下文窗口（Agent 的 messageLength）多出这么多条后才生成摘要，避免每轮都调用模型
+    @Value("${agent.summary.min-batch-messages:10}")
+    private int minBatchMessages;
+
+    // 单次合并的消息条数上限，积压更多时分多次合并
+    @Value("${agent.summary.max-batch-messages:100}")
+    private int maxBatchMessages;
+
+    @Value("${agent.summary.max-summary-chars:1500}")
+    private int maxSummaryChars;
+
+    // 渲染给摘要模型时每条消息（尤其是工具输出）最多保留的字符数
+    @Value("${agent.summary.max-message-chars:500}")
+    private int maxMessageChars;
+
+    // 生成摘要使用的模型，为空时使用会话所属 Agent 的模型
+    @Value("${agent.summary.model:}")
+    private String summaryModel;
+
+    public SessionSummaryServiceImpl(ChatSessionMapper chatSessionMapper,
+                                     ChatSessionConverter chatSessionConverter,
+                                     ChatMessageMapper chatMessageMapper,
+                                     ChatMessageConverter chatMessageConverter,
+                                     AgentMapper agentMapper,
+                                     AgentConverter agentConverter,
+                                     ChatClientRegistry chatClientRegistry,
+                                     @Qualifier("summaryExecutor") ThreadPoolTaskExecutor summaryExecutor,
+                                     MetricsRegistry metricsRegistry) {
+        this.chatSessionMapper = chatSessionMapper;
+        this.chatSessionConverter = chatSessionConverter;
+        this.chatMessageMapper = chatMessageMapper;
+        this.chatMessageConverter = chatMessageConverter;
+        this.agentMapper = agentMapper;
+        this.agentConverter = agentConverter;
+        this.chatClientRegistry = chatClientRegistry;
+        this.summaryExecutor = summaryExecutor;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public ChatSessionDTO.MetaData getSummary(String sessionId) {
+        ChatSession chatSession = chatSessionMapper.selectById(sessionId);
+        if (chatSession == null) {
+            return null;
+        }
+        try {
+            ChatSessionDTO.MetaData metadata = chatSessionConverter.toDTO(chatSession).getMetadata();
+            return metadata != null && StringUtils.hasText(metadata.getSummary()) ? metadata : null;
+        } catch (JsonProcessingException e) {
+            log.warn("会话 metadata 解析失败，忽略摘要: sessionId={}", sessionId);
+            return null;
+        }
+    }
+
+    @Override
+    public void scheduleSummarize(String agentId, String sessionId) {
+        if (!enabled || !running.add(sessionId)) {
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    summarize(agentId, sessionId);
+                } catch (Exception e) {
+                    metricsRegistry.increment("agent.summary.error");
+                    log.error("生成会话摘要失败: sessionId={}", sessionId, e);
+                } finally {
+                    running.remove(sessionId);
+                }
+            });
+        } catch (RuntimeException e) {
+            // 线程池已满时跳过本次，下一轮回复结束后会再次检查
+            running.remove(sessionId);
+            log.warn("会话摘要任务提交失败: sessionId={}, error={}", sessionId, e.getMessage());
+        }
+    }
+
+    private void summarize(String agentId, String sessionId) throws JsonProcessingException {
+        ChatSession chatSession = chatSessionMapper.selectById(sessionId);
+        Agent agent = agentMapper.selectById(agentId);
+        if (chatSession == null || agent == null) {
+            return;
+        }
+        AgentDTO agentDTO = agentConverter.toDTO(agent);
+        // 窗口内的消息由 Agent 直接读取，只合并窗口之外的部分
+        int window = agentDTO.getChatOptions().getMessageLength();
+        ChatSessionDTO.MetaData metadata = chatSessionConverter.toDTO(chatSession).getMetadata();
+        if (metadata == null) {
+            metadata = new ChatSessionDTO.MetaData();
+        }
+
+        while (true) {
+            int pending = chatMessageMapper.countBySessionIdAfter(sessionId, metadata.getSummarizedUntil());
+            int evicted = pending - window;
+            if (evicted < minBatchMessages) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            // 多取一条用于判断边界处是否切断了工具调用
+            List<ChatMessage> candidates = chatMessageMapper.selectBySessionIdAfter(
+                    sessionId, metadata.getSummarizedUntil(), Math.min(evicted, maxBatchMessages) + 1);
+            List<ChatMessageDTO> batch = new ArrayList<>();
+            for (ChatMessage candidate : candidates) {
+                batch.add(chatMessageConverter.toDTO(candidate));
+            }
+            ChatMessageDTO next = batch.remove(batch.size() - 1);
+            trimToTurnBoundary(batch, next);
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            String summary = callSummaryModel(resolveModel(agent), metadata.getSummary(), batch);
+            metadata.setSummary(summary);
+            metadata.setSummarizedUntil(batch.get(batch.size() - 1).getCreatedAt());
+            metadata.setSummarizedMessages((metadata.getSummarizedMessages() == null ? 0 : metadata.getSummarizedMessages()) + batch.size());
+            saveMetadata(sessionId, metadata);
+
+            metricsRegistry.increment("agent.summary.runs");
+            metricsRegistry.increment("agent.summary.messages", batch.size());
+            metricsRegistry.recordLatency("agent.summary.latency", System.currentTimeMillis() - start);
+            log.info("会话摘要已更新: sessionId={}, merged={}, total={}, summaryChars={}",
+                    sessionId, batch.size(), metadata.getSummarizedMessages(), summary.length());
+        }
+    }
+
+    /**
+     * 摘要边界不能落在工具调用中间：批次末尾是带工具调用的 assistant 消息，或下一条是工具返回时，向前收缩
+     */
+    private void trimToTurnBoundary(List<ChatMessageDTO> batch, ChatMessageDTO next) {
+        while (!batch.isEmpty()) {
+            ChatMessageDTO last = batch.get(batch.size() - 1);
+            boolean lastHasToolCalls = last.getRole() == ChatMessageDTO.RoleType.ASSISTANT
+                    && last.getMetadata() != null
+                    && last.getMetadata().getToolCalls() != null
+                    && !last.getMetadata().getToolCalls().isEmpty();
+            if (!lastHasToolCalls && next.getRole() != ChatMessageDTO.RoleType.TOOL) {
+                return;
+            }
+            next = batch.remove(batch.size() - 1);
+        }
+    }
+
+    private String callSummaryModel(String model, String previousSummary, List<ChatMessageDTO> batch) {
+        ChatClient chatClient = chatClientRegistry.get(model);
+        if (chatClient == null) {
+            throw new IllegalStateException("未找到对应的 ChatClient: " + model);
+        }
+        String userPrompt = "【已有摘要】\n" + (StringUtils.hasText(previousSummary) ? previousSummary : "（无）")
+                + "\n\n【新增对话】\n" + render(batch)
+                + "\n\n请输出更新后的摘要，不超过 " + maxSummaryChars + " 字。";
+        String summary = chatClient.prompt()
+                .system(SUMMARY_SYSTEM_PROMPT)
+                .user(userPrompt)
+                .call()
+                .content();
+        if (!StringUtils.hasText(summary)) {
+            throw new IllegalStateException("摘要模型返回为空");
+        }
+        summary = summary.strip();
+        return summary.length() > maxSummaryChars ? summary.substring(0, maxSummaryChars) : summary;
+    }
+
+    private String render(List<ChatMessageDTO> batch) {
+        StringBuilder text = new StringBuilder();
+        for (ChatMessageDTO message : batch) {
+            switch (message.getRole()) {
+                case USER -> text.append("用户: ").append(clip(message.getContent())).append('\n');
+                case ASSISTANT -> {
+                    if (StringUtils.hasText(message.getContent())) {
+                        text.append("助手: ").append(clip(message.getContent())).append('\n');
+                    }
+                    if (message.getMetadata() != null && message.getMetadata().getToolCalls() != null) {
+                        for (AssistantMessage.ToolCall toolCall : message.getMetadata().getToolCalls()) {
+                            text.append("助手调用工具 ").append(toolCall.name())
+                                    .append(": ").append(clip(toolCall.arguments())).append('\n');
+                        }
+                    }
+                }
+                case TOOL -> text.append("工具返回: ").append(clip(message.getContent())).append('\n');
+                default -> {
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    private String clip(String content) {
+        if (content == null) {
+            return "";
+        }
+        return content.length() > maxMessageChars ? content.substring(0, maxMessageChars) + "…" : content;
+    }
+
+    private String resolveModel(Agent agent) {
+        return StringUtils.hasText(summaryModel) ? summaryModel : agent.getModel();
+    }
+
+    private void saveMetadata(String sessionId, ChatSessionDTO.MetaData metadata) throws JsonProcessingException {
+        // 只更新 metadata，不覆盖标题等其他字段
+        ChatSession update = chatSessionConverter.toEntity(ChatSessionDTO.builder()
+                .id(sessionId)
+                .metadata(metadata)
+                .build());
+        chatSessionMapper.updateById(update);
+    }
+}
@@ -60,4 +60,9 @@ public class SseServiceImpl implements SseService {
             throw new RuntimeException("No client found for chatSessionId: " + chatSessionId);
         }
     }
+
+    @Override
+    public boolean isConnected(String chatSessionId) {
+        return clients.containsKey(chatSessionId);
+    }
 }
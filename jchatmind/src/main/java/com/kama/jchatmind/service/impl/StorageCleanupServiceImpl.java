@@ -0,0 +1,310 @@
+package com.kama.jchatmind.service.impl;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.mapper.StorageCleanupJobMapper;
+import com.kama.jchatmind.model.entity.StorageCleanupJob;
+import com.kama.jchatmind.model.response.GetCleanupReportsResponse;
+import com.kama.jchatmind.model.vo.CleanupReportVO;
+import com.kama.jchatmind.rag.KnowledgeBaseVersions;
+import com.kama.jchatmind.rag.store.VectorStoreRouter;
+import com.kama.jchatmind.service.ChunkPartitionService;
+import com.kama.jchatmind.service.DocumentStorageService;
+import com.kama.jchatmind.service.StorageCleanupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+@Service
+@Slf4j
+public class StorageCleanupServiceImpl implements StorageCleanupService {
+
+    private static final int MAX_REPORTS = 50;
+
+    // 分批删除期间刷新任务心跳的间隔
+    private static final long HEARTBEAT_INTERVAL_MS = 30_000;
+
+    private final StorageCleanupJobMapper storageCleanupJobMapper;
+    private final ChunkBgeM3Mapper chunkBgeM3Mapper;
+    private final DocumentStorageService documentStorageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ThreadPoolTaskExecutor cleanupExecutor;
+    private final KnowledgeBaseVersions knowledgeBaseVersions;
+    private final VectorStoreRouter vectorStoreRouter;
+    private final ChunkPartitionService chunkPartitionService;
+
+    // 最近的清理报告
+    private final Deque<CleanupReportVO> reports = new ArrayDeque<>();
+
+    // 各表（启用分区时为各分区）距离上次 VACUUM 累计删除的 chunk 行数
+    private final ConcurrentMap<String, AtomicLong> deletedSinceVacuum = new ConcurrentHashMap<>();
+
+    // 正在执行的清理任务数，cleanupExecutor 为单线程，同时最多执行一个
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    // 每批删除的行数，每批一个独立的短事务
+    @Value("${storage.cleanup.batch-size:1000}")
+    private int batchSize;
+
+    // 两批之间的停顿，给在线的检索和写入让出 IO
+    @Value("${storage.cleanup.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    // 累计删除超过该行数后执行一次 VACUUM (ANALYZE)，0 表示不执行
+    @Value("${storage.cleanup.vacuum-threshold:20000}")
+    private long vacuumThreshold;
+
+    @Value("${storage.cleanup.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${storage.cleanup.retry-backoff-seconds:60}")
+    private long retryBackoffSeconds;
+
+    // RUNNING 任务超过该时长没有心跳，视为 worker 已失效，重新领取
+    @Value("${storage.cleanup.stale-timeout-seconds:600}")
+    private long staleTimeoutSeconds;
+
+    public StorageCleanupServiceImpl(StorageCleanupJobMapper storageCleanupJobMapper,
+                                     ChunkBgeM3Mapper chunkBgeM3Mapper,
+                                     DocumentStorageService documentStorageService,
+                                     JdbcTemplate jdbcTemplate,
+                                     @Qualifier("cleanupExecutor") ThreadPoolTaskExecutor cleanupExecutor,
+                                     KnowledgeBaseVersions knowledgeBaseVersions,
+                                     VectorStoreRouter vectorStoreRouter,
+                                     ChunkPartitionService chunkPartitionService) {
+        this.storageCleanupJobMapper = storageCleanupJobMapper;
+        this.chunkBgeM3Mapper = chunkBgeM3Mapper;
+        this.documentStorageService = documentStorageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cleanupExecutor = cleanupExecutor;
+        this.knowledgeBaseVersions = knowledgeBaseVersions;
+        this.vectorStoreRouter = vectorStoreRouter;
+        this.chunkPartitionService = chunkPartitionService;
+    }
+
+    @Override
+    public void scheduleDocumentCleanup(String kbId, String documentId) {
+        knowledgeBaseVersions.bump(kbId);
+        // 内存索引立即摘除，不必等表中的行分批删完
+        vectorStoreRouter.onDocumentDeleted(kbId, documentId);
+        insertJob(Target.DOCUMENT, kbId, documentId);
+    }
+
+    @Override
+    public void scheduleKnowledgeBaseCleanup(String kbId) {
+        knowledgeBaseVersions.bump(kbId);
+        vectorStoreRouter.onKnowledgeBaseDeleted(kbId);
+        insertJob(Target.KNOWLEDGE_BASE, kbId, null);
+    }
+
+    @Override
+    public GetCleanupReportsResponse getRecentReports() {
+        synchronized (reports) {
+            return GetCleanupReportsResponse.builder()
+                    .reports(reports.toArray(new CleanupReportVO[0]))
+                    .build();
+        }
+    }
+
+    private void insertJob(Target target, String kbId, String documentId) {
+        LocalDateTime now = LocalDateTime.now();
+        StorageCleanupJob job = StorageCleanupJob.builder()
+                .target(target.name())
+                .kbId(kbId)
+                .docId(documentId)
+                .status(Status.PENDING.name())
+                .attempts(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+        if (storageCleanupJobMapper.insert(job) <= 0) {
+            throw new BizException("创建存储清理任务失败");
+        }
+        log.info("存储清理任务已提交: jobId={}, target={}, kbId={}, documentId={}", job.getId(), target, kbId, documentId);
+    }
+
+    /**
+     * 定时领取清理任务，任务保存在数据库中，实例重启后未完成的任务会被重新领取；
+     * 清理是幂等的，重新执行只会删除剩下的 chunk 和文件
+     */
+    @Scheduled(fixedDelayString = "${storage.cleanup.poll-interval-ms:2000}")
+    public void poll() {
+        int freeSlots = cleanupExecutor.getMaxPoolSize() - runningJobs.get();
+        if (freeSlots <= 0) {
+            return;
+        }
+        List<StorageCleanupJob> jobs;
+        try {
+            jobs = storageCleanupJobMapper.claimRunnable(freeSlots, staleTimeoutSeconds);
+        } catch (Exception e) {
+            log.warn("领取存储清理任务失败: {}", e.getMessage());
+            return;
+        }
+        for (StorageCleanupJob job : jobs) {
+            runningJobs.incrementAndGet();
+            try {
+                cleanupExecutor.execute(() -> {
+                    try {
+                        runJob(job);
+                    } finally {
+                        runningJobs.decrementAndGet();
+                    }
+                });
+            } catch (Exception e) {
+                // 线程池拒绝，放回队列等待下次领取，这次领取不算一次尝试
+                runningJobs.decrementAndGet();
+                storageCleanupJobMapper.releaseClaim(job.getId());
+            }
+        }
+    }
+
+    private void runJob(StorageCleanupJob job) {
+        String kbId = job.getKbId();
+        String error;
+        if (Target.KNOWLEDGE_BASE.name().equals(job.getTarget())) {
+            // 重启后内存索引可能从表中重新加载了待清理的 chunk，执行时再摘除一次
+            vectorStoreRouter.onKnowledgeBaseDeleted(kbId);
+            error = runCleanup(
+                    job.getId(),
+                    CleanupReportVO.builder().target(job.getTarget()).kbId(kbId),
+                    kbId,
+                    "chunk_bge_m3",
+                    () -> chunkPartitionService.dropPartition(kbId),
+                    () -> chunkBgeM3Mapper.deleteBatchByKbId(kbId, batchSize),
+                    kbId
+            );
+        } else {
+            String documentId = job.getDocId();
+            vectorStoreRouter.onDocumentDeleted(kbId, documentId);
+            String table = chunkPartitionService.tableFor(kbId);
+            error = runCleanup(
+                    job.getId(),
+                    CleanupReportVO.builder().target(job.getTarget()).kbId(kbId).docId(documentId),
+                    kbId,
+                    table,
+                    null,
+                    () -> chunkBgeM3Mapper.deleteBatchByDocId(table, documentId, batchSize),
+                    kbId + "/" + documentId
+            );
+        }
+
+        if (error == null) {
+            storageCleanupJobMapper.markSucceeded(job.getId());
+            return;
+        }
+        boolean retry = job.getAttempts() < maxAttempts;
+        storageCleanupJobMapper.markFailed(job.getId(),
+                retry ? Status.PENDING.name() : Status.FAILED.name(),
+                error,
+                retry ? retryBackoffSeconds * job.getAttempts() : null);
+        log.warn("存储清理任务失败: jobId={}, attempt={}, retry={}, 错误: {}", job.getId(), job.getAttempts(), retry, error);
+    }
+
+    /**
+     * @param table         chunk 所在的表，用于 VACUUM
+     * @param dropPartition 删除独立分区，返回删除的行数；返回 -1 或为 null 时走分批删除
+     * @return 失败原因，成功时为 null
+     */
+    private String runCleanup(String jobId, CleanupReportVO.CleanupReportVOBuilder report, String kbId, String table,
+                              LongSupplier dropPartition, IntSupplier deleteBatch, String relativeDir) {
+        long start = System.currentTimeMillis();
+        report.startedAt(LocalDateTime.now());
+        long deletedChunks = 0;
+        int batches = 0;
+        String error = null;
+        long lastHeartbeat = start;
+        try {
+            long dropped = dropPartition != null ? dropPartition.getAsLong() : -1;
+            if (dropped >= 0) {
+                // 删除分区直接释放整张表和索引的空间，不产生死元组，无需 VACUUM
+                deletedChunks = dropped;
+                report.droppedPartition(true).deletedChunks(deletedChunks).batches(0).vacuumed(false);
+            } else {
+                // 分批删除 chunk，直到某一批不满
+                int deleted;
+                do {
+                    deleted = deleteBatch.getAsInt();
+                    deletedChunks += deleted;
+                    batches++;
+                    if (System.currentTimeMillis() - lastHeartbeat >= HEARTBEAT_INTERVAL_MS) {
+                        storageCleanupJobMapper.heartbeat(jobId);
+                        lastHeartbeat = System.currentTimeMillis();
+                    }
+                    if (deleted >= batchSize && batchPauseMs > 0) {
+                        Thread.sleep(batchPauseMs);
+                    }
+                } while (deleted >= batchSize);
+                // 分区因等锁超时没能删除时，此时分区已清空，再尝试删除一次空分区，仍失败时保留空表
+                boolean droppedEmpty = dropPartition != null && dropPartition.getAsLong() >= 0;
+                report.droppedPartition(droppedEmpty).deletedChunks(deletedChunks).batches(batches);
+            }
+            knowledgeBaseVersions.bump(kbId);
+
+            // 删除存储目录
+            report.deletedFileBytes(documentStorageService.deleteDirectory(relativeDir));
+
+            if (dropped < 0) {
+                vacuumIfNeeded(table, deletedChunks, report);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "清理被中断";
+            report.deletedChunks(deletedChunks).batches(batches).error(error);
+        } catch (Exception e) {
+            log.error("存储清理失败: dir={}", relativeDir, e);
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            report.deletedChunks(deletedChunks).batches(batches).error(error);
+        }
+
+        CleanupReportVO result = report.elapsedMs(System.currentTimeMillis() - start).build();
+        log.info("存储清理完成: {}", result);
+        synchronized (reports) {
+            reports.addFirst(result);
+            while (reports.size() > MAX_REPORTS) {
+                reports.removeLast();
+            }
+        }
+        return error;
+    }
+
+    /**
+     * 普通 VACUUM 不会阻塞读写（只持有 SHARE UPDATE EXCLUSIVE 锁），回收死元组空间供后续写入复用，
+     * 同时 ANALYZE 更新统计信息，避免大量删除后查询计划失真
+     */
+    private void vacuumIfNeeded(String table, long deletedChunks, CleanupReportVO.CleanupReportVOBuilder report) {
+        AtomicLong counter = deletedSinceVacuum.computeIfAbsent(table, k -> new AtomicLong());
+        long pending = counter.addAndGet(deletedChunks);
+        if (vacuumThreshold <= 0 || pending < vacuumThreshold) {
+            report.vacuumed(false);
+            return;
+        }
+        counter.set(0);
+        // 启用分区时只 VACUUM 对应分区；分区表父表本身不占空间，统计时把各分区一并计入
+        Long before = relationSize(table);
+        jdbcTemplate.execute("VACUUM (ANALYZE) " + table);
+        Long after = relationSize(table);
+        report.vacuumed(true).tableBytesBefore(before).tableBytesAfter(after);
+    }
+
+    private Long relationSize(String table) {
+        return jdbcTemplate.queryForObject(
+                "SELECT pg_total_relation_size(CAST(? AS regclass)) + COALESCE((SELECT SUM(pg_total_relation_size(inhrelid)) "
+                        + "FROM pg_inherits WHERE inhparent = CAST(? AS regclass)), 0)",
+                Long.class, table, table);
+    }
+}
@@ -0,0 +1,86 @@
+-- 将 chunk_bge_m3 迁移为按 kb_id 的 LIST 分区表（storage.partitioning.enabled）
+-- 每个知识库一个分区 chunk_bge_m3_kb_<去掉连字符的 kb_id>，新知识库的分区由应用在创建时自动建立；
+-- 未建分区的知识库落入 DEFAULT 分区
+-- 在分区表父表上定义的索引会自动在每个分区上各建一份，向量检索只扫描本知识库的索引
+-- 迁移期间需停止写入；执行完成并确认数据无误后再删除 chunk_bge_m3_legacy
+
+BEGIN;
+
+ALTER TABLE chunk_bge_m3 RENAME TO chunk_bge_m3_legacy;
+
+-- 旧表的索引随表改名后仍保留原名，先加上 _legacy 后缀，避免与下面新建的同名索引冲突
+DO
+$$
+    DECLARE
+        idx record;
+    BEGIN
+        FOR idx IN SELECT indexname
+                   FROM pg_indexes
+                   WHERE schemaname = current_schema()
+                     AND tablename = 'chunk_bge_m3_legacy'
+            LOOP
+                EXECUTE format('ALTER INDEX %I RENAME TO %I', idx.indexname, left(idx.indexname, 56) || '_legacy');
+            END LOOP;
+    END
+$$;
+
+CREATE TABLE chunk_bge_m3
+(
+    id         uuid      NOT NULL DEFAULT gen_random_uuid(),
+    kb_id      uuid      NOT NULL,
+    doc_id     uuid      NOT NULL,
+    content    text,
+    metadata   jsonb,
+    embedding  vector(1024),
+    created_at timestamp NOT NULL DEFAULT NOW(),
+    updated_at timestamp NOT NULL DEFAULT NOW(),
+    -- 分区表的主键必须包含分区键
+    PRIMARY KEY (kb_id, id)
+) PARTITION BY LIST (kb_id);
+
+CREATE TABLE chunk_bge_m3_default PARTITION OF chunk_bge_m3 DEFAULT;
+
+CREATE INDEX idx_chunk_bge_m3_id ON chunk_bge_m3 (id);
+CREATE INDEX idx_chunk_bge_m3_doc_id ON chunk_bge_m3 (doc_id);
+CREATE INDEX idx_chunk_bge_m3_embedding ON chunk_bge_m3 USING hnsw (embedding vector_l2_ops);
+
+-- 执行过 sql/chunk_quantization.sql 时，在分区表上重建量化索引（与该脚本中的定义一致），
+-- 否则 quantization 为 halfvec / binary 时的检索会顺序扫描每个分区
+DO
+$$
+    BEGIN
+        IF to_regclass('idx_chunk_bge_m3_embedding_halfvec_legacy') IS NOT NULL THEN
+            CREATE INDEX idx_chunk_bge_m3_embedding_halfvec
+                ON chunk_bge_m3 USING hnsw ((embedding::halfvec(1024)) halfvec_l2_ops);
+        END IF;
+        IF to_regclass('idx_chunk_bge_m3_embedding_binary_legacy') IS NOT NULL THEN
+            CREATE INDEX idx_chunk_bge_m3_embedding_binary
+                ON chunk_bge_m3 USING hnsw ((binary_quantize(embedding)::bit(1024)) bit_hamming_ops);
+        END IF;
+    END
+$$;
+
+-- 为已有知识库建立分区
+DO
+$$
+    DECLARE
+        kb record;
+    BEGIN
+        FOR kb IN SELECT id FROM knowledge_base
+            LOOP
+                EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF chunk_bge_m3 FOR VALUES IN (%L)',
+                               'chunk_bge_m3_kb_' || replace(kb.id::text, '-', ''), kb.id);
+            END LOOP;
+    END
+$$;
+
+INSERT INTO chunk_bge_m3 (id, kb_id, doc_id, content, metadata, embedding, created_at, updated_at)
+SELECT id, kb_id, doc_id, content, metadata, embedding, created_at, updated_at
+FROM chunk_bge_m3_legacy;
+
+COMMIT;
+
+ANALYZE chunk_bge_m3;
+
+-- 确认无误后执行：
+-- DROP TABLE chunk_bge_m3_legacy;
@@ -0,0 +1,12 @@
+-- chunk_bge_m3 量化索引（rag.vector-store.pgvector.quantization）
+-- 表中仍保留全精度 embedding 用于重新打分，量化只作用于 ANN 索引，索引体积分别缩小约 2 倍（halfvec）和 32 倍（binary）
+-- 需要 pgvector >= 0.7.0；维度需与 rag.embedding.dimension 一致（bge-m3 为 1024）
+-- 迁移为分区表（sql/chunk_partitioning.sql）之前建立的量化索引由迁移脚本在分区表上重建；迁移后再启用量化时直接执行本脚本即可
+
+-- halfvec：半精度索引
+CREATE INDEX IF NOT EXISTS idx_chunk_bge_m3_embedding_halfvec
+    ON chunk_bge_m3 USING hnsw ((embedding::halfvec(1024)) halfvec_l2_ops);
+
+-- binary：二值量化索引，按汉明距离召回
+CREATE INDEX IF NOT EXISTS idx_chunk_bge_m3_embedding_binary
+    ON chunk_bge_m3 USING hnsw ((binary_quantize(embedding)::bit(1024)) bit_hamming_ops);
@@ -0,0 +1,19 @@
+-- 邮件发件箱：sendEmail 工具提交的邮件先入库，由后台 worker 分批发送
+CREATE TABLE IF NOT EXISTS email_outbox
+(
+    id              uuid PRIMARY KEY     DEFAULT gen_random_uuid(),
+    agent_id        uuid,
+    chat_session_id uuid,
+    recipient       varchar(320) NOT NULL,
+    subject         text         NOT NULL,
+    content         text         NOT NULL,
+    status          varchar(16)  NOT NULL DEFAULT 'PENDING',
+    attempts        integer      NOT NULL DEFAULT 0,
+    last_error      text,
+    next_run_at     timestamp    NOT NULL DEFAULT NOW(),
+    sent_at         timestamp,
+    created_at      timestamp    NOT NULL DEFAULT NOW(),
+    updated_at      timestamp    NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_email_outbox_runnable ON email_outbox (status, next_run_at);
@@ -0,0 +1,19 @@
+-- 文档异步解析任务表
+CREATE TABLE IF NOT EXISTS ingestion_job
+(
+    id                 uuid PRIMARY KEY     DEFAULT gen_random_uuid(),
+    kb_id              uuid        NOT NULL,
+    doc_id             uuid        NOT NULL,
+    status             varchar(16) NOT NULL DEFAULT 'PENDING',
+    stage              varchar(16) NOT NULL DEFAULT 'QUEUED',
+    total_sections     integer     NOT NULL DEFAULT 0,
+    processed_sections integer     NOT NULL DEFAULT 0,
+    attempts           integer     NOT NULL DEFAULT 0,
+    last_error         text,
+    next_run_at        timestamp   NOT NULL DEFAULT NOW(),
+    created_at         timestamp   NOT NULL DEFAULT NOW(),
+    updated_at         timestamp   NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_ingestion_job_runnable ON ingestion_job (status, next_run_at);
+CREATE INDEX IF NOT EXISTS idx_ingestion_job_doc_id ON ingestion_job (doc_id);
@@ -0,0 +1,4 @@
+-- 知识库内容版本号（KnowledgeBaseVersions），chunk 写入或删除时递增
+-- 保存在数据库中，多实例部署时一个实例的写入能让其他实例的检索缓存在 rag.cache.version-refresh-ms 内失效
+ALTER TABLE knowledge_base
+    ADD COLUMN IF NOT EXISTS content_version bigint NOT NULL DEFAULT 0;
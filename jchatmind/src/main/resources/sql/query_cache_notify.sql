@@ -0,0 +1,76 @@
+-- 表变更通知（agent.tools.database.cache.listen.enabled）
+-- 只在 agent.tools.database.allowed-tables 列出的表上建立语句级触发器，INSERT / UPDATE / DELETE / TRUNCATE 后
+-- 以表名为 payload 向 jchatmind_table_changed 频道发送通知，TableChangeListener 收到后使 databaseQuery 的相关缓存失效
+-- NOTIFY 在提交时需要获取一把全局锁，聊天记录、chunk、任务队列、发件箱这类高频写入的表不应加入 allowed-tables
+-- 同一事务内对同一张表的多次通知会被 PostgreSQL 合并为一条，批量写入不会产生大量通知
+--
+-- 本脚本只创建函数（可重复执行），触发器由 TableChangeListener 每次连接时调用
+-- jchatmind_sync_table_notify(allowed-tables) 同步：不在列表中的表上的触发器（包括旧版本脚本在所有表上建立的）会被删除，
+-- 已存在且正确的触发器保持不动
+-- 未启用监听但执行过旧版本脚本的库，可手动执行 SELECT jchatmind_sync_table_notify('{}') 删除全部触发器
+-- 分区表：语句级触发器不会从父表继承，直接写分区的语句（如 ChunkBgeM3Mapper 中的 ${table}）也不会触发父表的触发器，
+-- 因此父表和每个现有分区各建一个触发器，payload 统一为父表名；之后新建的分区在下一次同步（重连或 resync-seconds）时补上
+
+CREATE OR REPLACE FUNCTION jchatmind_notify_table_changed() RETURNS trigger AS
+$$
+BEGIN
+    PERFORM pg_notify('jchatmind_table_changed', COALESCE(TG_ARGV[0], TG_TABLE_NAME));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- 应当建有触发器的表（allowed-tables 中的表及其所有分区）及对应的 payload（父表名）
+-- pg_partition_tree 对普通表只返回表本身，对分区表返回父表及所有层级的分区
+CREATE OR REPLACE FUNCTION jchatmind_notify_targets(tables text[])
+    RETURNS TABLE
+            (
+                relid  oid,
+                parent text
+            )
+AS
+$$
+SELECT pt.relid, p.relname::text
+FROM pg_class p
+         JOIN pg_namespace n ON n.oid = p.relnamespace
+         CROSS JOIN LATERAL pg_partition_tree(p.oid) pt
+WHERE n.nspname = 'public'
+  AND p.relkind IN ('r', 'p')
+  AND lower(p.relname) = ANY (SELECT lower(t) FROM unnest(tables) t)
+$$ LANGUAGE sql STABLE;
+
+-- 与 pg_trigger 比对后只删除多余的、只创建缺少的触发器：DROP / CREATE TRIGGER 需要表上的排他锁，
+-- 触发器没有变化时不动任何表，定期同步不会阻塞这些表的读写
+-- tgargs 中每个参数以 \0 结尾，payload 不同（如分区改挂到了别的父表）的触发器会删除后重建
+-- 返回同步后已建有触发器的表数
+CREATE OR REPLACE FUNCTION jchatmind_sync_table_notify(tables text[]) RETURNS integer AS
+$$
+DECLARE
+    tbl     record;
+    targets integer := 0;
+BEGIN
+    FOR tbl IN SELECT t.tgrelid::regclass AS rel
+               FROM pg_trigger t
+               WHERE t.tgname = 'jchatmind_notify_changed'
+                 AND NOT EXISTS (SELECT 1
+                                 FROM jchatmind_notify_targets(tables) d
+                                 WHERE d.relid = t.tgrelid
+                                   AND t.tgargs = convert_to(d.parent, 'UTF8') || '\x00'::bytea)
+        LOOP
+            EXECUTE format('DROP TRIGGER IF EXISTS jchatmind_notify_changed ON %s', tbl.rel);
+        END LOOP;
+
+    FOR tbl IN SELECT d.relid::regclass AS rel, d.parent
+               FROM jchatmind_notify_targets(tables) d
+               WHERE NOT EXISTS (SELECT 1
+                                 FROM pg_trigger t
+                                 WHERE t.tgrelid = d.relid
+                                   AND t.tgname = 'jchatmind_notify_changed')
+        LOOP
+            EXECUTE format('CREATE TRIGGER jchatmind_notify_changed AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON %s ' ||
+                           'FOR EACH STATEMENT EXECUTE FUNCTION jchatmind_notify_table_changed(%L)', tbl.rel, tbl.parent);
+        END LOOP;
+
+    SELECT count(*) INTO targets FROM jchatmind_notify_targets(tables);
+    RETURN targets;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,17 @@
+-- 文档 / 知识库删除后的清理任务表（StorageCleanupServiceImpl）
+-- 与删除文档 / 知识库记录在同一事务中写入，实例重启或崩溃后由 worker 重新领取，不会留下无人清理的 chunk 和文件
+CREATE TABLE IF NOT EXISTS storage_cleanup_job
+(
+    id          uuid PRIMARY KEY     DEFAULT gen_random_uuid(),
+    target      varchar(16) NOT NULL,
+    kb_id       uuid        NOT NULL,
+    doc_id      uuid,
+    status      varchar(16) NOT NULL DEFAULT 'PENDING',
+    attempts    integer     NOT NULL DEFAULT 0,
+    last_error  text,
+    next_run_at timestamp   NOT NULL DEFAULT NOW(),
+    created_at  timestamp   NOT NULL DEFAULT NOW(),
+    updated_at  timestamp   NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_storage_cleanup_job_runnable ON storage_cleanup_job (status, next_run_at);
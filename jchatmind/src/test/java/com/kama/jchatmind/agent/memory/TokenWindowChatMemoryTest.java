@@ -0,0 +1,70 @@
+package com.kama.jchatmind.agent.memory;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TokenWindowChatMemory 工具输出截断测试
+ */
+public class TokenWindowChatMemoryTest {
+
+    private static final int MAX_TOOL_OUTPUT_TOKENS = 200;
+
+    private final TokenWindowChatMemory memory = TokenWindowChatMemory.builder()
+            .maxToolOutputTokens(MAX_TOOL_OUTPUT_TOKENS)
+            .build();
+
+    @Test
+    public void testTruncatedOutputWithinBudget() {
+        memory.add("c", conversation(largeOutput()));
+
+        String data = toolOutput(memory.get("c"));
+        assertTrue(data.contains("工具输出过长"));
+        assertTrue(TokenEstimator.estimate(data) <= MAX_TOOL_OUTPUT_TOKENS,
+                "截断结果含省略说明不应超出预算: " + TokenEstimator.estimate(data));
+    }
+
+    @Test
+    public void testReAddedHistoryNotTruncatedAgain() {
+        memory.add("c", conversation(largeOutput()));
+        List<Message> history = memory.get("c");
+        String once = toolOutput(history);
+
+        // Agent 每一步都会清空记忆后重新写入完整历史
+        memory.clear("c");
+        memory.add("c", history);
+
+        assertEquals(once, toolOutput(memory.get("c")));
+    }
+
+    private static List<Message> conversation(String output) {
+        AssistantMessage call = AssistantMessage.builder()
+                .content("")
+                .toolCalls(List.of(new AssistantMessage.ToolCall("1", "function", "databaseQuery", "{}")))
+                .build();
+        ToolResponseMessage response = ToolResponseMessage.builder()
+                .responses(List.of(new ToolResponseMessage.ToolResponse("1", "databaseQuery", output)))
+                .build();
+        return List.of(call, response);
+    }
+
+    private static String largeOutput() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("row ").append(i).append(" | 订单 ").append(i * 7).append(" | status=PAID\n");
+        }
+        return builder.toString();
+    }
+
+    private static String toolOutput(List<Message> messages) {
+        ToolResponseMessage response = (ToolResponseMessage) messages.get(messages.size() - 1);
+        return response.getResponses().get(0).responseData();
+    }
+}
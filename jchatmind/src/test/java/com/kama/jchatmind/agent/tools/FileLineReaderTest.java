@@ -0,0 +1,157 @@
+package com.kama.jchatmind.agent.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FileLineReader 测试：跨稀疏索引点的分段读取、文件末尾、tail、grep 续读，以及超长行按字节截断时不切断多字节字符
+ */
+public class FileLineReaderTest {
+
+    private static final int LINES = 3 * FileLineReader.INDEX_STRIDE;
+
+    @Test
+    public void testReadAcrossIndexStride() throws Exception {
+        Path file = numberedFile();
+        try {
+            FileLineReader.Page page = new FileLineReader(1024 * 1024, 1024).read(file, 995, 11);
+
+            assertEquals(expected(995, 1005), page.text());
+            assertEquals(995, page.firstLine());
+            assertEquals(1005, page.lastLine());
+            assertEquals(LINES, page.totalLines());
+            assertFalse(page.truncated());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testReadAtEndOfFile() throws Exception {
+        Path file = numberedFile();
+        try {
+            FileLineReader reader = new FileLineReader(1024 * 1024, 1024);
+            // 文件以换行符结尾，最后的空串不算一行
+            FileLineReader.Page page = reader.read(file, LINES - 1, 10);
+            assertEquals(expected(LINES - 1, LINES), page.text());
+            assertEquals(LINES, page.lastLine());
+            assertEquals(LINES, page.totalLines());
+            assertFalse(page.truncated());
+
+            FileLineReader.Page beyond = reader.read(file, LINES + 1, 10);
+            assertEquals("", beyond.text());
+            assertEquals(LINES, beyond.lastLine());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTail() throws Exception {
+        Path file = numberedFile();
+        try {
+            FileLineReader.Page page = new FileLineReader(1024 * 1024, 1024).tail(file, 3);
+
+            assertEquals(expected(LINES - 2, LINES), page.text());
+            assertEquals(LINES - 2, page.firstLine());
+            assertEquals(LINES, page.lastLine());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testGrepContinuesFromLastLine() throws Exception {
+        Path file = numberedFile();
+        try {
+            FileLineReader reader = new FileLineReader(1024 * 1024, 1024);
+            Pattern pattern = Pattern.compile("7$");
+
+            FileLineReader.Page first = reader.grep(file, pattern, 980, 3);
+            assertEquals("987: line 987\n997: line 997\n1007: line 1007\n", first.text());
+            assertEquals(987, first.firstLine());
+            assertEquals(1007, first.lastLine());
+            assertTrue(first.truncated());
+
+            FileLineReader.Page next = reader.grep(file, pattern, first.lastLine() + 1, 2);
+            assertEquals("1017: line 1017\n1027: line 1027\n", next.text());
+            assertEquals(1017, next.firstLine());
+
+            FileLineReader.Page last = reader.grep(file, pattern, LINES - 20, 10);
+            assertEquals("2987: line 2987\n2997: line 2997\n", last.text());
+            assertFalse(last.truncated());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testClippedLineKeepsWholeCharacters() throws Exception {
+        Path file = Files.createTempFile("file-line-reader", ".txt");
+        try {
+            // 每个汉字 3 字节，10 字节的上限落在第 4 个字的中间
+            Files.writeString(file, "你好世界你好世界\nok\n", StandardCharsets.UTF_8);
+            FileLineReader.Page page = new FileLineReader(1024, 10).read(file, 1, 2);
+
+            assertEquals("1: 你好世 ...[该行过长已截断，共 24 字节]\n2: ok\n", page.text());
+            assertFalse(page.text().contains("�"));
+            assertEquals(2, page.totalLines());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testLineSpanningReadBuffers() throws Exception {
+        Path file = Files.createTempFile("file-line-reader", ".txt");
+        try {
+            // 单行超过读取缓冲区（64 KB），换行符落在后面的缓冲块中
+            Files.writeString(file, "a".repeat(200_000) + "\r\nok", StandardCharsets.UTF_8);
+            FileLineReader.Page page = new FileLineReader(1024, 10).read(file, 1, 5);
+
+            assertEquals("1: aaaaaaaaaa ...[该行过长已截断，共 200001 字节]\n2: ok\n", page.text());
+            assertEquals(2, page.totalLines());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUtf8Boundary() {
+        byte[] bytes = "a你😀".getBytes(StandardCharsets.UTF_8);
+        assertEquals(1, FileLineReader.utf8Boundary(bytes, 3));
+        assertEquals(4, FileLineReader.utf8Boundary(bytes, 4));
+        assertEquals(4, FileLineReader.utf8Boundary(bytes, 7));
+        assertEquals(8, FileLineReader.utf8Boundary(bytes, 8));
+        assertEquals(0, FileLineReader.utf8Boundary(bytes, 0));
+    }
+
+    /**
+     * 第 n 行内容为 "line n"，以换行符结尾
+     */
+    private static Path numberedFile() throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int i = 1; i <= LINES; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Path file = Files.createTempFile("file-line-reader", ".txt");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String expected(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i <= to; i++) {
+            text.append(i).append(": line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+}
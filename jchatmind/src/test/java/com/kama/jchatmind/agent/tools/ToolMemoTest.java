@@ -0,0 +1,100 @@
+package com.kama.jchatmind.agent.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * ToolMemo 测试：相同参数的成功结果复用，失败结果不缓存
+ */
+public class ToolMemoTest {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private ToolMemo toolMemo;
+
+    @BeforeEach
+    public void setUp() {
+        toolMemo = new ToolMemo(new ObjectMapper(), metrics, 10);
+        ReflectionTestUtils.setField(toolMemo, "enabled", true);
+        ReflectionTestUtils.setField(toolMemo, "maxEntriesPerSession", 10);
+    }
+
+    @Test
+    public void testSuccessfulResultMemoized() {
+        AtomicInteger calls = new AtomicInteger();
+        ToolCallback tool = memoized(stub("lookup", calls, "\"ok\""));
+
+        assertEquals("\"ok\"", tool.call("{\"a\":1,\"b\":2}"));
+        // 字段顺序和空白不同也命中
+        assertEquals("\"ok\"", tool.call("{ \"b\": 2, \"a\": 1 }"));
+
+        assertEquals(1, calls.get());
+        assertEquals(1, metrics.count("tool.lookup.memo_hit"));
+    }
+
+    @Test
+    public void testFailedResultNotMemoized() {
+        AtomicInteger calls = new AtomicInteger();
+        // MethodToolCallback 会把工具返回的字符串序列化为 JSON 字符串
+        ToolCallback tool = memoized(stub("lookup", calls, "\"错误：知识库不存在\""));
+
+        tool.call("{\"a\":1}");
+        tool.call("{\"a\":1}");
+
+        assertEquals(2, calls.get());
+        assertEquals(0, metrics.count("tool.lookup.memo_hit"));
+    }
+
+    @Test
+    public void testGuardFailureNotMemoized() {
+        AtomicInteger calls = new AtomicInteger();
+        ToolCallback tool = memoized(stub("lookup", calls,
+                "{\"status\":\"TIMEOUT\",\"tool\":\"lookup\",\"message\":\"超时\"}"));
+
+        tool.call("{\"a\":1}");
+        tool.call("{\"a\":1}");
+
+        assertEquals(2, calls.get());
+    }
+
+    private ToolCallback memoized(ToolCallback delegate) {
+        Memoizable memoizable = ToolMemo.memoizableTools(SampleTools.class).get("lookup");
+        return toolMemo.newRun("session").wrap(delegate, memoizable);
+    }
+
+    private static ToolCallback stub(String name, AtomicInteger calls, String output) {
+        ToolDefinition definition = ToolDefinition.builder()
+                .name(name)
+                .description(name)
+                .inputSchema("{}")
+                .build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                calls.incrementAndGet();
+                return output;
+            }
+        };
+    }
+
+    static class SampleTools {
+        @org.springframework.ai.tool.annotation.Tool(name = "lookup", description = "lookup")
+        @Memoizable
+        public String lookup(int a, int b) {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.kama.jchatmind.llm;
+
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GatewayChatModel 测试，使用本地模拟的模型提供方，不访问真实的模型接口
+ */
+public class GatewayChatModelTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        AtomicInteger inflight = new AtomicInteger();
+        AtomicInteger maxInflight = new AtomicInteger();
+        ChatModel provider = prompt -> {
+            maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+            sleep(50);
+            inflight.decrementAndGet();
+            return response("ok");
+        };
+        GatewayChatModel gateway = gateway("mock", provider, GatewaySettings.builder().maxConcurrency(2).build());
+
+        List<Future<ChatResponse>> futures = new ArrayList<>();
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            futures.add(callers.submit(() -> gateway.call(new Prompt("hi"))));
+        }
+        for (Future<ChatResponse> future : futures) {
+            assertEquals("ok", text(future.get()));
+        }
+        callers.shutdown();
+
+        assertEquals(2, maxInflight.get());
+        assertTrue(metrics.histogram("llm.mock.queue_wait").count() >= 8);
+    }
+
+    @Test
+    public void testRetryThenSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel provider = prompt -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("503");
+            }
+            return response("ok");
+        };
+        GatewayChatModel gateway = gateway("mock", provider, GatewaySettings.builder().baseBackoffMs(10).build());
+
+        assertEquals("ok", text(gateway.call(new Prompt("hi"))));
+        assertEquals(2, calls.get());
+        assertEquals(1, metrics.count("llm.mock.retry"));
+    }
+
+    @Test
+    public void testFallbackWhenPrimaryFails() {
+        GatewayChatModel primary = gateway("primary", prompt -> {
+            throw new IllegalStateException("500");
+        }, GatewaySettings.builder().baseBackoffMs(10).build());
+        GatewayChatModel backup = gateway("backup", prompt -> response("from backup"), GatewaySettings.builder().build());
+        primary.setFallback(backup);
+
+        assertEquals("from backup", text(primary.call(new Prompt("hi"))));
+        assertEquals(1, metrics.count("llm.primary.fallback"));
+    }
+
+    @Test
+    public void testTimeoutFallsBack() {
+        GatewayChatModel primary = gateway("slow", prompt -> {
+            sleep(2000);
+            return response("too late");
+        }, GatewaySettings.builder().maxTimeoutMs(100).maxAttempts(1).build());
+        GatewayChatModel backup = gateway("fast", prompt -> response("fast"), GatewaySettings.builder().build());
+        primary.setFallback(backup);
+
+        long start = System.currentTimeMillis();
+        assertEquals("fast", text(primary.call(new Prompt("hi"))));
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, metrics.count("llm.slow.timeout"));
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailures() {
+        AtomicInteger calls = new AtomicInteger();
+        GatewayChatModel gateway = gateway("broken", prompt -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("500");
+        }, GatewaySettings.builder().maxAttempts(1).circuitFailureThreshold(2).build());
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(BizException.class, () -> gateway.call(new Prompt("hi")));
+        }
+        assertEquals(2, calls.get());
+        assertEquals(2, metrics.count("llm.broken.circuit_open"));
+    }
+
+    @Test
+    public void testPermitHeldUntilTimedOutCallReturns() {
+        AtomicInteger calls = new AtomicInteger();
+        ChatModel provider = prompt -> {
+            if (calls.incrementAndGet() == 1) {
+                // 模拟不响应中断的 HTTP 调用
+                long end = System.currentTimeMillis() + 500;
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait();
+                }
+            }
+            return response("ok");
+        };
+        GatewayChatModel gateway = gateway("stuck", provider, GatewaySettings.builder()
+                .maxConcurrency(1).maxTimeoutMs(100).maxAttempts(1).queueTimeoutMs(50).build());
+
+        assertThrows(BizException.class, () -> gateway.call(new Prompt("hi")));
+        // 超时的调用仍在执行，名额没有释放
+        assertThrows(BizException.class, () -> gateway.call(new Prompt("hi")));
+        assertEquals(1, metrics.count("llm.stuck.rejected"));
+
+        sleep(600);
+        assertEquals("ok", text(gateway.call(new Prompt("hi"))));
+    }
+
+    @Test
+    public void testExecutorRejectionNotCountedAsFailure() {
+        Executor rejecting = command -> {
+            throw new RejectedExecutionException("full");
+        };
+        GatewayChatModel gateway = new GatewayChatModel("busy", prompt -> response("ok"),
+                GatewaySettings.builder().circuitFailureThreshold(1).build(), rejecting, metrics);
+
+        assertThrows(BizException.class, () -> gateway.call(new Prompt("hi")));
+        assertThrows(BizException.class, () -> gateway.call(new Prompt("hi")));
+
+        assertEquals(2, metrics.count("llm.busy.executor_rejected"));
+        assertEquals(0, metrics.count("llm.busy.circuit_open"));
+        assertEquals(0, metrics.count("llm.busy.error"));
+    }
+
+    @Test
+    public void testStreamFallsBackBeforeFirstResponse() {
+        GatewayChatModel primary = gateway("primary", streaming(Flux.error(new IllegalStateException("500"))),
+                GatewaySettings.builder().build());
+        GatewayChatModel backup = gateway("backup", streaming(Flux.just(response("a"), response("b"))),
+                GatewaySettings.builder().build());
+        primary.setFallback(backup);
+
+        List<String> texts = primary.stream(new Prompt("hi")).map(GatewayChatModelTest::text).collectList().block();
+
+        assertEquals(List.of("a", "b"), texts);
+        assertEquals(1, metrics.count("llm.primary.fallback"));
+        assertEquals(1, metrics.count("llm.primary.error"));
+    }
+
+    @Test
+    public void testStreamCircuitOpens() {
+        GatewayChatModel gateway = gateway("broken", streaming(Flux.error(new IllegalStateException("500"))),
+                GatewaySettings.builder().circuitFailureThreshold(1).build());
+
+        assertThrows(BizException.class, () -> gateway.stream(new Prompt("hi")).blockLast());
+        assertThrows(BizException.class, () -> gateway.stream(new Prompt("hi")).blockLast());
+
+        assertEquals(1, metrics.count("llm.broken.error"));
+        assertEquals(1, metrics.count("llm.broken.circuit_open"));
+    }
+
+    private GatewayChatModel gateway(String name, ChatModel provider, GatewaySettings settings) {
+        return new GatewayChatModel(name, provider, settings, executor, metrics);
+    }
+
+    private static ChatModel streaming(Flux<ChatResponse> responses) {
+        return new ChatModel() {
+            @Override
+            public ChatResponse call(Prompt prompt) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Flux<ChatResponse> stream(Prompt prompt) {
+                return responses;
+            }
+        };
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(AssistantMessage.builder().content(text).build())));
+    }
+
+    private static String text(ChatResponse response) {
+        return response.getResult().getOutput().getText();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
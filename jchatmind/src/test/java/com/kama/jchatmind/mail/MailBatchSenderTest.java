@@ -0,0 +1,196 @@
+package com.kama.jchatmind.mail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MailBatchSender 测试，使用进程内模拟的 SMTP 服务器，不连接真实邮箱
+ * 收件人地址包含 reject 时服务器返回 550（永久失败），包含 later 时返回 451（临时失败）
+ */
+public class MailBatchSenderTest {
+
+    private FakeSmtpServer server;
+    private MailBatchSender sender;
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = new FakeSmtpServer();
+        sender = new MailBatchSender(mailSender(server.port()));
+    }
+
+    @AfterEach
+    public void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testBatchSharesOneConnection() {
+        List<SimpleMailMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(message("user" + i + "@example.com"));
+        }
+
+        Map<Integer, Exception> failures = sender.send(messages);
+
+        assertTrue(failures.isEmpty());
+        assertEquals(5, server.delivered.size());
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    public void testRejectedRecipientDoesNotFailBatch() {
+        List<SimpleMailMessage> messages = List.of(
+                message("a@example.com"),
+                message("reject@example.com"),
+                message("later@example.com"),
+                message("b@example.com"));
+
+        Map<Integer, Exception> failures = sender.send(messages);
+
+        assertEquals(2, failures.size());
+        assertTrue(MailBatchSender.isPermanent(failures.get(1)));
+        assertFalse(MailBatchSender.isPermanent(failures.get(2)));
+        assertEquals(List.of("a@example.com", "b@example.com"), server.delivered);
+        assertEquals(1, server.connections.get());
+    }
+
+    @Test
+    public void testMalformedAddressSkipped() {
+        List<SimpleMailMessage> messages = List.of(message("not-an-address"), message("a@example.com"));
+
+        Map<Integer, Exception> failures = sender.send(messages);
+
+        assertEquals(1, failures.size());
+        assertTrue(MailBatchSender.isPermanent(failures.get(0)));
+        assertEquals(List.of("a@example.com"), server.delivered);
+    }
+
+    @Test
+    public void testConnectionFailureFailsWholeBatch() throws IOException {
+        int port = server.port();
+        server.close();
+        MailBatchSender unreachable = new MailBatchSender(mailSender(port));
+
+        Map<Integer, Exception> failures = unreachable.send(List.of(message("a@example.com"), message("b@example.com")));
+
+        assertEquals(2, failures.size());
+        assertFalse(MailBatchSender.isPermanent(failures.get(0)));
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(port);
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "2000");
+        return mailSender;
+    }
+
+    private static SimpleMailMessage message(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("agent@example.com");
+        message.setTo(to);
+        message.setSubject("subject");
+        message.setText("content");
+        return message;
+    }
+
+    /**
+     * 最小的 SMTP 服务器：逐个处理连接，记录连接数和成功投递的收件人
+     */
+    private static class FakeSmtpServer {
+        private final ServerSocket serverSocket;
+        private final Thread thread;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+        FakeSmtpServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            thread = new Thread(this::serve, "fake-smtp");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void serve() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    handle(socket);
+                } catch (IOException e) {
+                    // 服务器关闭或客户端断开
+                }
+            }
+        }
+
+        private void handle(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            reply(out, "220 fake ESMTP");
+            List<String> recipients = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("RCPT TO:")) {
+                    if (command.contains("REJECT")) {
+                        reply(out, "550 5.1.1 mailbox unavailable");
+                    } else if (command.contains("LATER")) {
+                        reply(out, "451 4.3.0 try again later");
+                    } else {
+                        recipients.add(line.substring(line.indexOf('<') + 1, line.indexOf('>')));
+                        reply(out, "250 OK");
+                    }
+                } else if (command.startsWith("DATA")) {
+                    reply(out, "354 end with .");
+                    while ((line = in.readLine()) != null && !line.equals(".")) {
+                        // 丢弃邮件内容
+                    }
+                    delivered.addAll(recipients);
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("MAIL FROM:") || command.startsWith("RSET")) {
+                    recipients.clear();
+                    reply(out, "250 OK");
+                } else if (command.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    // EHLO / HELO / NOOP
+                    reply(out, "250 OK");
+                }
+            }
+        }
+
+        private static void reply(PrintWriter out, String line) {
+            out.print(line + "\r\n");
+            out.flush();
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
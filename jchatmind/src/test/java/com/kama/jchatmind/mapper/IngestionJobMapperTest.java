@@ -0,0 +1,102 @@
+package com.kama.jchatmind.mapper;
+
+import com.kama.jchatmind.model.entity.IngestionJob;
+import com.kama.jchatmind.service.IngestionJobService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * claimRunnable 的领取规则：同一文档同时只能有一个任务被领取
+ * parallelism 设为 0，关闭后台轮询，避免与测试抢任务
+ */
+@SpringBootTest(properties = "ingestion.worker.parallelism=0")
+public class IngestionJobMapperTest {
+
+    private static final int CLAIM_LIMIT = 1000;
+    private static final long STALE_SECONDS = 600;
+
+    @Autowired
+    private IngestionJobMapper ingestionJobMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final String kbId = UUID.randomUUID().toString();
+    private final String docId = UUID.randomUUID().toString();
+
+    @AfterEach
+    public void cleanUp() {
+        jdbcTemplate.update("DELETE FROM ingestion_job WHERE doc_id = CAST(? AS uuid)", docId);
+    }
+
+    @Test
+    public void testClaimsOneJobPerDocument() {
+        LocalDateTime now = LocalDateTime.now();
+        String first = insertPending(now.minusSeconds(2));
+        String second = insertPending(now.minusSeconds(1));
+
+        List<IngestionJob> claimed = claim();
+        assertEquals(1, claimed.size());
+        assertEquals(first, claimed.get(0).getId());
+        assertEquals(1, claimed.get(0).getAttempts());
+
+        // 第一个任务仍在运行，第二个任务不能被领取
+        assertTrue(claim().isEmpty());
+
+        ingestionJobMapper.markSucceeded(first);
+        List<IngestionJob> next = claim();
+        assertEquals(1, next.size());
+        assertEquals(second, next.get(0).getId());
+    }
+
+    @Test
+    public void testReleaseClaimKeepsAttempts() {
+        String jobId = insertPending(LocalDateTime.now());
+
+        assertEquals(1, claim().size());
+        ingestionJobMapper.releaseClaim(jobId);
+
+        IngestionJob job = ingestionJobMapper.selectById(jobId);
+        assertEquals(IngestionJobService.Status.PENDING.name(), job.getStatus());
+        assertEquals(0, job.getAttempts());
+    }
+
+    private String insertPending(LocalDateTime createdAt) {
+        IngestionJob job = IngestionJob.builder()
+                .kbId(kbId)
+                .docId(docId)
+                .status(IngestionJobService.Status.PENDING.name())
+                .stage(IngestionJobService.Stage.QUEUED.name())
+                .totalSections(0)
+                .processedSections(0)
+                .attempts(0)
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .build();
+        ingestionJobMapper.insert(job);
+        return job.getId();
+    }
+
+    /**
+     * 只返回本测试文档的任务；顺带领取到的其他任务原样放回队列
+     */
+    private List<IngestionJob> claim() {
+        List<IngestionJob> claimed = ingestionJobMapper.claimRunnable(CLAIM_LIMIT, STALE_SECONDS);
+        claimed.stream()
+                .filter(job -> !docId.equals(job.getDocId()))
+                .forEach(job -> ingestionJobMapper.releaseClaim(job.getId()));
+        return claimed.stream()
+                .filter(job -> docId.equals(job.getDocId()))
+                .toList();
+    }
+}
@@ -0,0 +1,150 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.rag.store.HnswIndex;
+import com.kama.jchatmind.rag.store.Int8VectorStorage;
+import com.kama.jchatmind.rag.store.MappedVectorStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 量化检索的召回率基准
+ * 固定种子生成带聚类结构的语料（模拟同一文档内章节向量彼此相近），
+ * 以全精度暴力检索为基准，比较 int8 / 二值量化在有无全精度重新打分时的 recall@10 与存储体积
+ */
+public class QuantizationRecallTest {
+
+    private static final long SEED = 20251202L;
+    private static final int DIMENSION = 1024;
+    private static final int CLUSTERS = 50;
+    private static final int PER_CLUSTER = 60;
+    private static final int QUERY_COUNT = 100;
+    private static final int TOP_K = 10;
+    private static final int RESCORE_FACTOR = 4;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void recallWithRescoring() {
+        Random random = new Random(SEED);
+        float[][] corpus = clusteredCorpus(random);
+        float[][] queries = new float[QUERY_COUNT][];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = perturb(corpus[random.nextInt(corpus.length)], 0.3f, random);
+        }
+
+        MappedVectorStorage full = new MappedVectorStorage(tempDir, "full", DIMENSION, 1024);
+        Int8VectorStorage int8 = new Int8VectorStorage(tempDir, "int8", DIMENSION, 1024);
+        Int8VectorStorage int8ForIndex = new Int8VectorStorage(tempDir, "hnsw", DIMENSION, 1024);
+        HnswIndex int8Index = new HnswIndex(int8ForIndex, 16, 100);
+        List<long[]> binary = new ArrayList<>();
+        for (float[] vector : corpus) {
+            full.append(vector);
+            int8.append(vector);
+            int8Index.insert(vector);
+            binary.add(Quantization.quantizeBinary(vector));
+        }
+
+        double int8Raw = 0, int8Rescored = 0, binaryRaw = 0, binaryRescored = 0, hnswInt8Rescored = 0;
+        for (float[] query : queries) {
+            Set<Integer> expected = topK(corpus.length, i -> -full.dot(i, query), TOP_K);
+
+            int8Raw += recall(expected, topK(corpus.length, i -> -int8.dot(i, query), TOP_K));
+            int8Rescored += recall(expected, rescore(topK(corpus.length, i -> -int8.dot(i, query), TOP_K * RESCORE_FACTOR), full, query));
+
+            long[] queryBits = Quantization.quantizeBinary(query);
+            binaryRaw += recall(expected, topK(corpus.length, i -> Quantization.hamming(binary.get(i), queryBits), TOP_K));
+            binaryRescored += recall(expected, rescore(topK(corpus.length, i -> Quantization.hamming(binary.get(i), queryBits), TOP_K * RESCORE_FACTOR), full, query));
+
+            Set<Integer> hnswCandidates = new HashSet<>();
+            int8Index.search(query, TOP_K * RESCORE_FACTOR, 64 * RESCORE_FACTOR).forEach(c -> hnswCandidates.add(c.node()));
+            hnswInt8Rescored += recall(expected, rescore(hnswCandidates, full, query));
+        }
+
+        long fullBytes = full.bytes();
+        System.out.printf("语料: %d 条, 维度 %d, 查询 %d 条, recall@%d, 重新打分候选 %d 倍%n",
+                corpus.length, DIMENSION, QUERY_COUNT, TOP_K, RESCORE_FACTOR);
+        System.out.printf("float32           存储 %8d KB%n", fullBytes / 1024);
+        System.out.printf("int8   无重排 %.4f  重排 %.4f  存储 %8d KB%n",
+                int8Raw / QUERY_COUNT, int8Rescored / QUERY_COUNT, int8.bytes() / 1024);
+        System.out.printf("binary 无重排 %.4f  重排 %.4f  存储 %8d KB%n",
+                binaryRaw / QUERY_COUNT, binaryRescored / QUERY_COUNT, (long) corpus.length * DIMENSION / 8 / 1024);
+        System.out.printf("HNSW(int8) 重排 %.4f%n", hnswInt8Rescored / QUERY_COUNT);
+
+        assertTrue(int8Rescored / QUERY_COUNT >= 0.99);
+        assertTrue(binaryRescored / QUERY_COUNT >= 0.8);
+        assertTrue(hnswInt8Rescored / QUERY_COUNT >= 0.9);
+
+        full.close();
+        int8.close();
+        int8ForIndex.close();
+    }
+
+    private interface Score {
+        double of(int node);
+    }
+
+    // 分数越小越靠前
+    private static Set<Integer> topK(int n, Score score, int k) {
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = score.of(i);
+        }
+        return IntStream.range(0, n)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> scores[i]))
+                .limit(k)
+                .collect(HashSet::new, Set::add, Set::addAll);
+    }
+
+    private static Set<Integer> rescore(Set<Integer> candidates, MappedVectorStorage full, float[] query) {
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(i -> -full.dot(i, query)))
+                .limit(TOP_K)
+                .collect(HashSet::new, Set::add, Set::addAll);
+    }
+
+    private static double recall(Set<Integer> expected, Set<Integer> actual) {
+        long hit = actual.stream().filter(expected::contains).count();
+        return (double) hit / expected.size();
+    }
+
+    private static float[][] clusteredCorpus(Random random) {
+        float[][] corpus = new float[CLUSTERS * PER_CLUSTER][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            float[] center = gaussian(random);
+            for (int i = 0; i < PER_CLUSTER; i++) {
+                corpus[c * PER_CLUSTER + i] = perturb(center, 0.6f, random);
+            }
+        }
+        return corpus;
+    }
+
+    private static float[] perturb(float[] base, float noise, Random random) {
+        float[] noisy = gaussian(random);
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = base[i] + noise * noisy[i];
+        }
+        return VectorMath.normalize(vector);
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return VectorMath.normalize(vector);
+    }
+}
@@ -0,0 +1,117 @@
+package com.kama.jchatmind.rag;
+
+import com.kama.jchatmind.mapper.ChunkBgeM3Mapper;
+import com.kama.jchatmind.mapper.KnowledgeBaseMapper;
+import com.kama.jchatmind.model.entity.ChunkBgeM3;
+import com.kama.jchatmind.model.entity.KnowledgeBase;
+import com.kama.jchatmind.rag.store.HnswVectorStore;
+import com.kama.jchatmind.rag.store.PgVectorStore;
+import com.kama.jchatmind.rag.store.VectorHit;
+import com.kama.jchatmind.rag.store.VectorStore;
+import com.kama.jchatmind.service.ChunkPartitionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * pgvector 与进程内 HNSW 检索后端的对比基准
+ * 使用数据库中 chunk 最多的知识库，以其中的 chunk 向量作为查询，
+ * 分别统计两种后端的检索耗时，并以 pgvector 的结果为基准计算 HNSW 的召回率
+ */
+@SpringBootTest
+public class VectorStoreBenchmarkTest {
+
+    private static final int QUERY_COUNT = 200;
+    private static final int WARMUP_COUNT = 20;
+    private static final int TOP_K = 10;
+
+    @Autowired
+    private KnowledgeBaseMapper knowledgeBaseMapper;
+
+    @Autowired
+    private ChunkBgeM3Mapper chunkBgeM3Mapper;
+
+    @Autowired
+    private ChunkPartitionService chunkPartitionService;
+
+    @Autowired
+    private PgVectorStore pgVectorStore;
+
+    @Autowired
+    private HnswVectorStore hnswVectorStore;
+
+    @Test
+    public void compareBackends() {
+        String kbId = null;
+        List<ChunkBgeM3> queries = List.of();
+        for (KnowledgeBase knowledgeBase : knowledgeBaseMapper.selectAll()) {
+            List<ChunkBgeM3> page = chunkBgeM3Mapper.selectEmbeddingPage(
+                    chunkPartitionService.tableFor(knowledgeBase.getId()), knowledgeBase.getId(), null, QUERY_COUNT);
+            if (page.size() > queries.size()) {
+                kbId = knowledgeBase.getId();
+                queries = page;
+            }
+        }
+        assumeTrue(kbId != null && !queries.isEmpty(), "没有可用于基准测试的知识库数据");
+
+        long loadStart = System.currentTimeMillis();
+        hnswVectorStore.load(kbId);
+        long loadMs = System.currentTimeMillis() - loadStart;
+
+        try {
+            long[] pgLatencies = run(pgVectorStore, kbId, queries);
+            long[] memoryLatencies = run(hnswVectorStore, kbId, queries);
+
+            double recall = 0;
+            for (ChunkBgeM3 query : queries) {
+                Set<String> expected = ids(pgVectorStore.search(kbId, query.getEmbedding(), TOP_K));
+                Set<String> actual = ids(hnswVectorStore.search(kbId, query.getEmbedding(), TOP_K));
+                actual.retainAll(expected);
+                recall += expected.isEmpty() ? 1 : (double) actual.size() / expected.size();
+            }
+            recall /= queries.size();
+
+            System.out.println("知识库: " + kbId + ", 查询数: " + queries.size() + ", top-" + TOP_K);
+            System.out.println("内存索引加载耗时: " + loadMs + " ms");
+            System.out.println("pgvector  " + summary(pgLatencies));
+            System.out.println("memory    " + summary(memoryLatencies));
+            System.out.printf("HNSW recall@%d: %.4f%n", TOP_K, recall);
+        } finally {
+            hnswVectorStore.drop(kbId);
+        }
+    }
+
+    private long[] run(VectorStore store, String kbId, List<ChunkBgeM3> queries) {
+        for (int i = 0; i < Math.min(WARMUP_COUNT, queries.size()); i++) {
+            store.search(kbId, queries.get(i).getEmbedding(), TOP_K);
+        }
+        long[] latencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            store.search(kbId, queries.get(i).getEmbedding(), TOP_K);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static Set<String> ids(List<VectorHit> hits) {
+        Set<String> ids = new HashSet<>();
+        hits.forEach(hit -> ids.add(hit.chunkId()));
+        return ids;
+    }
+
+    private static String summary(long[] sortedNanos) {
+        return String.format("p50=%.3f ms, p95=%.3f ms, p99=%.3f ms",
+                sortedNanos[(int) (sortedNanos.length * 0.50)] / 1e6,
+                sortedNanos[Math.min(sortedNanos.length - 1, (int) (sortedNanos.length * 0.95))] / 1e6,
+                sortedNanos[Math.min(sortedNanos.length - 1, (int) (sortedNanos.length * 0.99))] / 1e6);
+    }
+}
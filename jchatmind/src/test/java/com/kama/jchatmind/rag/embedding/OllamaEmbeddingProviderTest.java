@@ -0,0 +1,156 @@
+package com.kama.jchatmind.rag.embedding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kama.jchatmind.exception.BizException;
+import com.kama.jchatmind.metrics.MetricsRegistry;
+import com.kama.jchatmind.rag.VectorMath;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * OllamaEmbeddingProvider 测试，使用本地 HttpServer 模拟 /api/embed 接口
+ */
+public class OllamaEmbeddingProviderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<HttpServer> servers = new ArrayList<>();
+
+    @AfterEach
+    public void stopServers() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    public void testBatchEmbedding() {
+        StubServer stub = startStub(0, 200);
+        OllamaEmbeddingProvider provider = newProvider(List.of(stub.url), 2000, 0, 5, new MetricsRegistry());
+
+        List<float[]> embeddings = provider.embed(List.of("a", "bb", "ccc"));
+
+        assertEquals(3, embeddings.size());
+        assertVector(new float[]{2f, 0.5f}, embeddings.get(1));
+        assertEquals(1, stub.requests.get());
+    }
+
+    @Test
+    public void testEmbeddingsNormalized() {
+        StubServer stub = startStub(0, 200);
+        OllamaEmbeddingProvider provider = newProvider(List.of(stub.url), 2000, 0, 5, new MetricsRegistry());
+
+        for (float[] embedding : provider.embed(List.of("a", "hello world"))) {
+            assertEquals(1f, VectorMath.norm(embedding), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testHedgedRequestToSecondReplica() {
+        StubServer slow = startStub(3000, 200);
+        StubServer fast = startStub(0, 200);
+        MetricsRegistry metrics = new MetricsRegistry();
+        OllamaEmbeddingProvider provider = newProvider(List.of(slow.url, fast.url), 2000, 50, 5, metrics);
+
+        long start = System.currentTimeMillis();
+        float[] embedding = provider.embed("hello");
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertVector(new float[]{5f, 0.5f}, embedding);
+        assertTrue(elapsed < 1000, "对冲请求应在慢副本返回前完成, elapsed=" + elapsed);
+        assertEquals(1, metrics.count("embedding.hedged"));
+    }
+
+    @Test
+    public void testDeadlineExceeded() {
+        StubServer slow = startStub(3000, 200);
+        OllamaEmbeddingProvider provider = newProvider(List.of(slow.url), 200, 0, 5, new MetricsRegistry());
+
+        long start = System.currentTimeMillis();
+        assertThrows(BizException.class, () -> provider.embed("hello"));
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailures() {
+        StubServer failing = startStub(0, 500);
+        MetricsRegistry metrics = new MetricsRegistry();
+        OllamaEmbeddingProvider provider = newProvider(List.of(failing.url), 2000, 0, 2, metrics);
+
+        assertThrows(BizException.class, () -> provider.embed("a"));
+        assertThrows(BizException.class, () -> provider.embed("b"));
+        // 熔断后不再请求服务端
+        assertThrows(BizException.class, () -> provider.embed("c"));
+
+        assertEquals(2, failing.requests.get());
+        assertEquals(1, metrics.count("embedding.circuit.rejected"));
+    }
+
+    // 服务端返回的原始向量单位化后应与结果一致
+    private static void assertVector(float[] raw, float[] actual) {
+        float[] expected = VectorMath.normalize(raw);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6f);
+        }
+    }
+
+    private OllamaEmbeddingProvider newProvider(List<String> urls, long timeoutMs, long hedgeDelayMs,
+                                                int failureThreshold, MetricsRegistry metrics) {
+        return new OllamaEmbeddingProvider(WebClient.builder(), metrics, urls, "bge-m3",
+                500, timeoutMs, hedgeDelayMs, failureThreshold, 60_000);
+    }
+
+    /**
+     * 每个输入返回一个二维向量，第一个分量为输入文本的长度
+     */
+    private StubServer startStub(long delayMs, int status) {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            AtomicInteger requests = new AtomicInteger();
+            server.createContext("/api/embed", exchange -> {
+                requests.incrementAndGet();
+                JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                StringBuilder json = new StringBuilder("{\"embeddings\":[");
+                for (int i = 0; i < body.get("input").size(); i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    json.append('[').append(body.get("input").get(i).asText().length()).append(",0.5]");
+                }
+                json.append("]}");
+                byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length);
+                exchange.getResponseBody().write(bytes);
+                exchange.close();
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            servers.add(server);
+            return new StubServer("http://127.0.0.1:" + server.getAddress().getPort(), requests);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StubServer(String url, AtomicInteger requests) {
+    }
+}